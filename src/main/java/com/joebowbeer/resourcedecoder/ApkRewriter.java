@@ -0,0 +1,314 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Replaces entries of an APK (zip) archive. Every other entry is transferred with its local header
+ * and compressed data as they are, and the central directory is regenerated. Stored entries whose
+ * data was aligned (to 4 bytes, or 4096 for native libraries) stay aligned, by padding the extra
+ * field of their local header when needed, as zipalign does. The APK signing block, if any, is
+ * dropped, since the archive must be signed again.
+ */
+public class ApkRewriter {
+
+  private static final int LOCAL_SIG = 0x04034b50;
+  private static final int CENTRAL_SIG = 0x02014b50;
+  private static final int END_SIG = 0x06054b50;
+  private static final int DESCRIPTOR_SIG = 0x08074b50;
+
+  private static final int LOCAL_SIZE = 30;
+  private static final int CENTRAL_SIZE = 46;
+  private static final int END_SIZE = 22;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+  private static final int DESCRIPTOR_FLAG = 1 << 3;
+  private static final long ZIP64 = 0xFFFFFFFFL;
+
+  private final Map<String, byte[]> replacements = new HashMap<>();
+
+  /**
+   * Replaces the contents of the named entry. The entry keeps its compression method.
+   */
+  public void replace(String name, byte[] data) {
+    replacements.put(name, data);
+  }
+
+  /**
+   * Rewrites the given archive, replacing it only when the copy is complete.
+   */
+  public void apply(String filename) throws IOException {
+    Path path = Paths.get(filename).toAbsolutePath();
+    Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel in = FileChannel.open(path, READ);
+          FileChannel out = FileChannel.open(tmp, WRITE)) {
+        write(in, out);
+      }
+      if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+        Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(path));
+      }
+      Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Writes the edited archive to the output.
+   *
+   * @throws IOException if the input is not a zip archive, or is a Zip64 archive or has Zip64
+   *     entries
+   * @throws IllegalStateException if a replaced entry is not found
+   */
+  public void write(FileChannel in, FileChannel out) throws IOException {
+    ByteBuffer end = readEnd(in);
+    int count = end.getShort(10) & 0xFFFF;
+    long cdSize = end.getInt(12) & 0xFFFFFFFFL;
+    long cdOffset = end.getInt(16) & 0xFFFFFFFFL;
+    if (count == 0xFFFF || cdSize == ZIP64 || cdOffset == ZIP64) {
+      throw new IOException("Zip64 archives are not supported");
+    }
+    // central directory, in its own order
+    ByteBuffer cd = read(in, cdOffset, (int) cdSize);
+    List<Entry> entries = new ArrayList<>(count);
+    for (int i = 0, pos = 0; i < count; i++) {
+      if (cd.getInt(pos) != CENTRAL_SIG) {
+        throw new IOException("Invalid central directory");
+      }
+      int length = CENTRAL_SIZE + (cd.getShort(pos + 28) & 0xFFFF)
+          + (cd.getShort(pos + 30) & 0xFFFF) + (cd.getShort(pos + 32) & 0xFFFF);
+      Entry entry = new Entry(copy(cd, pos, length));
+      if (entry.compressedSize() == ZIP64 || entry.size() == ZIP64
+          || entry.localOffset() == ZIP64) {
+        throw new IOException("Zip64 entries are not supported: " + entry.name());
+      }
+      entries.add(entry);
+      pos += length;
+    }
+    int found = 0;
+    List<Entry> local = new ArrayList<>(entries);
+    local.sort(Comparator.comparingLong(Entry::localOffset));
+    for (Entry entry : local) {
+      long offset = out.position();
+      byte[] data = replacements.get(entry.name());
+      if (data != null) {
+        writeReplacement(in, out, entry, data);
+        found++;
+      } else {
+        writeEntry(in, out, entry);
+      }
+      entry.central.putInt(42, (int) offset);
+    }
+    if (found != replacements.size()) {
+      throw new IllegalStateException("Entries not found: " + replacements.keySet());
+    }
+    long newCdOffset = out.position();
+    for (Entry entry : entries) {
+      writeFully(out, (ByteBuffer) entry.central.clear());
+    }
+    ByteBuffer newEnd = copy(end, 0, end.capacity());
+    newEnd.putInt(12, (int) (out.position() - newCdOffset));
+    newEnd.putInt(16, (int) newCdOffset);
+    writeFully(out, newEnd);
+  }
+
+  /**
+   * Copies an entry as it is, unless its stored data needs to be realigned.
+   */
+  private void writeEntry(FileChannel in, FileChannel out, Entry entry) throws IOException {
+    long offset = entry.localOffset();
+    ByteBuffer header = read(in, offset, LOCAL_SIZE);
+    if (header.getInt(0) != LOCAL_SIG) {
+      throw new IOException("Invalid local header at " + offset);
+    }
+    int headerSize = LOCAL_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    long dataSize = entry.compressedSize();
+    if ((header.getShort(6) & DESCRIPTOR_FLAG) != 0) {
+      long descriptor = offset + headerSize + dataSize;
+      dataSize += (read(in, descriptor, 4).getInt(0) == DESCRIPTOR_SIG) ? 16 : 12;
+    }
+    int pad = 0;
+    if (entry.method() == STORED) {
+      int alignment = alignment(entry.name());
+      if ((offset + headerSize) % alignment == 0) {
+        pad = padding(out.position() + headerSize, alignment);
+      }
+    }
+    if (pad == 0) {
+      transfer(in, out, offset, headerSize + dataSize);
+      return;
+    }
+    ByteBuffer newHeader = read(in, offset, headerSize);
+    newHeader.putShort(28, (short) ((newHeader.getShort(28) & 0xFFFF) + pad));
+    writeFully(out, newHeader);
+    writeFully(out, ByteBuffer.allocate(pad));
+    transfer(in, out, offset + headerSize, dataSize);
+  }
+
+  private void writeReplacement(FileChannel in, FileChannel out, Entry entry, byte[] data)
+      throws IOException {
+    long offset = entry.localOffset();
+    ByteBuffer header = read(in, offset, LOCAL_SIZE);
+    if (header.getInt(0) != LOCAL_SIG) {
+      throw new IOException("Invalid local header at " + offset);
+    }
+    int nameLength = header.getShort(26) & 0xFFFF;
+    int extraLength = header.getShort(28) & 0xFFFF;
+    int headerSize = LOCAL_SIZE + nameLength + extraLength;
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    byte[] compressed;
+    int pad = 0;
+    if (entry.method() == STORED) {
+      compressed = data;
+      pad = padding(out.position() + headerSize, alignment(entry.name()));
+    } else if (entry.method() == DEFLATED) {
+      compressed = deflate(data);
+    } else {
+      throw new IOException("Unsupported compression method: " + entry.method());
+    }
+    ByteBuffer newHeader = read(in, offset, headerSize);
+    int flags = (newHeader.getShort(6) & 0xFFFF) & ~DESCRIPTOR_FLAG;
+    newHeader.putShort(6, (short) flags);
+    newHeader.putInt(14, (int) crc.getValue());
+    newHeader.putInt(18, compressed.length);
+    newHeader.putInt(22, data.length);
+    newHeader.putShort(28, (short) (extraLength + pad));
+    writeFully(out, newHeader);
+    writeFully(out, ByteBuffer.allocate(pad));
+    writeFully(out, ByteBuffer.wrap(compressed));
+    entry.central.putShort(8, (short) ((entry.central.getShort(8) & 0xFFFF) & ~DESCRIPTOR_FLAG));
+    entry.central.putInt(16, (int) crc.getValue());
+    entry.central.putInt(20, compressed.length);
+    entry.central.putInt(24, data.length);
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+      byte[] buf = new byte[1 << 16];
+      while (!deflater.finished()) {
+        int n = deflater.deflate(buf);
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static int alignment(String name) {
+    return name.endsWith(".so") ? 4096 : 4;
+  }
+
+  private static int padding(long position, int alignment) {
+    return (int) ((alignment - position % alignment) % alignment);
+  }
+
+  private static ByteBuffer readEnd(FileChannel in) throws IOException {
+    long size = in.size();
+    int length = (int) Math.min(size, END_SIZE + 0xFFFF);
+    ByteBuffer tail = read(in, size - length, length);
+    for (int pos = length - END_SIZE; pos >= 0; pos--) {
+      if (tail.getInt(pos) == END_SIG
+          && pos + END_SIZE + (tail.getShort(pos + 20) & 0xFFFF) == length) {
+        return copy(tail, pos, length - pos);
+      }
+    }
+    throw new IOException("Not a zip archive");
+  }
+
+  private static ByteBuffer copy(ByteBuffer buf, int position, int length) {
+    ByteBuffer copy = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    copy.put(buf.array(), position, length);
+    copy.clear();
+    return copy;
+  }
+
+  private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buf.hasRemaining()) {
+      if (in.read(buf, position + buf.position()) < 0) {
+        throw new IOException("Unexpected end of archive");
+      }
+    }
+    buf.clear();
+    return buf;
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining()) {
+      out.write(buf);
+    }
+  }
+
+  private static void transfer(FileChannel in, FileChannel out, long position, long count)
+      throws IOException {
+    while (count > 0) {
+      long n = in.transferTo(position, count, out);
+      if (n <= 0) {
+        throw new IOException("Unexpected end of archive");
+      }
+      position += n;
+      count -= n;
+    }
+  }
+
+  /**
+   * Central directory record.
+   */
+  private static class Entry {
+
+    final ByteBuffer central;
+
+    Entry(ByteBuffer central) {
+      this.central = central;
+    }
+
+    String name() {
+      return new String(central.array(), CENTRAL_SIZE, central.getShort(28) & 0xFFFF,
+          StandardCharsets.UTF_8);
+    }
+
+    int method() {
+      return central.getShort(10) & 0xFFFF;
+    }
+
+    long compressedSize() {
+      return central.getInt(20) & 0xFFFFFFFFL;
+    }
+
+    long size() {
+      return central.getInt(24) & 0xFFFFFFFFL;
+    }
+
+    long localOffset() {
+      return central.getInt(42) & 0xFFFFFFFFL;
+    }
+  }
+}
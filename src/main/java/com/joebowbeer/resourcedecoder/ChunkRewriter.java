@@ -0,0 +1,304 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_TABLE;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_TABLE_PACKAGE;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_XML;
+
+/**
+ * Batch of edits that may change the size of chunks. The file is streamed to a copy in which
+ * replaced chunks are written from memory, and all other chunks are transferred verbatim. Only the
+ * headers of the enclosing chunks are rewritten, to fix their totalSize and, in a package, the
+ * offsets of its type and key string pools.
+ */
+public class ChunkRewriter {
+
+  private static final int HSIZE = 8;
+
+  /* offsets of typeStrings and keyStrings in package header */
+  private static final int TYPE_STRINGS = HSIZE + 4 + 256;
+  private static final int KEY_STRINGS = TYPE_STRINGS + 8;
+
+  private final NavigableMap<Long, byte[]> replacements = new TreeMap<>();
+  private final NavigableMap<Long, byte[]> patches = new TreeMap<>();
+  private final NavigableMap<Long, byte[]> insertions = new TreeMap<>();
+
+  private int applied;
+
+  /**
+   * Replaces the chunk at the given offset.
+   *
+   * @param offset file offset of the chunk
+   * @param chunk encoded replacement, or an empty array to remove the chunk
+   */
+  public void replace(long offset, byte[] chunk) {
+    if (chunk.length != 0 && (chunk.length < HSIZE || totalSize(chunk) != chunk.length)) {
+      throw new IllegalArgumentException("Invalid chunk at " + offset);
+    }
+    put(replacements, offset, chunk);
+  }
+
+  public void remove(long offset) {
+    replace(offset, new byte[0]);
+  }
+
+  /**
+   * Inserts chunks before the chunk at the given offset, which must be inside a container chunk.
+   * Chunks inserted at the same offset are written in the order they were added.
+   *
+   * @param offset file offset of the following chunk
+   * @param chunks one or more encoded chunks
+   */
+  public void insert(long offset, byte[] chunks) {
+    ByteBuffer buf = ByteBuffer.wrap(chunks).order(ByteOrder.LITTLE_ENDIAN);
+    int pos = 0;
+    while (pos + HSIZE <= chunks.length && buf.getInt(pos + 4) >= HSIZE) {
+      pos += buf.getInt(pos + 4);
+    }
+    if (pos != chunks.length) {
+      throw new IllegalArgumentException("Invalid chunk at " + offset);
+    }
+    byte[] prev = insertions.get(offset);
+    if (prev != null) {
+      chunks = concat(prev, chunks);
+    }
+    insertions.put(offset, chunks);
+  }
+
+  /**
+   * Overwrites bytes at the given offset without changing the size of the enclosing chunk, for
+   * example a resource value whose string index has changed.
+   */
+  public void patch(long offset, byte[] bytes) {
+    put(patches, offset, bytes);
+  }
+
+  public int size() {
+    return replacements.size() + patches.size() + insertions.size();
+  }
+
+  /**
+   * Rewrites the given file, replacing it only when the copy is complete.
+   */
+  public void apply(String filename) throws IOException {
+    Path path = Paths.get(filename).toAbsolutePath();
+    Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel in = FileChannel.open(path, READ);
+          FileChannel out = FileChannel.open(tmp, WRITE)) {
+        write(in, out);
+      }
+      if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+        Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(path));
+      }
+      Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Writes the edited chunks of the input to the output, and returns the number of bytes written.
+   *
+   * @throws IllegalStateException if an edit is not at a chunk boundary, or overlaps another
+   */
+  public long write(FileChannel in, FileChannel out) throws IOException {
+    applied = 0;
+    long start = out.position();
+    long offset = 0;
+    for (long end = in.size(); offset + HSIZE <= end;) {
+      long size = readHeader(in, offset).getInt(4) & 0xFFFFFFFFL;
+      if (size < HSIZE || offset + size > end) {
+        break;
+      }
+      writeChunk(in, out, offset);
+      offset += size;
+    }
+    // trailing bytes, if any
+    transfer(in, out, offset, in.size() - offset);
+    if (applied != size()) {
+      throw new IllegalStateException("Edits not at chunk boundaries: " + replacements.keySet()
+          + " " + patches.keySet() + " " + insertions.keySet());
+    }
+    return out.position() - start;
+  }
+
+  /**
+   * Reads the chunk at the given offset.
+   */
+  public static byte[] readChunk(FileChannel in, long offset) throws IOException {
+    int totalSize = readHeader(in, offset).getInt(4);
+    ByteBuffer buf = ByteBuffer.allocate(totalSize);
+    readFully(in, buf, offset);
+    return buf.array();
+  }
+
+  private long writeChunk(FileChannel in, FileChannel out, long offset) throws IOException {
+    byte[] replacement = replacements.get(offset);
+    if (replacement != null) {
+      applied++;
+      writeFully(out, ByteBuffer.wrap(replacement));
+      return replacement.length;
+    }
+    ByteBuffer header = readHeader(in, offset);
+    int type = header.getShort(0) & 0xFFFF;
+    int headerSize = header.getShort(2) & 0xFFFF;
+    int totalSize = header.getInt(4);
+    long end = offset + totalSize;
+    if (!hasEdits(offset, end)) {
+      transfer(in, out, offset, totalSize);
+      return totalSize;
+    }
+    if (!isContainer(type)) {
+      return writePatched(in, out, offset, end);
+    }
+    if (hasEdits(offset, offset + headerSize)) {
+      throw new IllegalStateException("Edit inside chunk header at " + offset);
+    }
+    // copy header, then children, then fix header
+    ByteBuffer buf = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(in, buf, offset);
+    long outStart = out.position();
+    writeFully(out, (ByteBuffer) buf.duplicate().clear());
+    Map<Long, Long> moved = new TreeMap<>();
+    long child = offset + headerSize;
+    while (child < end) {
+      byte[] inserted = insertions.get(child);
+      if (inserted != null) {
+        applied++;
+        writeFully(out, ByteBuffer.wrap(inserted));
+      }
+      moved.put(child - offset, out.position() - outStart);
+      writeChunk(in, out, child);
+      child += readHeader(in, child).getInt(4);
+    }
+    if (child != end) {
+      throw new IllegalStateException("Invalid chunk at " + offset);
+    }
+    long newSize = out.position() - outStart;
+    buf.putInt(4, (int) newSize);
+    if (type == TYPE_TABLE_PACKAGE) {
+      relocate(buf, TYPE_STRINGS, moved);
+      relocate(buf, KEY_STRINGS, moved);
+    }
+    buf.clear();
+    for (long position = outStart; buf.hasRemaining();) {
+      position += out.write(buf, position);
+    }
+    return newSize;
+  }
+
+  private long writePatched(FileChannel in, FileChannel out, long offset, long end)
+      throws IOException {
+    if (!replacements.subMap(offset, false, end, false).isEmpty()
+        || !insertions.subMap(offset, false, end, false).isEmpty()) {
+      throw new IllegalStateException("Nested chunk in " + offset);
+    }
+    long position = offset;
+    for (Map.Entry<Long, byte[]> patch : patches.subMap(offset, end).entrySet()) {
+      long patchOffset = patch.getKey();
+      byte[] bytes = patch.getValue();
+      if (patchOffset < position || patchOffset + bytes.length > end) {
+        throw new IllegalStateException("Conflicting edits at " + patchOffset);
+      }
+      transfer(in, out, position, patchOffset - position);
+      writeFully(out, ByteBuffer.wrap(bytes));
+      position = patchOffset + bytes.length;
+      applied++;
+    }
+    transfer(in, out, position, end - position);
+    return end - offset;
+  }
+
+  private boolean hasEdits(long start, long end) {
+    // an insertion at the start belongs to the enclosing chunk
+    return !replacements.subMap(start, end).isEmpty() || !patches.subMap(start, end).isEmpty()
+        || !insertions.subMap(start, false, end, false).isEmpty();
+  }
+
+  private static boolean isContainer(int type) {
+    return type == TYPE_TABLE || type == TYPE_XML || type == TYPE_TABLE_PACKAGE;
+  }
+
+  private static void relocate(ByteBuffer header, int index, Map<Long, Long> moved) {
+    int offset = header.getInt(index);
+    if (offset != 0) {
+      Long newOffset = moved.get((long) offset);
+      if (newOffset == null) {
+        throw new IllegalStateException("No chunk at package offset " + offset);
+      }
+      header.putInt(index, newOffset.intValue());
+    }
+  }
+
+  private static void put(Map<Long, byte[]> edits, long offset, byte[] bytes) {
+    byte[] prev = edits.put(offset, bytes);
+    if (prev != null && !Arrays.equals(prev, bytes)) {
+      throw new IllegalStateException("Conflicting edits at " + offset);
+    }
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] c = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, c, a.length, b.length);
+    return c;
+  }
+
+  private static int totalSize(byte[] chunk) {
+    return ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN).getInt(4);
+  }
+
+  private static ByteBuffer readHeader(FileChannel in, long offset) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HSIZE).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(in, header, offset);
+    return header;
+  }
+
+  private static void readFully(FileChannel in, ByteBuffer buf, long position)
+      throws IOException {
+    while (buf.hasRemaining()) {
+      int n = in.read(buf, position + buf.position());
+      if (n < 0) {
+        throw new IllegalStateException("Offset beyond end of file: " + position);
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining()) {
+      out.write(buf);
+    }
+  }
+
+  /**
+   * Copies a range of the input to the current position of the output.
+   */
+  private static void transfer(FileChannel in, FileChannel out, long position, long count)
+      throws IOException {
+    while (count > 0) {
+      long n = in.transferTo(position, count, out);
+      if (n <= 0) {
+        throw new IllegalStateException("Offset beyond end of file: " + position);
+      }
+      position += n;
+      count -= n;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Positioned writes that apply a set of edits to one file, keyed by the SHA-256 hash of the
+ * file's contents. Once recorded, a plan can be applied to any identical file without decoding
+ * it. Each write also records the original bytes it replaces, and all of them are checked
+ * before anything is written. A plan is saved as <b>&lt;hash&gt;.plan</b>:
+ * <pre>
+ * sha256=&lt;hash&gt;
+ * edits=&lt;edit options&gt;
+ * &lt;offset&gt; &lt;original hex&gt; &lt;replacement hex&gt;
+ * ...
+ * </pre>
+ */
+public class EditPlan {
+
+  public static final String SUFFIX = ".plan";
+
+  private static final String HASH_KEY = "sha256=";
+  private static final String EDITS_KEY = "edits=";
+
+  private final String hash;
+  private final String edits;
+  private final List<Write> writes = new ArrayList<>();
+
+  /**
+   * Creates an empty plan.
+   *
+   * @param hash content hash of the original file; see {@link #hash(String)}
+   * @param edits description of the edits, which must match for the plan to be reused
+   */
+  public EditPlan(String hash, String edits) {
+    if (edits.indexOf('\n') >= 0) {
+      throw new IllegalArgumentException("Multiline edits");
+    }
+    this.hash = hash;
+    this.edits = edits;
+  }
+
+  public String getHash() {
+    return hash;
+  }
+
+  public String getEdits() {
+    return edits;
+  }
+
+  public int size() {
+    return writes.size();
+  }
+
+  /**
+   * Adds a write replacing the given original bytes.
+   */
+  public void add(long offset, byte[] original, byte[] replacement) {
+    if (original.length != replacement.length) {
+      throw new IllegalArgumentException("Size mismatch at " + offset);
+    }
+    writes.add(new Write(offset, original, replacement));
+  }
+
+  /**
+   * Checks the original bytes of every write, and then writes the replacements.
+   *
+   * @throws IllegalStateException if the file does not match the plan
+   */
+  public void apply(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), READ, WRITE)) {
+      for (Write write : writes) {
+        ByteBuffer buf = ByteBuffer.allocate(write.original.length);
+        while (buf.hasRemaining()) {
+          if (channel.read(buf, write.offset + buf.position()) < 0) {
+            throw new IllegalStateException("Offset beyond end of file: " + write.offset);
+          }
+        }
+        if (!Arrays.equals(buf.array(), write.original)) {
+          throw new IllegalStateException("Original bytes do not match at " + write.offset);
+        }
+      }
+      for (Write write : writes) {
+        ByteBuffer buf = ByteBuffer.wrap(write.replacement);
+        while (buf.hasRemaining()) {
+          channel.write(buf, write.offset + buf.position());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the SHA-256 hash of the given file, in hex.
+   */
+  public static String hash(String filename) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+    try (InputStream in = new FileInputStream(filename)) {
+      byte[] buf = new byte[1 << 16];
+      for (int n; (n = in.read(buf)) != -1;) {
+        digest.update(buf, 0, n);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  public static File getFile(File dir, String hash) {
+    return new File(dir, hash + SUFFIX);
+  }
+
+  /**
+   * Saves this plan to the given directory, creating it if needed.
+   */
+  public void save(File dir) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create " + dir);
+    }
+    try (Writer out = new OutputStreamWriter(
+        new FileOutputStream(getFile(dir, hash)), StandardCharsets.UTF_8)) {
+      out.write(HASH_KEY + hash + "\n");
+      out.write(EDITS_KEY + edits + "\n");
+      for (Write write : writes) {
+        out.write(write.offset + " " + toHex(write.original) + " " + toHex(write.replacement)
+            + "\n");
+      }
+    }
+  }
+
+  /**
+   * Loads the plan for the given hash from the given directory.
+   *
+   * @return plan, or null if none was saved
+   */
+  public static EditPlan load(File dir, String hash) throws IOException {
+    File file = getFile(dir, hash);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+        BufferedReader in = new BufferedReader(reader)) {
+      String hashLine = in.readLine();
+      String editsLine = in.readLine();
+      if (hashLine == null || !hashLine.equals(HASH_KEY + hash)
+          || editsLine == null || !editsLine.startsWith(EDITS_KEY)) {
+        throw new IOException("Invalid plan " + file);
+      }
+      EditPlan plan = new EditPlan(hash, editsLine.substring(EDITS_KEY.length()));
+      for (String line; (line = in.readLine()) != null;) {
+        String[] fields = line.split(" ");
+        if (fields.length != 3) {
+          throw new IOException("Invalid plan " + file + ": " + line);
+        }
+        plan.add(Long.parseLong(fields[0]), fromHex(fields[1]), fromHex(fields[2]));
+      }
+      return plan;
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+      chars[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+    }
+    return new String(chars);
+  }
+
+  private static byte[] fromHex(String s) {
+    byte[] bytes = new byte[s.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+
+  private static class Write {
+
+    final long offset;
+    final byte[] original;
+    final byte[] replacement;
+
+    Write(long offset, byte[] original, byte[] replacement) {
+      this.offset = offset;
+      this.original = original;
+      this.replacement = replacement;
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of android.R.* resource names, keyed by resource id. The index is prebuilt from the
+ * <b>src/ids/android-N.properties</b> files and bundled as the <b>/android-ids.bin</b> resource:
+ * <pre>
+ * int magic, int count
+ * int[count] ids (sorted)
+ * byte[count] API level in which each id first appears
+ * int[count + 1] offsets into names
+ * byte[] UTF-8 names, without the "android:" prefix
+ * </pre>
+ * Lookups by id are binary searches; names are decoded on first use, and the map of names to
+ * indexes is built on the first lookup by name.
+ */
+public class FrameworkIds {
+
+  public static final String RESOURCE = "/android-ids.bin";
+
+  private static final int MAGIC = 0x41494458; // AIDX
+  private static final String PREFIX = "android:";
+  private static final Pattern LEVEL = Pattern.compile("android-(\\d+)");
+
+  private final int[] ids;
+  private final byte[] levels;
+  private final int[] offsets;
+  private final byte[] names;
+  private final String[] decoded;
+  private volatile Map<String, Integer> nameIndexes;
+
+  private FrameworkIds(int[] ids, byte[] levels, int[] offsets, byte[] names) {
+    this.ids = ids;
+    this.levels = levels;
+    this.offsets = offsets;
+    this.names = names;
+    this.decoded = new String[ids.length];
+  }
+
+  /**
+   * Returns the bundled index, loading it on first use.
+   */
+  public static FrameworkIds getDefault() {
+    return Holder.INSTANCE;
+  }
+
+  private static class Holder {
+
+    static final FrameworkIds INSTANCE;
+
+    static {
+      try (InputStream in = FrameworkIds.class.getResourceAsStream(RESOURCE)) {
+        if (in == null) {
+          throw new IllegalStateException("Missing " + RESOURCE);
+        }
+        INSTANCE = read(in);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+
+  public static FrameworkIds read(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+    byte[] buf = new byte[1 << 16];
+    for (int n; (n = in.read(buf)) != -1;) {
+      bytes.write(buf, 0, n);
+    }
+    ByteBuffer bb = ByteBuffer.wrap(bytes.toByteArray());
+    if (bb.getInt() != MAGIC) {
+      throw new IOException("Not a framework id index");
+    }
+    int count = bb.getInt();
+    int[] ids = new int[count];
+    bb.asIntBuffer().get(ids);
+    bb.position(bb.position() + 4 * count);
+    byte[] levels = new byte[count];
+    bb.get(levels);
+    int[] offsets = new int[count + 1];
+    bb.asIntBuffer().get(offsets);
+    bb.position(bb.position() + 4 * (count + 1));
+    byte[] names = new byte[offsets[count]];
+    bb.get(names);
+    return new FrameworkIds(ids, levels, offsets, names);
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  public int getId(int index) {
+    return ids[index];
+  }
+
+  /**
+   * Returns the API level in which the id at the given index first appears.
+   */
+  public int getApiLevel(int index) {
+    return levels[index] & 0xFF;
+  }
+
+  /**
+   * Returns the name at the given index, such as <b>android:attr/label</b>.
+   */
+  public String getName(int index) {
+    String name = decoded[index];
+    if (name == null) {
+      name = PREFIX + new String(names, offsets[index], offsets[index + 1] - offsets[index],
+          StandardCharsets.UTF_8);
+      decoded[index] = name;
+    }
+    return name;
+  }
+
+  /**
+   * Returns the index of the given id, or a negative value if not found.
+   */
+  public int indexOf(int id) {
+    return Arrays.binarySearch(ids, id);
+  }
+
+  /**
+   * Returns the index of the given name, such as <b>android:attr/label</b>, or -1 if not found.
+   */
+  public int indexOf(String name) {
+    if (!name.startsWith(PREFIX)) {
+      return -1;
+    }
+    Map<String, Integer> map = nameIndexes;
+    if (map == null) {
+      map = new HashMap<>(2 * ids.length);
+      for (int i = 0; i < ids.length; i++) {
+        map.putIfAbsent(new String(names, offsets[i], offsets[i + 1] - offsets[i],
+            StandardCharsets.UTF_8), i);
+      }
+      nameIndexes = map;
+    }
+    Integer index = map.get(name.substring(PREFIX.length()));
+    return (index != null) ? index : -1;
+  }
+
+  /**
+   * Returns the name of the given id in any API level, or null.
+   */
+  public String get(int id) {
+    int index = indexOf(id);
+    return index >= 0 ? getName(index) : null;
+  }
+
+  /**
+   * Returns the name of the given id if it is defined in the given API level, or null.
+   */
+  public String get(int id, int apiLevel) {
+    int index = indexOf(id);
+    return index >= 0 && getApiLevel(index) <= apiLevel ? getName(index) : null;
+  }
+
+  /**
+   * Writes an index of the given names, keyed by API level and then by id. Each id is recorded
+   * with the lowest API level that defines it, and the name from the highest.
+   */
+  public static void write(Map<Integer, Map<Integer, String>> levels, OutputStream out)
+      throws IOException {
+    Map<Integer, String> names = new TreeMap<>();
+    Map<Integer, Integer> since = new TreeMap<>();
+    new TreeMap<>(levels).forEach((level, map) -> {
+      if (level < 1 || level > 0xFF) {
+        throw new IllegalArgumentException("API level " + level);
+      }
+      map.forEach((id, name) -> {
+        if (!name.startsWith(PREFIX)) {
+          throw new IllegalArgumentException(name);
+        }
+        names.put(id, name.substring(PREFIX.length()));
+        since.putIfAbsent(id, level);
+      });
+    });
+    Integer[] keys = names.keySet().toArray(new Integer[names.size()]); // sorted
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(keys.length);
+    for (int id : keys) {
+      data.writeInt(id);
+    }
+    for (int id : keys) {
+      data.writeByte(since.get(id));
+    }
+    ByteArrayOutputStream utf8 = new ByteArrayOutputStream();
+    for (int id : keys) {
+      data.writeInt(utf8.size());
+      byte[] bytes = names.get(id).getBytes(StandardCharsets.UTF_8);
+      utf8.write(bytes, 0, bytes.length);
+    }
+    data.writeInt(utf8.size());
+    utf8.writeTo(data);
+    data.flush();
+  }
+
+  /**
+   * Generates the index from properties files named <b>android-N.properties</b>.
+   *
+   * @param args output file followed by properties files
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      Log.e("Usage: FrameworkIds <output> <android-N.properties>...");
+      System.exit(1);
+      return;
+    }
+    Map<Integer, Map<Integer, String>> levels = new TreeMap<>();
+    for (int i = 1; i < args.length; i++) {
+      Matcher m = LEVEL.matcher(args[i]);
+      if (!m.find()) {
+        throw new IllegalArgumentException("No API level in " + args[i]);
+      }
+      Properties props = new Properties();
+      try (InputStream in = new FileInputStream(args[i])) {
+        props.load(in);
+      }
+      Map<Integer, String> map = new TreeMap<>();
+      props.stringPropertyNames().forEach((key) -> {
+        map.put(Integer.decode(key), props.getProperty(key));
+      });
+      levels.put(Integer.valueOf(m.group(1)), map);
+    }
+    try (OutputStream out = new FileOutputStream(args[0])) {
+      write(levels, out);
+    }
+    Log.i("Wrote " + args[0]);
+  }
+}
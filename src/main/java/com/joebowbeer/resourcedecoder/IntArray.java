@@ -0,0 +1,53 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of primitive ints.
+ */
+public class IntArray {
+
+  private int[] values;
+  private int size;
+
+  public IntArray() {
+    this(16);
+  }
+
+  public IntArray(int capacity) {
+    values = new int[Math.max(capacity, 1)];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int get(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    return values[index];
+  }
+
+  public void set(int index, int value) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    values[index] = value;
+  }
+
+  public void add(int value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = value;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+}
@@ -0,0 +1,136 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map with primitive int keys.
+ *
+ * @param <V> value type
+ */
+public class IntMap<V> {
+
+  /**
+   * Receives the entries of a map.
+   *
+   * @param <V> value type
+   */
+  public interface Visitor<V> {
+    void visit(int key, V value);
+  }
+
+  private int[] keys;
+  private Object[] values;
+  private int size;
+  private boolean hasZero; // zero is the empty slot marker
+  private V zeroValue;
+
+  public IntMap() {
+    this(16);
+  }
+
+  public IntMap(int capacity) {
+    int n = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1);
+    keys = new int[n];
+    values = new Object[n];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(int key) {
+    return key == 0 ? hasZero : keys[slot(key)] == key;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(int key) {
+    if (key == 0) {
+      return zeroValue;
+    }
+    int i = slot(key);
+    return keys[i] == key ? (V) values[i] : null;
+  }
+
+  /**
+   * Associates the value with the key, and returns the previous value, or null.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(int key, V value) {
+    if (key == 0) {
+      V prev = zeroValue;
+      if (!hasZero) {
+        hasZero = true;
+        size++;
+      }
+      zeroValue = value;
+      return prev;
+    }
+    int i = slot(key);
+    if (keys[i] == key) {
+      V prev = (V) values[i];
+      values[i] = value;
+      return prev;
+    }
+    keys[i] = key;
+    values[i] = value;
+    if (++size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+    return null;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, 0);
+    Arrays.fill(values, null);
+    hasZero = false;
+    zeroValue = null;
+    size = 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void forEach(Visitor<? super V> visitor) {
+    if (hasZero) {
+      visitor.visit(0, zeroValue);
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != 0) {
+        visitor.visit(keys[i], (V) values[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns the slot holding the given non-zero key, or the empty slot where it belongs.
+   */
+  private int slot(int key) {
+    int mask = keys.length - 1;
+    int i = mix(key) & mask;
+    while (keys[i] != 0 && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new int[capacity];
+    values = new Object[capacity];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int j = slot(oldKeys[i]);
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+
+  static int mix(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
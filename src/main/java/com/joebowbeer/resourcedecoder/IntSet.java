@@ -0,0 +1,99 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of primitive ints.
+ */
+public class IntSet {
+
+  private int[] keys;
+  private int size;
+  private boolean hasZero; // zero is the empty slot marker
+
+  public IntSet() {
+    this(16);
+  }
+
+  public IntSet(int capacity) {
+    keys = new int[Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1)];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int key) {
+    return key == 0 ? hasZero : keys[slot(key)] == key;
+  }
+
+  /**
+   * Adds the key, and returns true if it was not already present.
+   */
+  public boolean add(int key) {
+    if (key == 0) {
+      if (hasZero) {
+        return false;
+      }
+      hasZero = true;
+    } else {
+      int i = slot(key);
+      if (keys[i] == key) {
+        return false;
+      }
+      keys[i] = key;
+      if ((size + 1) * 2 > keys.length) {
+        rehash(keys.length * 2);
+      }
+    }
+    size++;
+    return true;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, 0);
+    hasZero = false;
+    size = 0;
+  }
+
+  /**
+   * Returns the keys in ascending order.
+   */
+  public int[] toArray() {
+    int[] array = new int[size];
+    int n = 0;
+    if (hasZero) {
+      array[n++] = 0;
+    }
+    for (int key : keys) {
+      if (key != 0) {
+        array[n++] = key;
+      }
+    }
+    Arrays.sort(array);
+    return array;
+  }
+
+  private int slot(int key) {
+    int mask = keys.length - 1;
+    int i = IntMap.mix(key) & mask;
+    while (keys[i] != 0 && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    keys = new int[capacity];
+    for (int key : oldKeys) {
+      if (key != 0) {
+        keys[slot(key)] = key;
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes newline-delimited JSON records. Each record is assembled in a reusable buffer and written
+ * to the output when it ends, so no intermediate tree is built.
+ */
+public class JsonRecordWriter {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final Writer out;
+
+  private final StringBuilder sb = new StringBuilder(256);
+
+  private boolean first;
+
+  public JsonRecordWriter(OutputStream out) {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+  }
+
+  public JsonRecordWriter beginRecord() {
+    sb.setLength(0);
+    return beginObject();
+  }
+
+  public void endRecord() {
+    endObject();
+    sb.append('\n');
+    try {
+      out.append(sb);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  public JsonRecordWriter beginObject() {
+    sb.append('{');
+    first = true;
+    return this;
+  }
+
+  public JsonRecordWriter endObject() {
+    sb.append('}');
+    first = false;
+    return this;
+  }
+
+  public JsonRecordWriter beginArray(String name) {
+    name(name).append('[');
+    first = true;
+    return this;
+  }
+
+  public JsonRecordWriter endArray() {
+    sb.append(']');
+    first = false;
+    return this;
+  }
+
+  /**
+   * Begins an object inside the current array.
+   */
+  public JsonRecordWriter beginElement() {
+    if (!first) {
+      sb.append(',');
+    }
+    return beginObject();
+  }
+
+  public JsonRecordWriter field(String name, String value) {
+    if (value == null) {
+      name(name).append("null");
+    } else {
+      string(name(name), value);
+    }
+    return this;
+  }
+
+  /**
+   * Writes the formatted value, appending it directly to the record unless it is a string.
+   */
+  public JsonRecordWriter field(String name, ResourceValue value, StringPool pool) {
+    if (value.type == ResourceValue.TYPE_STRING) {
+      return field(name, value.format(pool));
+    }
+    // formatted non-string values need no escaping
+    value.format(pool, name(name).append('"')).append('"');
+    return this;
+  }
+
+  public JsonRecordWriter field(String name, long value) {
+    name(name).append(value);
+    return this;
+  }
+
+  public JsonRecordWriter field(String name, boolean value) {
+    name(name).append(value);
+    return this;
+  }
+
+  public void flush() {
+    try {
+      out.flush();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private StringBuilder name(String name) {
+    if (!first) {
+      sb.append(',');
+    }
+    first = false;
+    return string(sb, name).append(':');
+  }
+
+  private static StringBuilder string(StringBuilder sb, String s) {
+    sb.append('"');
+    for (int i = 0, n = s.length(); i < n; i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    return sb.append('"');
+  }
+}
@@ -1,17 +1,36 @@
 package com.joebowbeer.resourcedecoder;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import nu.xom.Attribute;
 import nu.xom.Document;
@@ -24,6 +43,13 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.hexId;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.trimType;
+
 public class Main {
 
   private static final String VERSION_STRING =
@@ -41,18 +67,95 @@ public class Main {
     // create command line options
     Options options = new Options();
     options.addOption(Option.builder("file")
-        .desc("file to modify")
+        .desc("file to modify; with -out, - reads standard input")
         .argName("file")
         .hasArg()
         .build());
+    options.addOption(Option.builder("entry")
+        .desc("decode or modify the named entry of the APK given by -file,"
+            + " e.g. resources.arsc")
+        .argName("name")
+        .hasArg()
+        .build());
     options.addOption(Option.builder("dump")
         .desc("dump file to stdout")
         .build());
+    options.addOption(Option.builder("stream")
+        .desc("with -dump, write elements as they are decoded")
+        .build());
+    options.addOption(Option.builder("ndjson")
+        .desc("with -dump, write one JSON record per entry or node")
+        .build());
+    options.addOption(Option.builder("shard")
+        .desc("dump each resource type to its own file in directory")
+        .argName("dir")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("shardby")
+        .desc("with -shard, split by \"type\" (default) or \"package\"")
+        .argName("mode")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("export")
+        .desc("write table values as columnar files to directory")
+        .argName("dir")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("index")
+        .desc("write an index of the table values to file, unless it is up to date")
+        .argName("file")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("lookup")
+        .desc("with -index, print the values of the named resource, e.g. color/background,"
+            + " com.example:color/background, R.color.background or 0x7f040000;"
+            + " may be repeated")
+        .argName("name")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("device")
+        .desc("print the values that a device with these qualifiers would see,"
+            + " e.g. en-rUS-port-xhdpi-v21")
+        .argName("qualifiers")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("find")
+        .desc("print the string values that contain this text, with their resource ids and"
+            + " configurations; may be repeated, and exits with status 2 if any text is not found")
+        .argName("text")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("diff")
+        .desc("print the values or elements that differ from those of an older file,"
+            + " and exit with status 1 if any differ")
+        .argName("file")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("config")
+        .desc("only decode configurations with these qualifiers, e.g. en,hdpi")
+        .argName("qualifiers")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("package")
+        .desc("only decode packages with these ids, e.g. 0x7f")
+        .argName("id,...")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("type")
+        .desc("only decode resources of these types, e.g. string,bool")
+        .argName("type,...")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("name")
+        .desc("only decode resources whose names match pattern; may be repeated")
+        .argName("pattern")
+        .hasArg()
+        .build());
     options.addOption(Option.builder("version")
         .desc("print version and exit")
         .build());
     options.addOption(Option.builder("R")
-        .desc("assign value to given resource")
+        .desc("assign value to given resource; name may contain * or a regex")
         .argName("resource=value")
         .numberOfArgs(2)
         .valueSeparator()
@@ -62,27 +165,161 @@ public class Main {
         .argName("pattern")
         .hasArg()
         .build());
+    options.addOption(Option.builder("A")
+        .desc("assign typed value to attribute of matching xml elements,"
+            + " e.g. application@android:debuggable=false")
+        .argName("selector@attr=value")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("I")
+        .desc("insert element as the last child of matching xml elements,"
+            + " e.g. manifest=uses-permission[android:name=android.permission.CAMERA]")
+        .argName("parent=element")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("plan")
+        .desc("with -R, -A or -X, apply or record an edit plan for files with identical contents")
+        .argName("dir")
+        .hasArg()
+        .build());
+    options.addOption(Option.builder("compact")
+        .desc("with -X, cut matched elements from the file instead of skipping them")
+        .build());
+    options.addOption(Option.builder("out")
+        .desc("with -R, -A or -X, write an edited copy to file, or - for stdout,"
+            + " reading the input only once")
+        .argName("file")
+        .hasArg()
+        .build());
 
     // parse the command line arguments
     String filename;
+    String entryName;
     Properties resProps;
+    Properties attrProps;
     Set<String> xmlRemovals;
+    Set<String> xmlInsertions;
+    boolean compact;
+    String planDir;
+    String outName;
     boolean dump;
+    boolean stream;
+    boolean ndjson;
+    String exportDir;
+    String indexName;
+    List<String> lookups;
+    String diffName;
+    boolean decodeOutput;
+    boolean decodeCmd;
+    Set<String> finds;
+    String shardDir;
+    TableContentToShards.Mode shardMode;
+    ResourceConfigFilter configFilter;
+    ResourceConfig device;
+    ResourceFilter resourceFilter = null;
+    String filters;
     try {
       CommandLine line = new DefaultParser().parse(options, args);
       filename = line.getOptionValue("file");
+      entryName = line.getOptionValue("entry");
       resProps = line.getOptionProperties("R");
       xmlRemovals = line.getOptionProperties("X").stringPropertyNames();
+      xmlInsertions = new LinkedHashSet<>(optionValues(line, "I"));
+      for (String edit : xmlInsertions) {
+        if (XmlElementInserter.indexOfElement(edit) <= 0) {
+          throw new ParseException("Invalid element edit: " + edit);
+        }
+      }
+      compact = line.hasOption("compact");
+      planDir = line.getOptionValue("plan");
+      outName = line.getOptionValue("out");
+      attrProps = new Properties();
+      for (String edit : optionValues(line, "A")) {
+        int at = XmlAttributeMatcher.indexOfAttribute(edit);
+        int eq = edit.indexOf('=', at + 1);
+        if (at <= 0 || eq < 0) {
+          throw new ParseException("Invalid attribute edit: " + edit);
+        }
+        attrProps.setProperty(edit.substring(0, eq), edit.substring(eq + 1));
+      }
       dump = line.hasOption("dump");
+      stream = line.hasOption("stream");
+      ndjson = line.hasOption("ndjson");
+      exportDir = line.getOptionValue("export");
+      indexName = line.getOptionValue("index");
+      lookups = optionValues(line, "lookup");
+      diffName = line.getOptionValue("diff");
+      finds = new LinkedHashSet<>(optionValues(line, "find"));
+      shardDir = line.getOptionValue("shard");
+      try {
+        device = line.hasOption("device")
+            ? ResourceConfig.parse(line.getOptionValue("device")) : null;
+      } catch (IllegalArgumentException ex) {
+        throw new ParseException(ex.getMessage());
+      }
+      configFilter = line.hasOption("config")
+          ? ResourceConfigFilter.parse(line.getOptionValue("config")) : null;
+      if (line.hasOption("package") || line.hasOption("type") || line.hasOption("name")) {
+        List<Integer> packageIds = new ArrayList<>();
+        for (String id : splitValues(line, "package")) {
+          try {
+            packageIds.add(Integer.decode(id));
+          } catch (NumberFormatException ex) {
+            throw new ParseException("Invalid package id: " + id);
+          }
+        }
+        resourceFilter = new ResourceFilter(packageIds, splitValues(line, "type"),
+            optionValues(line, "name"));
+      }
+      filters = describeFilters(line);
+      try {
+        shardMode = TableContentToShards.Mode.valueOf(
+            line.getOptionValue("shardby", "type").toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException ex) {
+        throw new ParseException("Invalid shard mode");
+      }
       if (line.hasOption("version")) {
         Log.i(VERSION_STRING);
         System.exit(0);
         return;
       }
-      boolean fileCmd = dump || !resProps.isEmpty() || !xmlRemovals.isEmpty();
-      if (filename == null || !fileCmd) {
+      // options that write decoded content, so a saved edit plan cannot replace the decode
+      decodeOutput = dump || exportDir != null || shardDir != null || device != null
+          || !finds.isEmpty();
+      decodeCmd = decodeOutput
+          || !resProps.isEmpty() || !xmlRemovals.isEmpty() || !attrProps.isEmpty()
+          || !xmlInsertions.isEmpty();
+      boolean fileCmd = decodeCmd || diffName != null;
+      if (fileCmd ? filename == null
+          : indexName == null || filename == null && lookups.isEmpty()) {
         throw new ParseException("Missing option");
       }
+      if (!lookups.isEmpty() && indexName == null) {
+        throw new ParseException("-lookup requires -index");
+      }
+      if ((indexName != null || diffName != null) && "-".equals(filename)) {
+        throw new ParseException("-index and -diff cannot read standard input");
+      }
+      if (compact && !xmlInsertions.isEmpty()) {
+        throw new ParseException("-I cannot be combined with -compact");
+      }
+      if (outName != null) {
+        if (entryName != null || planDir != null || compact || !xmlInsertions.isEmpty()) {
+          throw new ParseException("-out cannot be combined with -entry, -plan, -compact or -I");
+        }
+        if (resProps.isEmpty() && xmlRemovals.isEmpty() && attrProps.isEmpty()) {
+          throw new ParseException("-out requires -R, -A or -X");
+        }
+        if ("-".equals(outName) && dump) {
+          throw new ParseException("-dump cannot write to stdout with -out -");
+        }
+        if ("-".equals(filename) && (dump && stream || shardDir != null)) {
+          // these read the file twice
+          throw new ParseException("-stream and -shard cannot read standard input");
+        }
+      } else if ("-".equals(filename)) {
+        throw new ParseException("Standard input requires -out");
+      }
     } catch (ParseException ex) {
       Log.i(VERSION_STRING);
       Log.e("Command parsing failed: " + ex.getMessage());
@@ -91,6 +328,59 @@ public class Main {
       return;
     }
 
+    String apkName = null;
+    if (entryName != null) {
+      // work on a copy of the entry, and update the archive when done
+      apkName = filename;
+      filename = extractEntry(apkName, entryName).getPath();
+    }
+
+    if (indexName != null) {
+      ResourceIndex index = updateIndex(filename, new File(indexName));
+      boolean found = true;
+      for (String name : lookups) {
+        found &= lookup(index, name);
+      }
+      if (!found) {
+        System.exit(2);
+        return;
+      }
+      if (!decodeCmd && diffName == null) {
+        return;
+      }
+    }
+
+    boolean differs = false;
+    if (diffName != null) {
+      differs = diff(diffName, filename);
+      if (!decodeCmd) {
+        if (differs) {
+          System.exit(1);
+        }
+        return;
+      }
+    }
+
+    EditPlan plan = null;
+    if (planDir != null && (!resProps.isEmpty() || !attrProps.isEmpty() || !xmlRemovals.isEmpty()
+        || !xmlInsertions.isEmpty())) {
+      String hash = EditPlan.hash(filename);
+      String edits = describeEdits(resProps, attrProps, xmlRemovals, xmlInsertions, compact,
+          filters);
+      EditPlan saved = EditPlan.load(new File(planDir), hash);
+      if (saved != null && saved.getEdits().equals(edits) && !decodeOutput) {
+        // identical file and edits: no need to decode
+        Log.i("Applying plan " + hash + " to " + filename);
+        saved.apply(filename);
+        Log.i("Success");
+        if (apkName != null) {
+          updateEntry(apkName, entryName, filename);
+        }
+        return;
+      }
+      plan = new EditPlan(hash, edits);
+    }
+
     /* Create chain of content handlers */
     ContentHandler handler = new ContentFilter();
 
@@ -105,86 +395,456 @@ public class Main {
       handler = xmlMatcher = new XmlElementMatcher(xmlRemovals, handler);
     }
 
-    if (dump) {
-      handler = new TableContentToDocument(new XmlContentToDocument(handler));
+    XmlAttributeMatcher attrMatcher = null;
+    if (!attrProps.isEmpty()) {
+      handler = attrMatcher = new XmlAttributeMatcher(attrProps.stringPropertyNames(), handler);
+    }
+
+    XmlElementInserter inserter = null;
+    if (!xmlInsertions.isEmpty()) {
+      handler = inserter = new XmlElementInserter(xmlInsertions, handler);
+    }
+
+    TableConfigResolver resolver = null;
+    if (device != null) {
+      handler = resolver = new TableConfigResolver(device, handler);
+    }
+
+    TableStringFinder finder = null;
+    if (!finds.isEmpty()) {
+      handler = finder = new TableStringFinder(finds, handler);
+    }
+
+    TableColumnExporter exporter = null;
+    if (exportDir != null) {
+      handler = exporter = new TableColumnExporter(handler);
+    }
+
+    ResourceNames names = null;
+    if (dump && stream || shardDir != null) {
+      // collect declarations first, so that forward references resolve as they are written
+      TableDeclarations declarations = new TableDeclarations();
+      decode(filename, declarations);
+      names = resolveNames(declarations.getDeclarations());
+    }
+
+    TableContentToShards sharder = null;
+    if (shardDir != null) {
+      File dir = new File(shardDir);
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Cannot create " + dir);
+      }
+      int threads = Runtime.getRuntime().availableProcessors();
+      handler = sharder = new TableContentToShards(dir, shardMode, names, threads, handler);
+    }
+
+    if (dump && ndjson) {
+      JsonRecordWriter output = new JsonRecordWriter(System.out);
+      handler = new TableContentToJson(output, new XmlContentToJson(output, handler));
+    } else if (dump && stream) {
+      StreamingSerializer tableOutput = new StreamingSerializer(names, System.out);
+      StreamingSerializer xmlOutput = new StreamingSerializer(null, System.out);
+      configure(tableOutput);
+      configure(xmlOutput);
+      handler = new TableContentToStream(tableOutput, new XmlContentToStream(xmlOutput, handler));
+    } else if (dump) {
+      TableContentToDocument tableDoc =
+          new TableContentToDocument(new XmlContentToDocument(handler));
+      tableDoc.setResolveNames(FrameworkIds.getDefault());
+      handler = tableDoc;
     }
 
     /* Decode */
-    Log.i("Reading " + filename);
-    try (ResourceInputStream in = new ResourceInputStream(
-        new BufferedInputStream(new FileInputStream(filename)))) {
-      new ResourceDecoder(handler).decode(in);
+    try {
+      if (outName != null) {
+        // edit while copying
+        StreamingEditor editor = new StreamingEditor(handler);
+        if (resMatcher != null) {
+          editor.setResourceEdits(resMatcher, resProps);
+        }
+        if (attrMatcher != null) {
+          editor.setAttributeEdits(attrMatcher, attrProps);
+        }
+        if (xmlMatcher != null) {
+          editor.setElementRemovals(xmlMatcher);
+        }
+        handler = editor;
+        streamEdits(filename, outName, editor, configFilter, resourceFilter);
+      } else {
+        decode(filename, handler, configFilter, resourceFilter);
+      }
+    } catch (IOException | RuntimeException ex) {
+      if (sharder != null) {
+        sharder.shutdownNow();
+      }
+      discardOutput(outName);
+      throw ex;
     }
 
     /* Dump */
     for (; handler != null; handler = ((ContentFilter) handler).getParent()) {
-      if (handler instanceof DocumentBuilder) {
+      if (handler instanceof TableContentToDocument && names != null) {
+        // streamed or sharded using names resolved before decoding
+        if (handler instanceof TableContentToShards) {
+          int count = ((TableContentToShards) handler).awaitShards();
+          Log.i("Wrote " + count + " shards to " + shardDir);
+        }
+        logUnresolved(names, ((TableContentToDocument) handler).getReferences());
+      } else if (handler instanceof DocumentBuilder) {
         Document doc = ((DocumentBuilder) handler).toDocument();
         if (doc != null) {
           OutputStream os = System.out;
           Serializer output = (handler instanceof TableContentToDocument)
               ? createSerializer((TableContentToDocument) handler, os)
               : new Serializer(os);
-          output.setIndent(4);
-          output.setMaxLength(72);
+          configure(output);
           output.write(doc);
           output.flush();
         }
       }
     }
 
+    /* Export */
+    if (exporter != null) {
+      Log.i("Exporting " + exporter.getRowCount() + " values to " + exportDir);
+      exporter.write(new File(exportDir));
+    }
+
+    /* Resolve */
+    if (resolver != null) {
+      Log.i("Resolving " + resolver.getResolved().size() + " resources for "
+          + resolver.getDevice().qualifiers());
+      StringPool pool = resolver.getValuePool();
+      for (Map.Entry<Integer, List<ResourceMatch>> e : resolver.getResolved().entrySet()) {
+        for (ResourceMatch match : e.getValue()) {
+          String config = match.config.qualifiers();
+          System.out.println(match.offset + ": " + hexId(e.getKey()) + " " + match.name
+              + (config.isEmpty() ? "" : "-" + config) + "=" + match.value.format(pool));
+        }
+      }
+    }
+
+    /* Find */
+    if (finder != null) {
+      Log.i("Found " + finder.getResourceMatches().size() + " matches of "
+          + finder.getFound());
+      StringPool pool = finder.getValuePool();
+      List<Integer> ids = finder.getResourceIds();
+      for (int i = 0; i < ids.size(); i++) {
+        ResourceMatch match = finder.getResourceMatches().get(i);
+        String config = match.config.qualifiers();
+        System.out.println(match.offset + ": " + hexId(ids.get(i)) + " " + match.name
+            + (config.isEmpty() ? "" : "-" + config) + "=" + match.value.format(pool)
+            + " (" + match.pattern + ")");
+      }
+      Set<String> missing = new LinkedHashSet<>(finds);
+      missing.removeAll(finder.getFound());
+      if (!missing.isEmpty()) {
+        Log.e("No values contain " + missing);
+        discardOutput(outName);
+        System.exit(2);
+        return;
+      }
+    }
+
     /* Apply edits */
+    boolean planned = true;
     if (resMatcher != null) {
       Map<String, List<Long>> matches = resMatcher.getMatches();
-      if (!resMatcher.getPatterns().equals(matches.keySet())) {
+      if (!resMatcher.getPatterns().equals(resMatcher.getMatched())) {
         Log.e("Some resources were not matched " + resMatcher.getPatterns());
+        discardOutput(outName);
         System.exit(2);
         return;
       }
       Log.i("Found: " + matches);
-      editResourceValues(filename, resProps, matches);
+      if (outName == null) {
+        planned &= editResourceValues(filename, resProps, resMatcher, plan);
+      }
     }
 
-    if (xmlMatcher != null) {
+    if (attrMatcher != null) {
+      Map<String, List<Long>> matches = attrMatcher.getMatches();
+      if (!attrMatcher.getPatterns().equals(matches.keySet())) {
+        Log.e("Some attributes were not matched " + attrMatcher.getPatterns());
+        discardOutput(outName);
+        System.exit(2);
+        return;
+      }
+      Log.i("Found: " + matches);
+      Set<String> strings = new LinkedHashSet<>();
+      for (ResourceMatch match : attrMatcher.getResourceMatches()) {
+        if (match.value.type == ResourceValue.TYPE_STRING) {
+          strings.add(match.name);
+        }
+      }
+      if (!strings.isEmpty()) {
+        Log.e("Cannot assign string attributes " + strings);
+        discardOutput(outName);
+        System.exit(2);
+        return;
+      }
+      if (outName == null) {
+        editXmlAttributes(filename, attrProps, attrMatcher.getResourceMatches(), plan);
+      }
+    }
+
+    if (xmlMatcher != null && outName == null) {
       Set<Chunk> changes = xmlMatcher.getChanges();
       if (changes.isEmpty()) {
         Log.i("No match for elements " + xmlMatcher.getSelectors());
       } else {
         Log.i("Removing elements " + xmlMatcher.getSelectors());
-        removeXmlElements(filename, changes);
+        if (compact) {
+          compactXmlElements(filename, xmlMatcher.getRemovals());
+          planned = false;
+        } else {
+          removeXmlElements(filename, changes, plan);
+        }
+      }
+    }
+
+    if (inserter != null) {
+      Map<String, List<Long>> matches = inserter.getMatches();
+      if (!inserter.getEdits().equals(matches.keySet())) {
+        Log.e("Some parent elements were not matched " + inserter.getEdits());
+        System.exit(2);
+        return;
+      }
+      Log.i("Found: " + matches);
+      if (inserter.size() == 0) {
+        Log.i("Elements already present");
+      } else {
+        insertXmlElements(filename, inserter);
+        planned = false;
+      }
+    }
+
+    if (plan != null) {
+      if (planned) {
+        plan.save(new File(planDir));
+        Log.i("Saved plan " + plan.getHash() + " with " + plan.size() + " writes");
+      } else {
+        Log.i("Edits changed the size of the file; plan not saved");
+      }
+    }
+
+    /* Update archive */
+    if (apkName != null) {
+      updateEntry(apkName, entryName, filename);
+    }
+
+    if (differs) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Prints the differences from the old file to the new, and returns true if there are any.
+   */
+  protected static boolean diff(String oldName, String newName) throws IOException {
+    ResourceDiff diff = new ResourceDiff(oldName, newName);
+    List<ResourceDiff.Difference> diffs = diff.diff();
+    Log.i("Found " + diffs.size() + " differences; decoded " + diff.getDecodedChunks()
+        + " type chunks and skipped " + diff.getSkippedChunks());
+    for (ResourceDiff.Difference d : diffs) {
+      System.out.println(d);
+    }
+    return !diffs.isEmpty();
+  }
+
+  /**
+   * Returns the index of the given file, writing it first if it is missing or out of date. The
+   * index is out of date if the file's size or modification time has changed.
+   *
+   * @param filename the indexed file, or null to use the index as it is
+   */
+  protected static ResourceIndex updateIndex(String filename, File indexFile)
+      throws IOException {
+    if (filename == null) {
+      return ResourceIndex.open(indexFile);
+    }
+    File file = new File(filename);
+    // read the stamp before decoding, so that a concurrent change is caught by the next run
+    long fileSize = file.length();
+    long lastModified = file.lastModified();
+    if (indexFile.isFile()) {
+      try {
+        ResourceIndex index = ResourceIndex.open(indexFile);
+        if (index.isCurrent(file)) {
+          return index;
+        }
+      } catch (IOException ex) {
+        Log.i("Rebuilding " + indexFile + ": " + ex.getMessage());
+      }
+    }
+    String hash = EditPlan.hash(filename);
+    TableIndexBuilder builder = new TableIndexBuilder();
+    decode(filename, builder);
+    Log.i("Writing index of " + builder.size() + " resources to " + indexFile);
+    builder.write(indexFile, hash, fileSize, lastModified);
+    return ResourceIndex.open(indexFile);
+  }
+
+  /**
+   * Prints the values of the given resource, and returns false if it is not found.
+   */
+  protected static boolean lookup(ResourceIndex index, String name) {
+    int i;
+    if (name.startsWith("0x")) {
+      i = index.indexOf(Integer.parseUnsignedInt(name.substring(2), 16));
+    } else if (name.startsWith("R.") && name.indexOf('.', 2) > 0) {
+      i = index.indexOf(name.substring(2).replaceFirst("\\.", "/"));
+    } else {
+      i = index.indexOf(name);
+    }
+    if (i < 0) {
+      Log.e("Resource not found: " + name);
+      return false;
+    }
+    String resName = index.getName(i);
+    for (int v = index.getFirstValue(i), end = v + index.getValueCount(i); v < end; v++) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(index.getOffset(v)).append(": ").append(hexId(index.getId(i))).append(' ')
+          .append(resName);
+      String config = index.getConfig(v);
+      if (!config.isEmpty()) {
+        sb.append('-').append(config);
+      }
+      if (index.getItemName(v) != 0) {
+        sb.append('[').append(hexId(index.getItemName(v))).append(']');
+      }
+      sb.append('=');
+      ResourceValue value = index.getValue(v);
+      int ref = index.indexOf(value.intValue());
+      if (value.type == ResourceValue.TYPE_STRING) {
+        sb.append(index.getText(v));
+      } else if (value.type == ResourceValue.TYPE_REFERENCE && ref >= 0) {
+        // resolve local references
+        sb.append('@').append(index.getName(ref));
+      } else {
+        value.format(null, sb);
+      }
+      System.out.println(sb);
+    }
+    return true;
+  }
+
+  /**
+   * Copies the named entry of the given archive to a temporary file.
+   */
+  protected static File extractEntry(String apkName, String entryName) throws IOException {
+    try (ZipFile zip = new ZipFile(apkName)) {
+      ZipEntry entry = zip.getEntry(entryName);
+      if (entry == null) {
+        throw new FileNotFoundException(entryName + " not found in " + apkName);
       }
+      File file = File.createTempFile("entry", "-" + new File(entryName).getName());
+      file.deleteOnExit();
+      try (InputStream in = zip.getInputStream(entry)) {
+        Files.copy(in, file.toPath(), REPLACE_EXISTING);
+      }
+      return file;
+    }
+  }
+
+  /**
+   * Replaces the named entry of the given archive with the given file, if they differ.
+   */
+  protected static void updateEntry(String apkName, String entryName, String filename)
+      throws IOException {
+    byte[] data = Files.readAllBytes(Paths.get(filename));
+    byte[] orig;
+    try (ZipFile zip = new ZipFile(apkName);
+        InputStream in = zip.getInputStream(zip.getEntry(entryName))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+      byte[] buf = new byte[1 << 16];
+      for (int n; (n = in.read(buf)) != -1;) {
+        out.write(buf, 0, n);
+      }
+      orig = out.toByteArray();
+    }
+    if (!Arrays.equals(orig, data)) {
+      Log.i("Updating " + entryName + " in " + apkName);
+      ApkRewriter rewriter = new ApkRewriter();
+      rewriter.replace(entryName, data);
+      rewriter.apply(apkName);
+      Log.i("Success; " + apkName + " must be signed again");
     }
   }
 
-  protected static void editResourceValues(String filename, Properties props,
-      Map<String, List<Long>> matches) throws IOException {
+  /**
+   * Edits the matched values, and returns true if they were edited in place.
+   *
+   * @param plan records the writes if not null
+   */
+  protected static boolean editResourceValues(String filename, Properties props,
+      TableAttributeMatcher matcher, EditPlan plan) throws IOException {
     Log.i("Updating " + filename);
-    try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
-      for (Entry<String, List<Long>> entry : matches.entrySet()) {
-        String key = entry.getKey();
-        // TODO update multiple configurations?
-        long pos = entry.getValue().get(0);
-        file.seek(pos);
-        // validate size and type of new value
-        byte[] orig = new byte[4]; // TODO?
-        file.readFully(orig);
-        String value = props.getProperty(key);
-        byte[] data = ResourceValue.encode(key, value);
-        for (int i = 0; i < 4; i++) {
-          if (orig[i] != data[i]) {
-            throw new IllegalStateException();
+    ResourceValuePatcher patcher = new ResourceValuePatcher();
+    StringPoolEditor strings = null;
+    ChunkRewriter rewriter = null;
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), READ, WRITE)) {
+      for (ResourceMatch match : matcher.getResourceMatches()) {
+        String value = props.getProperty(match.pattern);
+        byte[] encoded;
+        if (match.value.type == ResourceValue.TYPE_STRING) {
+          // new strings are appended, so that other references to the old string are intact
+          if (strings == null) {
+            long offset = matcher.getValuePoolOffset();
+            strings = new StringPoolEditor(ChunkRewriter.readChunk(channel, offset),
+                matcher.getValuePool());
           }
+          encoded = ResourceValue.encode(ResourceValue.TYPE_STRING, strings.add(value));
+        } else {
+          // encode as the type of the original value
+          encoded = ResourceValue.encode(match.value.type, value);
         }
-        // write new value bytes
-        file.write(data, 4, 4); // TODO?
-        Log.i(pos + ": " + key + "=" + value);
+        patcher.add(match.offset, encoded);
+        String config = match.config.qualifiers();
+        Log.i(match.offset + ": " + match.name + (config.isEmpty() ? "" : "-" + config)
+            + "=" + value);
+      }
+      if (strings != null && strings.isModified()) {
+        rewriter = new ChunkRewriter();
+        rewriter.replace(matcher.getValuePoolOffset(), strings.toByteArray());
+        patcher.addTo(channel, rewriter);
+      } else {
+        if (plan != null) {
+          patcher.addTo(channel, plan);
+        }
+        patcher.apply(channel);
       }
     }
+    if (rewriter != null) {
+      // the string pool has grown
+      rewriter.apply(filename);
+    }
     Log.i("Success");
+    return rewriter == null;
   }
 
-  protected static void removeXmlElements(String filename, Iterable<Chunk> changes)
-      throws IOException {
+  protected static void editXmlAttributes(String filename, Properties props,
+      List<ResourceMatch> matches, EditPlan plan) throws IOException {
+    Log.i("Updating " + filename);
+    ResourceValuePatcher patcher = new ResourceValuePatcher();
+    for (ResourceMatch match : matches) {
+      String value = props.getProperty(match.pattern);
+      // encode as the type of the original value
+      patcher.add(match.offset, ResourceValue.encode(match.value.type, value));
+      Log.i(match.offset + ": " + match.name + "=" + value);
+    }
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), READ, WRITE)) {
+      if (plan != null) {
+        patcher.addTo(channel, plan);
+      }
+      patcher.apply(channel);
+    }
+    Log.i("Success");
+  }
+
+  protected static void removeXmlElements(String filename, Iterable<Chunk> changes,
+      EditPlan plan) throws IOException {
     Log.i("Updating " + filename);
     try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
       for (Chunk chunk : changes) {
@@ -196,6 +856,13 @@ public class Main {
         if (type != chunk.type || headerSize != chunk.headerSize) {
           throw new IllegalStateException();
         }
+        if (plan != null) {
+          byte[] original = new byte[4];
+          file.readFully(original);
+          file.seek(chunk.offset + 4);
+          plan.add(chunk.offset + 4, original, ByteBuffer.allocate(4)
+              .order(ByteOrder.LITTLE_ENDIAN).putInt(chunk.totalSize).array());
+        }
         // write new totalSize (LE)
         file.writeInt(intLE(chunk.totalSize));
       }
@@ -203,30 +870,227 @@ public class Main {
     Log.i("Success");
   }
 
-  protected static Serializer createSerializer(TableContentToDocument handler, OutputStream out)
+  /**
+   * Removes the given chunks from the file, and shrinks the enclosing xml chunk.
+   */
+  protected static void compactXmlElements(String filename, Iterable<Chunk> removals)
       throws IOException {
-    Map<String, String> map = new HashMap<>(handler.getDeclarations()); // clone
-    // load android.R.* identifiers
-    Properties props = new Properties();
-    props.load(Main.class.getResourceAsStream("/android.properties"));
-    props.stringPropertyNames().forEach((key) -> {
-      map.put(key, props.getProperty(key));
+    Log.i("Updating " + filename);
+    ChunkRewriter rewriter = new ChunkRewriter();
+    for (Chunk chunk : removals) {
+      Log.i(chunk);
+      rewriter.remove(chunk.offset);
+    }
+    rewriter.apply(filename);
+    Log.i("Success");
+  }
+
+  /**
+   * Inserts the located elements, appending to the string pool and resource map as needed.
+   */
+  protected static void insertXmlElements(String filename, XmlElementInserter inserter)
+      throws IOException {
+    Log.i("Updating " + filename);
+    ChunkRewriter rewriter = new ChunkRewriter();
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), READ)) {
+      inserter.addTo(channel, rewriter);
+    }
+    rewriter.apply(filename);
+    Log.i("Inserted " + inserter.size() + " elements");
+    Log.i("Success");
+  }
+
+  protected static void decode(String filename, ContentHandler handler) throws IOException {
+    decode(filename, handler, null, null);
+  }
+
+  protected static void decode(String filename, ContentHandler handler,
+      Predicate<ResourceConfig> configFilter, ResourceFilter resourceFilter) throws IOException {
+    Log.i("Reading " + filename);
+    try (InputStream in = new BufferedInputStream(new FileInputStream(filename))) {
+      decode(in, handler, configFilter, resourceFilter);
+    }
+  }
+
+  protected static void decode(InputStream stream, ContentHandler handler,
+      Predicate<ResourceConfig> configFilter, ResourceFilter resourceFilter) throws IOException {
+    try {
+      ResourceInputStream in = new ResourceInputStream(stream);
+      ResourceDecoder decoder = new ResourceDecoder(handler);
+      decoder.setConfigFilter(configFilter);
+      decoder.setResourceFilter(resourceFilter);
+      decoder.decode(in);
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Decodes the given file, or standard input, and writes the edited copy in the same pass.
+   */
+  protected static void streamEdits(String filename, String outName, StreamingEditor editor,
+      Predicate<ResourceConfig> configFilter, ResourceFilter resourceFilter) throws IOException {
+    boolean stdin = "-".equals(filename);
+    boolean stdout = "-".equals(outName);
+    Log.i("Reading " + (stdin ? "standard input" : filename));
+    InputStream in = stdin ? System.in : new FileInputStream(filename);
+    OutputStream out = stdout ? System.out : new FileOutputStream(outName);
+    try {
+      PatchingInputStream tee = new PatchingInputStream(new BufferedInputStream(in),
+          new BufferedOutputStream(out));
+      editor.setStream(tee);
+      decode(tee, editor, configFilter, resourceFilter);
+      // copy anything that follows the decoded chunk
+      tee.finish();
+    } finally {
+      if (!stdin) {
+        in.close();
+      }
+      if (!stdout) {
+        out.close();
+      }
+    }
+    Log.i("Wrote " + (stdout ? "standard output" : outName));
+  }
+
+  /**
+   * Deletes the copy written by {@link #streamEdits}, if any, because edits are missing or failed.
+   */
+  private static void discardOutput(String outName) {
+    if (outName != null && !"-".equals(outName) && new File(outName).delete()) {
+      Log.i("Deleted " + outName);
+    }
+  }
+
+  /**
+   * Returns a canonical description of the given edits.
+   */
+  private static String describeEdits(Properties resProps, Properties attrProps,
+      Set<String> xmlRemovals, Set<String> xmlInsertions, boolean compact, String filters) {
+    StringBuilder sb = new StringBuilder();
+    new TreeMap<>(resProps).forEach((name, value) -> {
+      sb.append(" -R ").append(name).append('=').append(value);
+    });
+    new TreeMap<>(attrProps).forEach((name, value) -> {
+      sb.append(" -A ").append(name).append('=').append(value);
     });
-    Set<String> unresolved = new HashSet<>(handler.getReferences()); // clone
-    unresolved.removeAll(map.keySet());
+    new TreeSet<>(xmlRemovals).forEach((pattern) -> {
+      sb.append(" -X ").append(pattern);
+    });
+    xmlInsertions.forEach((edit) -> {
+      sb.append(" -I ").append(edit);
+    });
+    if (compact) {
+      sb.append(" -compact");
+    }
+    sb.append(filters);
+    return sb.toString().trim().replace("\n", "\\n");
+  }
+
+  /**
+   * Describes the -config, -package, -type and -name filters in canonical form, since they decide
+   * which values an edit plan patches.
+   */
+  private static String describeFilters(CommandLine line) {
+    StringBuilder sb = new StringBuilder();
+    if (line.hasOption("config")) {
+      Set<String> qualifiers = new TreeSet<>();
+      for (String value : splitValues(line, "config")) {
+        qualifiers.addAll(Arrays.asList(value.trim().split("-")));
+      }
+      sb.append(" -config ").append(String.join(",", qualifiers));
+    }
+    if (line.hasOption("package")) {
+      Set<Integer> packageIds = new TreeSet<>();
+      for (String id : splitValues(line, "package")) {
+        packageIds.add(Integer.decode(id));
+      }
+      sb.append(" -package");
+      String sep = " ";
+      for (int id : packageIds) {
+        sb.append(sep).append("0x").append(Integer.toHexString(id));
+        sep = ",";
+      }
+    }
+    if (line.hasOption("type")) {
+      sb.append(" -type ").append(String.join(",", new TreeSet<>(splitValues(line, "type"))));
+    }
+    new TreeSet<>(optionValues(line, "name")).forEach((pattern) -> {
+      sb.append(" -name ").append(pattern);
+    });
+    return sb.toString();
+  }
+
+  private static List<String> optionValues(CommandLine line, String opt) {
+    String[] values = line.getOptionValues(opt);
+    return (values != null) ? Arrays.asList(values) : Collections.<String>emptyList();
+  }
+
+  private static List<String> splitValues(CommandLine line, String opt) {
+    List<String> list = new ArrayList<>();
+    for (String value : optionValues(line, opt)) {
+      list.addAll(Arrays.asList(value.split(",")));
+    }
+    return list;
+  }
+
+  protected static void configure(Serializer output) {
+    output.setIndent(4);
+    output.setMaxLength(72);
+  }
+
+  protected static Serializer createSerializer(TableContentToDocument handler, OutputStream out)
+      throws IOException {
+    if (handler.isResolvingNames()) {
+      // names were filled in while decoding
+      logUnresolved(handler.getUnresolved());
+      return new Serializer(out);
+    }
+    ResourceNames names = resolveNames(handler.getDeclarations());
+    logUnresolved(names, handler.getReferences());
+    return new TableSerializer(names, out);
+  }
+
+  /**
+   * Returns the given declarations combined with the android.R.* identifiers.
+   */
+  protected static ResourceNames resolveNames(IntMap<String> declarations) {
+    return new ResourceNames(declarations, FrameworkIds.getDefault());
+  }
+
+  protected static void logUnresolved(ResourceNames names, IntSet references) {
+    IntSet unresolved = new IntSet();
+    for (int resId : references.toArray()) {
+      if (!names.contains(resId)) {
+        unresolved.add(resId);
+      }
+    }
+    logUnresolved(unresolved);
+  }
+
+  protected static void logUnresolved(IntSet unresolved) {
     if (!unresolved.isEmpty()) {
-      Log.i("Unresolved resource ids: " + unresolved);
+      List<String> ids = new ArrayList<>(unresolved.size());
+      for (int resId : unresolved.toArray()) {
+        ids.add(hexId(resId));
+      }
+      Log.i("Unresolved resource ids: " + ids);
     }
-    return new TableSerializer(map, out);
   }
 
   protected static class TableSerializer extends Serializer {
 
-    private final Map<String, String> map;
+    private final ResourceNames names;
 
-    public TableSerializer(Map<String, String> map, OutputStream out) {
+    /**
+     * Creates a serializer that replaces resource ids with names.
+     *
+     * @param names resolved names, or null to write ids as they are
+     * @param out output stream
+     */
+    public TableSerializer(ResourceNames names, OutputStream out) {
       super(out);
-      this.map = map;
+      this.names = names;
     }
 
     @Override
@@ -235,31 +1099,20 @@ public class Main {
     }
 
     protected Attribute replaceValue(Attribute attr) {
-      String value = attr.getValue();
-      String prefix = "";
-      if (value.startsWith("@") || value.startsWith("?") || value.startsWith("$")) {
-        prefix = value.substring(0, 1);
-        value = value.substring(1);
-      }
-      if (value.startsWith("0x")) {
-        String resolved = map.get(value);
+      if (names != null && attr instanceof ReferenceAttribute) {
+        ReferenceAttribute ref = (ReferenceAttribute) attr;
+        String resolved = names.get(ref.resId);
         if (resolved != null) {
           attr = new Attribute(attr);
-          if ("$".equals(prefix)) {
+          if (ref.prefix == '$') {
             attr.setValue(trimType(resolved));
           } else {
-            attr.setValue(prefix + resolved);
+            attr.setValue(ref.prefix + resolved);
           }
         }
       }
       return attr;
     }
-
-    protected static String trimType(String s) {
-      int colon = s.indexOf(':') + 1;
-      int slash = s.indexOf('/') + 1;
-      return s.substring(0, colon) + s.substring(slash);
-    }
   }
 
   /* little-endian conversion */
@@ -0,0 +1,154 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * InputStream that copies every byte it reads, or skips, to an output stream, so that a file can
+ * be decoded and copied in one pass. Recently read bytes are held back before they are written,
+ * so that they can still be patched: at least the last {@link #LAG} bytes, and everything from
+ * the offset given to {@link #hold(long)} until {@link #release()} is called.
+ */
+public class PatchingInputStream extends FilterInputStream {
+
+  /**
+   * Number of bytes that are always held back.
+   */
+  public static final int LAG = 64;
+
+  private static final int FLUSH_SIZE = 1 << 16;
+
+  private final OutputStream out;
+
+  private byte[] pending = new byte[FLUSH_SIZE + LAG];
+  private int count;
+  private long flushed;
+  private long holdOffset = -1;
+
+  private final byte[] single = new byte[1];
+
+  public PatchingInputStream(InputStream in, OutputStream out) {
+    super(in);
+    this.out = out;
+  }
+
+  /**
+   * Returns the offset of the next byte to be read.
+   */
+  public long getPosition() {
+    return flushed + count;
+  }
+
+  /**
+   * Holds back all bytes from the given offset until released.
+   *
+   * @throws IllegalStateException if the offset has already been written
+   */
+  public void hold(long offset) {
+    if (offset < flushed) {
+      throw new IllegalStateException("Offset already written: " + offset);
+    }
+    holdOffset = offset;
+  }
+
+  public void release() {
+    holdOffset = -1;
+  }
+
+  /**
+   * Replaces bytes that have been read but not yet written.
+   *
+   * @throws IllegalStateException if the bytes have already been written, or not yet read
+   */
+  public void patch(long offset, byte[] bytes) {
+    if (offset < flushed || offset + bytes.length > getPosition()) {
+      throw new IllegalStateException("Cannot patch offset " + offset);
+    }
+    System.arraycopy(bytes, 0, pending, (int) (offset - flushed), bytes.length);
+  }
+
+  /**
+   * Copies the rest of the input, and writes all bytes held back.
+   */
+  public void finish() throws IOException {
+    byte[] buf = new byte[FLUSH_SIZE];
+    while (read(buf, 0, buf.length) != -1) {
+    }
+    release();
+    flush(getPosition());
+    out.flush();
+  }
+
+  /* InputStream overrides */
+  @Override
+  public int read() throws IOException {
+    int ch = super.read();
+    if (ch != -1) {
+      single[0] = (byte) ch;
+      append(single, 0, 1);
+    }
+    return ch;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int n = super.read(b, off, len);
+    if (n > 0) {
+      append(b, off, n);
+    }
+    return n;
+  }
+
+  /**
+   * Reads the skipped bytes, so that they are copied.
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    byte[] buf = new byte[(int) Math.min(n, FLUSH_SIZE)];
+    long skipped = 0;
+    while (skipped < n) {
+      int count = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+      if (count <= 0) {
+        break;
+      }
+      skipped += count;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  private void append(byte[] b, int off, int len) throws IOException {
+    if (count + len > pending.length) {
+      long limit = getPosition() - LAG;
+      if (holdOffset >= 0) {
+        limit = Math.min(limit, holdOffset);
+      }
+      flush(limit);
+      if (count + len > pending.length) {
+        pending = Arrays.copyOf(pending, Math.max(2 * pending.length, count + len));
+      }
+    }
+    System.arraycopy(b, off, pending, count, len);
+    count += len;
+  }
+
+  /**
+   * Writes the pending bytes before the given offset.
+   */
+  private void flush(long limit) throws IOException {
+    int n = (int) (limit - flushed);
+    if (n > 0) {
+      out.write(pending, 0, n);
+      System.arraycopy(pending, n, pending, 0, count - n);
+      count -= n;
+      flushed = limit;
+    }
+  }
+}
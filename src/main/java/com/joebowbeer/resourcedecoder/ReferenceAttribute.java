@@ -0,0 +1,33 @@
+package com.joebowbeer.resourcedecoder;
+
+import nu.xom.Attribute;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.hexId;
+
+/**
+ * Attribute whose value refers to a resource id, such as <b>@0x7f020000</b>. The id is kept so
+ * that the name can be resolved at output time without parsing the value.
+ */
+public class ReferenceAttribute extends Attribute {
+
+  /** Reference prefix: '@' for references, '?' for attributes and '$' for names. */
+  public final char prefix;
+  public final int resId;
+
+  public ReferenceAttribute(String name, char prefix, int resId) {
+    super(name, prefix + hexId(resId));
+    this.prefix = prefix;
+    this.resId = resId;
+  }
+
+  public ReferenceAttribute(ReferenceAttribute attribute) {
+    super(attribute);
+    this.prefix = attribute.prefix;
+    this.resId = attribute.resId;
+  }
+
+  @Override
+  public ReferenceAttribute copy() {
+    return new ReferenceAttribute(this);
+  }
+}
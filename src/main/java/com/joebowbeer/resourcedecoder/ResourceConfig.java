@@ -1,6 +1,15 @@
 package com.joebowbeer.resourcedecoder;
 
-public class ResourceConfig {
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Resource configuration, as ResTable_config. The fields following its size are packed, in their
+ * little-endian file layout, into six longs, so that equality, hashing and comparison take
+ * constant time, and the accessors are shifts and masks.
+ */
+public class ResourceConfig implements Comparable<ResourceConfig> {
 
   private static final int CONFIG_MCC = 0x0001;
   private static final int CONFIG_MNC = 0x0002;
@@ -15,74 +24,1047 @@ public class ResourceConfig {
   private static final int CONFIG_VERSION = 0x0400;
   private static final int CONFIG_SCREEN_LAYOUT = 0x0800;
   private static final int CONFIG_UI_MODE = 0x1000;
+  private static final int CONFIG_SMALLEST_SCREEN_SIZE = 0x2000;
+  private static final int CONFIG_LAYOUTDIR = 0x4000;
+  private static final int CONFIG_SCREEN_ROUND = 0x8000;
+  private static final int CONFIG_COLOR_MODE = 0x10000;
+
+  /* screenLayout, uiMode, inputFlags, screenLayout2 and colorMode fields */
+  private static final int MASK_SCREENSIZE = 0x0f;
+  private static final int MASK_SCREENLONG = 0x30;
+  private static final int MASK_LAYOUTDIR = 0xc0;
+  private static final int MASK_UI_MODE_TYPE = 0x0f;
+  private static final int MASK_UI_MODE_NIGHT = 0x30;
+  private static final int MASK_KEYSHIDDEN = 0x03;
+  private static final int MASK_NAVHIDDEN = 0x0c;
+  private static final int MASK_SCREENROUND = 0x03;
+  private static final int MASK_WIDE_COLOR_GAMUT = 0x03;
+  private static final int MASK_HDR = 0x0c;
+  private static final int SCREENSIZE_NORMAL = 2;
+  private static final int KEYSHIDDEN_NO = 1;
+  private static final int KEYSHIDDEN_SOFT = 3;
 
-  // Additional flag indicating an entry is public.
-  private static final int SPEC_PUBLIC = 0x40000000;
+  private static final int DENSITY_MEDIUM = 160;
+  private static final int DENSITY_ANY = 0xfffe;
 
-  // imsi
-  public final int mcc;
-  public final int mnc;
+  /* Byte offsets of the fields following the size of ResTable_config */
+  private static final int MCC = 0;
+  private static final int MNC = 2;
+  private static final int LANGUAGE = 4;
+  private static final int COUNTRY = 6;
+  private static final int ORIENTATION = 8;
+  private static final int TOUCHSCREEN = 9;
+  private static final int DENSITY = 10;
+  private static final int KEYBOARD = 12;
+  private static final int NAVIGATION = 13;
+  private static final int INPUT_FLAGS = 14;
+  private static final int SCREEN_WIDTH = 16;
+  private static final int SCREEN_HEIGHT = 18;
+  private static final int SDK_VERSION = 20;
+  private static final int MINOR_VERSION = 22;
+  private static final int SCREEN_LAYOUT = 24;
+  private static final int UI_MODE = 25;
+  private static final int SMALLEST_SCREEN_WIDTH_DP = 26;
+  private static final int SCREEN_WIDTH_DP = 28;
+  private static final int SCREEN_HEIGHT_DP = 30;
+  private static final int LOCALE_SCRIPT = 32;
+  private static final int LOCALE_VARIANT = 36;
+  private static final int SCREEN_LAYOUT2 = 44;
+  private static final int COLOR_MODE = 45;
+  private static final int LOCALE_SCRIPT_WAS_COMPUTED = 48;
 
-  // locale
-  public final String language;
-  public final String country;
+  /**
+   * Size of the packed fields. Later fields, such as the locale numbering system, are ignored.
+   */
+  private static final int SIZE = 48;
 
-  // screen type
-  public final int orientation;
-  public final int touchscreen;
-  public final int density;
+  /* Masks of the packed fields, excluding padding */
+  private static final long[] FIELDS = {-1L, 0x00ffffffffffffffL, -1L, -1L, -1L,
+    0x0000ffffffffffffL};
 
-  // input
-  public final int keyboard;
-  public final int navigation;
-  public final int inputFlags;
+  private final long imsiLocale;
+  private final long screenTypeInput;
+  private final long screenSizeVersion;
+  private final long screenConfigSizeDp;
+  private final long localeScriptVariant;
+  private final long localeVariantConfig2;
 
-  // screen size
-  public final int screenWidth;
-  public final int screenHeight;
+  public ResourceConfig(int mcc, int mnc, String language, String country,
+      int orientation, int touchscreen, int density,
+      int keyboard, int navigation, int inputFlags,
+      int screenWidth, int screenHeight,
+      int sdkVersion, int minorVersion, int screenLayout, int uiMode) {
+    this(fields(mcc, mnc, language, country, orientation, touchscreen, density,
+        keyboard, navigation, inputFlags, screenWidth, screenHeight,
+        sdkVersion, minorVersion, screenLayout, uiMode));
+  }
 
-  // version
-  public final int sdkVersion;
-  public final int minorVersion;
+  private ResourceConfig(ByteBuffer fields) {
+    fields.order(ByteOrder.LITTLE_ENDIAN);
+    imsiLocale = fields.getLong(0) & FIELDS[0];
+    screenTypeInput = fields.getLong(8) & FIELDS[1];
+    screenSizeVersion = fields.getLong(16) & FIELDS[2];
+    screenConfigSizeDp = fields.getLong(24) & FIELDS[3];
+    localeScriptVariant = fields.getLong(32) & FIELDS[4];
+    localeVariantConfig2 = fields.getLong(40) & FIELDS[5];
+  }
 
-  // screen config
-  public final int screenLayout;
-  public final int uiMode;
+  /**
+   * Returns the configuration of the given ResTable_config, following its size. Missing fields,
+   * written by older tools, are zero. A locale script that was computed, rather than specified,
+   * is ignored.
+   */
+  public static ResourceConfig fromBytes(byte[] config) {
+    ByteBuffer fields = ByteBuffer.allocate(SIZE);
+    fields.put(config, 0, Math.min(config.length, SIZE));
+    if (config.length > LOCALE_SCRIPT_WAS_COMPUTED && config[LOCALE_SCRIPT_WAS_COMPUTED] != 0) {
+      fields.putInt(LOCALE_SCRIPT, 0);
+    }
+    return new ResourceConfig(fields);
+  }
 
-  public ResourceConfig(int mcc, int mnc, String language, String country,
+  private static ByteBuffer fields(int mcc, int mnc, String language, String country,
       int orientation, int touchscreen, int density,
       int keyboard, int navigation, int inputFlags,
       int screenWidth, int screenHeight,
       int sdkVersion, int minorVersion, int screenLayout, int uiMode) {
-    this.mcc = mcc;
-    this.mnc = mnc;
-    this.language = language;
-    this.country = country;
-    this.orientation = orientation;
-    this.touchscreen = touchscreen;
-    this.density = density;
-    this.keyboard = keyboard;
-    this.navigation = navigation;
-    this.inputFlags = inputFlags;
-    this.screenWidth = screenWidth;
-    this.screenHeight = screenHeight;
-    this.sdkVersion = sdkVersion;
-    this.minorVersion = minorVersion;
-    this.screenLayout = screenLayout;
-    this.uiMode = uiMode;
+    ByteBuffer fields = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    fields.putShort(MCC, (short) mcc);
+    fields.putShort(MNC, (short) mnc);
+    fields.putShort(LANGUAGE, pack(language, 'a'));
+    fields.putShort(COUNTRY, pack(country, '0'));
+    fields.put(ORIENTATION, (byte) orientation);
+    fields.put(TOUCHSCREEN, (byte) touchscreen);
+    fields.putShort(DENSITY, (short) density);
+    fields.put(KEYBOARD, (byte) keyboard);
+    fields.put(NAVIGATION, (byte) navigation);
+    fields.put(INPUT_FLAGS, (byte) inputFlags);
+    fields.putShort(SCREEN_WIDTH, (short) screenWidth);
+    fields.putShort(SCREEN_HEIGHT, (short) screenHeight);
+    fields.putShort(SDK_VERSION, (short) sdkVersion);
+    fields.putShort(MINOR_VERSION, (short) minorVersion);
+    fields.put(SCREEN_LAYOUT, (byte) screenLayout);
+    fields.put(UI_MODE, (byte) uiMode);
+    return fields;
+  }
+
+  /**
+   * Returns the packed field at the given offset, in the low bits.
+   */
+  private long field(int offset) {
+    long word;
+    switch (offset >> 3) {
+      case 0:
+        word = imsiLocale;
+        break;
+      case 1:
+        word = screenTypeInput;
+        break;
+      case 2:
+        word = screenSizeVersion;
+        break;
+      case 3:
+        word = screenConfigSizeDp;
+        break;
+      case 4:
+        word = localeScriptVariant;
+        break;
+      default:
+        word = localeVariantConfig2;
+    }
+    return word >>> ((offset & 7) << 3);
+  }
+
+  private int u8(int offset) {
+    return (int) field(offset) & 0xff;
+  }
+
+  private int u16(int offset) {
+    return (int) field(offset) & 0xffff;
+  }
+
+  private int u32(int offset) {
+    return (int) field(offset);
+  }
+
+  /**
+   * Returns the packed locale variant, which straddles two longs.
+   */
+  private long variant() {
+    return (localeScriptVariant >>> 32) | (localeVariantConfig2 << 32);
+  }
+
+  public int getMcc() {
+    return u16(MCC);
+  }
+
+  public int getMnc() {
+    return u16(MNC);
+  }
+
+  /**
+   * Returns the two or three letter language code, or an empty string.
+   */
+  public String getLanguage() {
+    return unpack(u16(LANGUAGE), 'a');
+  }
+
+  /**
+   * Returns the two letter or three digit region code, or an empty string.
+   */
+  public String getCountry() {
+    return unpack(u16(COUNTRY), '0');
+  }
+
+  /**
+   * Returns the four letter locale script, such as <b>Latn</b>, or an empty string.
+   */
+  public String getLocaleScript() {
+    return ascii(LOCALE_SCRIPT, 4);
+  }
+
+  /**
+   * Returns the locale variant, such as <b>posix</b>, or an empty string.
+   */
+  public String getLocaleVariant() {
+    return ascii(LOCALE_VARIANT, 8);
+  }
+
+  public int getOrientation() {
+    return u8(ORIENTATION);
+  }
+
+  public int getTouchscreen() {
+    return u8(TOUCHSCREEN);
+  }
+
+  public int getDensity() {
+    return u16(DENSITY);
+  }
+
+  public int getKeyboard() {
+    return u8(KEYBOARD);
+  }
+
+  public int getNavigation() {
+    return u8(NAVIGATION);
+  }
+
+  public int getInputFlags() {
+    return u8(INPUT_FLAGS);
+  }
+
+  public int getScreenWidth() {
+    return u16(SCREEN_WIDTH);
+  }
+
+  public int getScreenHeight() {
+    return u16(SCREEN_HEIGHT);
+  }
+
+  public int getSdkVersion() {
+    return u16(SDK_VERSION);
+  }
+
+  public int getMinorVersion() {
+    return u16(MINOR_VERSION);
+  }
+
+  public int getScreenLayout() {
+    return u8(SCREEN_LAYOUT);
+  }
+
+  public int getUiMode() {
+    return u8(UI_MODE);
+  }
+
+  public int getSmallestScreenWidthDp() {
+    return u16(SMALLEST_SCREEN_WIDTH_DP);
+  }
+
+  public int getScreenWidthDp() {
+    return u16(SCREEN_WIDTH_DP);
+  }
+
+  public int getScreenHeightDp() {
+    return u16(SCREEN_HEIGHT_DP);
+  }
+
+  public int getScreenLayout2() {
+    return u8(SCREEN_LAYOUT2);
+  }
+
+  public int getColorMode() {
+    return u8(COLOR_MODE);
   }
 
   public boolean isDefault() {
-    if (!language.isEmpty() || !country.isEmpty()) {
+    return (imsiLocale | screenTypeInput | screenSizeVersion | screenConfigSizeDp
+        | localeScriptVariant | localeVariantConfig2) == 0;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ResourceConfig)) {
       return false;
     }
-    return (mcc | mnc | orientation | touchscreen | density
-        | keyboard | navigation | inputFlags
-        | screenWidth | screenHeight
-        | sdkVersion | screenLayout | uiMode) == 0;
+    ResourceConfig o = (ResourceConfig) obj;
+    return imsiLocale == o.imsiLocale && screenTypeInput == o.screenTypeInput
+        && screenSizeVersion == o.screenSizeVersion
+        && screenConfigSizeDp == o.screenConfigSizeDp
+        && localeScriptVariant == o.localeScriptVariant
+        && localeVariantConfig2 == o.localeVariantConfig2;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = Long.hashCode(imsiLocale);
+    h = 31 * h + Long.hashCode(screenTypeInput);
+    h = 31 * h + Long.hashCode(screenSizeVersion);
+    h = 31 * h + Long.hashCode(screenConfigSizeDp);
+    h = 31 * h + Long.hashCode(localeScriptVariant);
+    return 31 * h + Long.hashCode(localeVariantConfig2);
+  }
+
+  /**
+   * Compares the packed fields. The order is consistent with equals, but is otherwise arbitrary.
+   */
+  @Override
+  public int compareTo(ResourceConfig o) {
+    int cmp = Long.compareUnsigned(imsiLocale, o.imsiLocale);
+    if (cmp == 0) {
+      cmp = Long.compareUnsigned(screenTypeInput, o.screenTypeInput);
+    }
+    if (cmp == 0) {
+      cmp = Long.compareUnsigned(screenSizeVersion, o.screenSizeVersion);
+    }
+    if (cmp == 0) {
+      cmp = Long.compareUnsigned(screenConfigSizeDp, o.screenConfigSizeDp);
+    }
+    if (cmp == 0) {
+      cmp = Long.compareUnsigned(localeScriptVariant, o.localeScriptVariant);
+    }
+    if (cmp == 0) {
+      cmp = Long.compareUnsigned(localeVariantConfig2, o.localeVariantConfig2);
+    }
+    return cmp;
+  }
+
+  /**
+   * Returns true if this configuration is more specific than the other, as
+   * ResTable_config::isMoreSpecificThan does: the first qualifier, in order of precedence, that is
+   * specified by only one of them decides.
+   */
+  public boolean isMoreSpecificThan(ResourceConfig o) {
+    return specificity() > o.specificity();
+  }
+
+  /**
+   * Returns the qualifiers that are specified, one bit each, with the highest precedence in the
+   * highest bit. Density is not included, as in ResTable_config::isMoreSpecificThan.
+   */
+  private int specificity() {
+    int screenLayout = getScreenLayout();
+    int uiMode = getUiMode();
+    int inputFlags = getInputFlags();
+    int screenLayout2 = getScreenLayout2();
+    int colorMode = getColorMode();
+    return bit(getMcc(), 25) | bit(getMnc(), 24)
+        | bit(u16(LANGUAGE), 23) | bit(u16(COUNTRY), 22)
+        | bit(u32(LOCALE_SCRIPT), 21) | bit(variant(), 20)
+        | bit(screenLayout & MASK_LAYOUTDIR, 19)
+        | bit(getSmallestScreenWidthDp(), 18)
+        | bit(getScreenWidthDp(), 17) | bit(getScreenHeightDp(), 16)
+        | bit(screenLayout & MASK_SCREENSIZE, 15) | bit(screenLayout & MASK_SCREENLONG, 14)
+        | bit(screenLayout2 & MASK_SCREENROUND, 13)
+        | bit(colorMode & MASK_HDR, 12) | bit(colorMode & MASK_WIDE_COLOR_GAMUT, 11)
+        | bit(getOrientation(), 10)
+        | bit(uiMode & MASK_UI_MODE_TYPE, 9) | bit(uiMode & MASK_UI_MODE_NIGHT, 8)
+        | bit(getTouchscreen(), 7)
+        | bit(inputFlags & MASK_KEYSHIDDEN, 6) | bit(getKeyboard(), 5)
+        | bit(inputFlags & MASK_NAVHIDDEN, 4) | bit(getNavigation(), 3)
+        | bit(getScreenWidth() | getScreenHeight(), 2)
+        | bit(getSdkVersion(), 1) | bit(getMinorVersion(), 0);
+  }
+
+  private static int bit(long value, int bit) {
+    return (value != 0) ? 1 << bit : 0;
+  }
+
+  /**
+   * Returns the resource directory qualifiers for this configuration, for example
+   * <b>en-rUS-land-hdpi-v11</b>, or an empty string for the default configuration.
+   */
+  public String qualifiers() {
+    StringBuilder sb = new StringBuilder();
+    int mcc = getMcc();
+    if (mcc != 0) {
+      append(sb, "mcc").append(mcc);
+    }
+    int mnc = getMnc();
+    if (mnc != 0) {
+      append(sb, "mnc").append(mnc);
+    }
+    String language = getLanguage();
+    if (!language.isEmpty()) {
+      String country = getCountry();
+      String script = getLocaleScript();
+      String variant = getLocaleVariant();
+      if (script.isEmpty() && variant.isEmpty()) {
+        append(sb, language);
+        if (!country.isEmpty()) {
+          sb.append("-r").append(country);
+        }
+      } else {
+        append(sb, "b+").append(language);
+        for (String subtag : new String[]{script, country, variant}) {
+          if (!subtag.isEmpty()) {
+            sb.append('+').append(subtag);
+          }
+        }
+      }
+    }
+    int screenLayout = getScreenLayout();
+    switch (screenLayout & MASK_LAYOUTDIR) {
+      case 0x40:
+        append(sb, "ldltr");
+        break;
+      case 0x80:
+        append(sb, "ldrtl");
+        break;
+    }
+    if (getSmallestScreenWidthDp() != 0) {
+      append(sb, "sw").append(getSmallestScreenWidthDp()).append("dp");
+    }
+    if (getScreenWidthDp() != 0) {
+      append(sb, "w").append(getScreenWidthDp()).append("dp");
+    }
+    if (getScreenHeightDp() != 0) {
+      append(sb, "h").append(getScreenHeightDp()).append("dp");
+    }
+    switch (screenLayout & MASK_SCREENSIZE) {
+      case 1:
+        append(sb, "small");
+        break;
+      case 2:
+        append(sb, "normal");
+        break;
+      case 3:
+        append(sb, "large");
+        break;
+      case 4:
+        append(sb, "xlarge");
+        break;
+    }
+    switch (screenLayout & MASK_SCREENLONG) {
+      case 0x10:
+        append(sb, "notlong");
+        break;
+      case 0x20:
+        append(sb, "long");
+        break;
+    }
+    switch (getScreenLayout2() & MASK_SCREENROUND) {
+      case 1:
+        append(sb, "notround");
+        break;
+      case 2:
+        append(sb, "round");
+        break;
+    }
+    int colorMode = getColorMode();
+    switch (colorMode & MASK_WIDE_COLOR_GAMUT) {
+      case 1:
+        append(sb, "nowidecg");
+        break;
+      case 2:
+        append(sb, "widecg");
+        break;
+    }
+    switch (colorMode & MASK_HDR) {
+      case 0x04:
+        append(sb, "lowdr");
+        break;
+      case 0x08:
+        append(sb, "highdr");
+        break;
+    }
+    int orientation = getOrientation();
+    if (orientation != 0) {
+      append(sb, orientation == 3 ? "square" : orientationQualifier());
+    }
+    int uiMode = getUiMode();
+    switch (uiMode & MASK_UI_MODE_TYPE) {
+      case 2:
+        append(sb, "desk");
+        break;
+      case 3:
+        append(sb, "car");
+        break;
+      case 4:
+        append(sb, "television");
+        break;
+      case 5:
+        append(sb, "appliance");
+        break;
+      case 6:
+        append(sb, "watch");
+        break;
+      case 7:
+        append(sb, "vrheadset");
+        break;
+    }
+    switch (uiMode & MASK_UI_MODE_NIGHT) {
+      case 0x10:
+        append(sb, "notnight");
+        break;
+      case 0x20:
+        append(sb, "night");
+        break;
+    }
+    int density = getDensity();
+    if (density != 0) {
+      switch (density) {
+        case 480:
+          append(sb, "xxhdpi");
+          break;
+        case 640:
+          append(sb, "xxxhdpi");
+          break;
+        case DENSITY_ANY:
+          append(sb, "anydpi");
+          break;
+        default: {
+          String qualifier = densityQualifier();
+          append(sb, qualifier);
+          if (Character.isDigit(qualifier.charAt(0))) {
+            sb.append("dpi");
+          }
+        }
+      }
+    }
+    switch (getTouchscreen()) {
+      case 1:
+        append(sb, "notouch");
+        break;
+      case 2:
+        append(sb, "stylus");
+        break;
+      case 3:
+        append(sb, "finger");
+        break;
+    }
+    int inputFlags = getInputFlags();
+    switch (inputFlags & MASK_KEYSHIDDEN) {
+      case 1:
+        append(sb, "keysexposed");
+        break;
+      case 2:
+        append(sb, "keyshidden");
+        break;
+      case 3:
+        append(sb, "keyssoft");
+        break;
+    }
+    switch (getKeyboard()) {
+      case 1:
+        append(sb, "nokeys");
+        break;
+      case 2:
+        append(sb, "qwerty");
+        break;
+      case 3:
+        append(sb, "12key");
+        break;
+    }
+    switch (inputFlags & MASK_NAVHIDDEN) {
+      case 0x04:
+        append(sb, "navexposed");
+        break;
+      case 0x08:
+        append(sb, "navhidden");
+        break;
+    }
+    switch (getNavigation()) {
+      case 1:
+        append(sb, "nonav");
+        break;
+      case 2:
+        append(sb, "dpad");
+        break;
+      case 3:
+        append(sb, "trackball");
+        break;
+      case 4:
+        append(sb, "wheel");
+        break;
+    }
+    if (getScreenWidth() != 0 || getScreenHeight() != 0) {
+      append(sb, String.valueOf(getScreenWidth())).append('x').append(getScreenHeight());
+    }
+    if (getSdkVersion() != 0) {
+      append(sb, "v").append(getSdkVersion());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns true if a device with the given configuration can use the resources of this
+   * configuration, as ResTable_config::match does. A qualifier that the device does not specify
+   * matches only the default.
+   */
+  public boolean match(ResourceConfig device) {
+    if ((imsiLocale | screenTypeInput | screenSizeVersion | screenConfigSizeDp
+        | localeScriptVariant | localeVariantConfig2) == 0) {
+      return true;
+    }
+    if (!matchField(getMcc(), device.getMcc(), -1) || !matchField(getMnc(), device.getMnc(), -1)) {
+      return false;
+    }
+    if (!matchField(u16(LANGUAGE), device.u16(LANGUAGE), -1)
+        || !matchField(u16(COUNTRY), device.u16(COUNTRY), -1)) {
+      return false;
+    }
+    int script = u32(LOCALE_SCRIPT);
+    int deviceScript = device.u32(LOCALE_SCRIPT);
+    if (script != 0 && deviceScript != 0 && script != deviceScript) {
+      return false;
+    }
+    int screenLayout = getScreenLayout();
+    int deviceScreenLayout = device.getScreenLayout();
+    if (!matchField(screenLayout, deviceScreenLayout, MASK_LAYOUTDIR)
+        || !matchField(screenLayout, deviceScreenLayout, MASK_SCREENLONG)) {
+      return false;
+    }
+    int size = screenLayout & MASK_SCREENSIZE;
+    if (size != 0 && size > (deviceScreenLayout & MASK_SCREENSIZE)) {
+      return false; // larger screens than the device's
+    }
+    if (!matchField(getScreenLayout2(), device.getScreenLayout2(), MASK_SCREENROUND)
+        || !matchField(getColorMode(), device.getColorMode(), MASK_WIDE_COLOR_GAMUT)
+        || !matchField(getColorMode(), device.getColorMode(), MASK_HDR)) {
+      return false;
+    }
+    if (!matchDp(getSmallestScreenWidthDp(), device.getSmallestScreenWidthDp())
+        || !matchDp(getScreenWidthDp(), device.getScreenWidthDp())
+        || !matchDp(getScreenHeightDp(), device.getScreenHeightDp())) {
+      return false;
+    }
+    if (!matchField(getUiMode(), device.getUiMode(), MASK_UI_MODE_TYPE)
+        || !matchField(getUiMode(), device.getUiMode(), MASK_UI_MODE_NIGHT)) {
+      return false;
+    }
+    if (!matchField(getOrientation(), device.getOrientation(), -1)
+        || !matchField(getTouchscreen(), device.getTouchscreen(), -1)) {
+      return false;
+    }
+    int keysHidden = getInputFlags() & MASK_KEYSHIDDEN;
+    int deviceKeysHidden = device.getInputFlags() & MASK_KEYSHIDDEN;
+    if (keysHidden != 0 && keysHidden != deviceKeysHidden
+        && (keysHidden != KEYSHIDDEN_NO || deviceKeysHidden != KEYSHIDDEN_SOFT)) {
+      return false; // "keysexposed" also matches a soft keyboard
+    }
+    if (!matchField(getInputFlags(), device.getInputFlags(), MASK_NAVHIDDEN)
+        || !matchField(getKeyboard(), device.getKeyboard(), -1)
+        || !matchField(getNavigation(), device.getNavigation(), -1)) {
+      return false;
+    }
+    if (!matchDp(getScreenWidth(), device.getScreenWidth())
+        || !matchDp(getScreenHeight(), device.getScreenHeight())) {
+      return false;
+    }
+    if (!matchDp(getSdkVersion(), device.getSdkVersion())
+        || !matchField(getMinorVersion(), device.getMinorVersion(), -1)) {
+      return false;
+    }
+    return true; // any density matches
+  }
+
+  /**
+   * Returns true if this configuration is a better match for the given device than the other,
+   * following the precedence of ResTable_config::isBetterThan. Both must {@link #match} the
+   * device. Only the dimensions in the given mask are compared, such as the flags of an entry in
+   * its type spec, since the others are the same in every configuration of the entry.
+   */
+  public boolean isBetterThan(ResourceConfig o, ResourceConfig device, int mask) {
+    if (equals(o)) {
+      return false;
+    }
+    if ((mask & (CONFIG_MCC | CONFIG_MNC)) != 0) {
+      if (differs(getMcc(), o.getMcc(), device.getMcc(), -1)) {
+        return getMcc() != 0;
+      }
+      if (differs(getMnc(), o.getMnc(), device.getMnc(), -1)) {
+        return getMnc() != 0;
+      }
+    }
+    if ((mask & CONFIG_LOCALE) != 0) {
+      if (differs(u16(LANGUAGE), o.u16(LANGUAGE), device.u16(LANGUAGE), -1)) {
+        return u16(LANGUAGE) != 0;
+      }
+      if (differs(u16(COUNTRY), o.u16(COUNTRY), device.u16(COUNTRY), -1)) {
+        return u16(COUNTRY) != 0;
+      }
+      if (differs(u32(LOCALE_SCRIPT), o.u32(LOCALE_SCRIPT), device.u32(LOCALE_SCRIPT), -1)) {
+        return u32(LOCALE_SCRIPT) != 0;
+      }
+      if (variant() != o.variant() && device.variant() != 0) {
+        return variant() == device.variant();
+      }
+    }
+    int screenLayout = getScreenLayout();
+    int oScreenLayout = o.getScreenLayout();
+    int deviceScreenLayout = device.getScreenLayout();
+    if ((mask & CONFIG_LAYOUTDIR) != 0
+        && differs(screenLayout, oScreenLayout, deviceScreenLayout, MASK_LAYOUTDIR)) {
+      return (screenLayout & MASK_LAYOUTDIR) != 0;
+    }
+    if ((mask & CONFIG_SMALLEST_SCREEN_SIZE) != 0
+        && getSmallestScreenWidthDp() != o.getSmallestScreenWidthDp()) {
+      return getSmallestScreenWidthDp() > o.getSmallestScreenWidthDp();
+    }
+    if ((mask & CONFIG_SCREEN_SIZE) != 0) {
+      int delta = 0;
+      int oDelta = 0;
+      if (device.getScreenWidthDp() != 0) {
+        delta += device.getScreenWidthDp() - getScreenWidthDp();
+        oDelta += device.getScreenWidthDp() - o.getScreenWidthDp();
+      }
+      if (device.getScreenHeightDp() != 0) {
+        delta += device.getScreenHeightDp() - getScreenHeightDp();
+        oDelta += device.getScreenHeightDp() - o.getScreenHeightDp();
+      }
+      if (delta != oDelta) {
+        return delta < oDelta;
+      }
+    }
+    if ((mask & CONFIG_SCREEN_LAYOUT) != 0) {
+      if (differs(screenLayout, oScreenLayout, deviceScreenLayout, MASK_SCREENSIZE)) {
+        int size = screenLayout & MASK_SCREENSIZE;
+        int oSize = oScreenLayout & MASK_SCREENSIZE;
+        if ((deviceScreenLayout & MASK_SCREENSIZE) >= SCREENSIZE_NORMAL) {
+          // resources without a size are designed for normal screens
+          size = (size != 0) ? size : SCREENSIZE_NORMAL;
+          oSize = (oSize != 0) ? oSize : SCREENSIZE_NORMAL;
+        }
+        if (size == oSize) {
+          return (screenLayout & MASK_SCREENSIZE) != 0;
+        }
+        // the closest to the device's size, since larger sizes do not match
+        return size > oSize;
+      }
+      if (differs(screenLayout, oScreenLayout, deviceScreenLayout, MASK_SCREENLONG)) {
+        return (screenLayout & MASK_SCREENLONG) != 0;
+      }
+    }
+    if ((mask & CONFIG_SCREEN_ROUND) != 0 && differs(getScreenLayout2(), o.getScreenLayout2(),
+        device.getScreenLayout2(), MASK_SCREENROUND)) {
+      return (getScreenLayout2() & MASK_SCREENROUND) != 0;
+    }
+    if ((mask & CONFIG_COLOR_MODE) != 0) {
+      if (differs(getColorMode(), o.getColorMode(), device.getColorMode(), MASK_HDR)) {
+        return (getColorMode() & MASK_HDR) != 0;
+      }
+      if (differs(getColorMode(), o.getColorMode(), device.getColorMode(),
+          MASK_WIDE_COLOR_GAMUT)) {
+        return (getColorMode() & MASK_WIDE_COLOR_GAMUT) != 0;
+      }
+    }
+    if ((mask & CONFIG_ORIENTATION) != 0
+        && differs(getOrientation(), o.getOrientation(), device.getOrientation(), -1)) {
+      return getOrientation() != 0;
+    }
+    if ((mask & CONFIG_UI_MODE) != 0) {
+      if (differs(getUiMode(), o.getUiMode(), device.getUiMode(), MASK_UI_MODE_TYPE)) {
+        return (getUiMode() & MASK_UI_MODE_TYPE) != 0;
+      }
+      if (differs(getUiMode(), o.getUiMode(), device.getUiMode(), MASK_UI_MODE_NIGHT)) {
+        return (getUiMode() & MASK_UI_MODE_NIGHT) != 0;
+      }
+    }
+    if ((mask & CONFIG_DENSITY) != 0 && getDensity() != o.getDensity()) {
+      return isBetterDensity(getDensity(), o.getDensity(), device.getDensity());
+    }
+    if ((mask & CONFIG_TOUCHSCREEN) != 0
+        && differs(getTouchscreen(), o.getTouchscreen(), device.getTouchscreen(), -1)) {
+      return getTouchscreen() != 0;
+    }
+    if ((mask & CONFIG_KEYBOARD_HIDDEN) != 0) {
+      int keysHidden = getInputFlags() & MASK_KEYSHIDDEN;
+      int oKeysHidden = o.getInputFlags() & MASK_KEYSHIDDEN;
+      int deviceKeysHidden = device.getInputFlags() & MASK_KEYSHIDDEN;
+      if (keysHidden != oKeysHidden && deviceKeysHidden != 0) {
+        if (keysHidden == 0 || oKeysHidden == 0) {
+          return keysHidden != 0;
+        }
+        // an exact match is better than "keysexposed" on a soft keyboard
+        return keysHidden == deviceKeysHidden;
+      }
+    }
+    if ((mask & CONFIG_KEYBOARD_HIDDEN) != 0 && differs(getInputFlags(), o.getInputFlags(),
+        device.getInputFlags(), MASK_NAVHIDDEN)) {
+      return (getInputFlags() & MASK_NAVHIDDEN) != 0;
+    }
+    if ((mask & CONFIG_KEYBOARD) != 0
+        && differs(getKeyboard(), o.getKeyboard(), device.getKeyboard(), -1)) {
+      return getKeyboard() != 0;
+    }
+    if ((mask & CONFIG_NAVIGATION) != 0
+        && differs(getNavigation(), o.getNavigation(), device.getNavigation(), -1)) {
+      return getNavigation() != 0;
+    }
+    if ((mask & CONFIG_SCREEN_SIZE) != 0) {
+      int delta = 0;
+      int oDelta = 0;
+      if (device.getScreenWidth() != 0) {
+        delta += device.getScreenWidth() - getScreenWidth();
+        oDelta += device.getScreenWidth() - o.getScreenWidth();
+      }
+      if (device.getScreenHeight() != 0) {
+        delta += device.getScreenHeight() - getScreenHeight();
+        oDelta += device.getScreenHeight() - o.getScreenHeight();
+      }
+      if (delta != oDelta) {
+        return delta < oDelta;
+      }
+    }
+    if ((mask & CONFIG_VERSION) != 0) {
+      if (differs(getSdkVersion(), o.getSdkVersion(), device.getSdkVersion(), -1)) {
+        return getSdkVersion() > o.getSdkVersion();
+      }
+      if (differs(getMinorVersion(), o.getMinorVersion(), device.getMinorVersion(), -1)) {
+        return getMinorVersion() != 0;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matchField(int value, int deviceValue, int mask) {
+    return (value & mask) == 0 || (value & mask) == (deviceValue & mask);
+  }
+
+  /**
+   * Returns true if the given minimum, such as a width or version, is met by the device.
+   */
+  private static boolean matchDp(int value, int deviceValue) {
+    return value == 0 || value <= deviceValue;
+  }
+
+  private static boolean differs(int value, int oValue, int deviceValue, int mask) {
+    return (value & mask) != (oValue & mask) && (deviceValue & mask) != 0;
+  }
+
+  /**
+   * Returns true if the first density is better for the device, as the resources of the closest
+   * higher density are scaled down, and lower densities are scaled up.
+   */
+  private static boolean isBetterDensity(int density, int oDensity, int deviceDensity) {
+    if (density == DENSITY_ANY || oDensity == DENSITY_ANY) {
+      return density == DENSITY_ANY;
+    }
+    int requested = (deviceDensity != 0 && deviceDensity != DENSITY_ANY)
+        ? deviceDensity : DENSITY_MEDIUM;
+    int h = (density != 0) ? density : DENSITY_MEDIUM;
+    int l = (oDensity != 0) ? oDensity : DENSITY_MEDIUM;
+    if (h == l) {
+      return density != 0; // mdpi is better than the default
+    }
+    boolean bigger = true;
+    if (l > h) {
+      int t = h;
+      h = l;
+      l = t;
+      bigger = false;
+    }
+    if (requested >= h) {
+      return bigger; // both are lower: the higher is better
+    }
+    if (l >= requested) {
+      return !bigger; // both are higher: the lower is better
+    }
+    // saddle point: prefer scaling down unless the lower density is much closer
+    return ((2 * l) - requested) * h > requested * requested ? !bigger : bigger;
+  }
+
+  /**
+   * Parses resource directory qualifiers, such as <b>en-rUS-land-xhdpi-v21</b>, in the order
+   * that {@link #qualifiers()} writes them.
+   *
+   * @throws IllegalArgumentException if a qualifier is not recognized
+   */
+  public static ResourceConfig parse(String qualifiers) {
+    ByteBuffer fields = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    int screenLayout = 0;
+    int uiMode = 0;
+    int inputFlags = 0;
+    int screenLayout2 = 0;
+    int colorMode = 0;
+    for (String q : qualifiers.isEmpty() ? new String[0] : qualifiers.split("-")) {
+      int index;
+      if (q.matches("mcc[0-9]+")) {
+        fields.putShort(MCC, (short) Integer.parseInt(q.substring(3)));
+      } else if (q.matches("mnc[0-9]+")) {
+        fields.putShort(MNC, (short) Integer.parseInt(q.substring(3)));
+      } else if (q.matches("r([A-Z]{2}|[0-9]{3})")) {
+        fields.putShort(COUNTRY, pack(q.substring(1), '0'));
+      } else if (q.matches("b\\+[a-z]{2,3}(\\+[A-Za-z0-9]+)*")) {
+        parseLocale(q.substring(2).split("\\+"), fields);
+      } else if ((index = indexOf(q, "ldltr", "ldrtl")) >= 0) {
+        screenLayout |= (index + 1) << 6;
+      } else if (q.matches("sw[0-9]+dp")) {
+        fields.putShort(SMALLEST_SCREEN_WIDTH_DP, (short) dp(q.substring(2)));
+      } else if (q.matches("w[0-9]+dp")) {
+        fields.putShort(SCREEN_WIDTH_DP, (short) dp(q.substring(1)));
+      } else if (q.matches("h[0-9]+dp")) {
+        fields.putShort(SCREEN_HEIGHT_DP, (short) dp(q.substring(1)));
+      } else if ((index = indexOf(q, "small", "normal", "large", "xlarge")) >= 0) {
+        screenLayout |= index + 1;
+      } else if ((index = indexOf(q, "notlong", "long")) >= 0) {
+        screenLayout |= (index + 1) << 4;
+      } else if ((index = indexOf(q, "notround", "round")) >= 0) {
+        screenLayout2 |= index + 1;
+      } else if ((index = indexOf(q, "nowidecg", "widecg")) >= 0) {
+        colorMode |= index + 1;
+      } else if ((index = indexOf(q, "lowdr", "highdr")) >= 0) {
+        colorMode |= (index + 1) << 2;
+      } else if ((index = indexOf(q, "port", "land", "square")) >= 0) {
+        fields.put(ORIENTATION, (byte) (index + 1));
+      } else if ((index = indexOf(q, "desk", "car", "television", "appliance", "watch",
+          "vrheadset")) >= 0) {
+        uiMode |= index + 2;
+      } else if ((index = indexOf(q, "notnight", "night")) >= 0) {
+        uiMode |= (index + 1) << 4;
+      } else if ((index = indexOf(q, "ldpi", "mdpi", "tvdpi", "hdpi", "xhdpi", "xxhdpi",
+          "xxxhdpi", "nodpi", "anydpi")) >= 0) {
+        fields.putShort(DENSITY,
+            (short) new int[]{120, 160, 213, 240, 320, 480, 640, 0xffff, DENSITY_ANY}[index]);
+      } else if (q.matches("[0-9]+dpi")) {
+        fields.putShort(DENSITY, (short) Integer.parseInt(q.substring(0, q.length() - 3)));
+      } else if ((index = indexOf(q, "notouch", "stylus", "finger")) >= 0) {
+        fields.put(TOUCHSCREEN, (byte) (index + 1));
+      } else if ((index = indexOf(q, "keysexposed", "keyshidden", "keyssoft")) >= 0) {
+        inputFlags |= index + 1;
+      } else if ((index = indexOf(q, "nokeys", "qwerty", "12key")) >= 0) {
+        fields.put(KEYBOARD, (byte) (index + 1));
+      } else if ((index = indexOf(q, "navexposed", "navhidden")) >= 0) {
+        inputFlags |= (index + 1) << 2;
+      } else if ((index = indexOf(q, "nonav", "dpad", "trackball", "wheel")) >= 0) {
+        fields.put(NAVIGATION, (byte) (index + 1));
+      } else if (q.matches("[0-9]+x[0-9]+")) {
+        int x = q.indexOf('x');
+        fields.putShort(SCREEN_WIDTH, (short) Integer.parseInt(q.substring(0, x)));
+        fields.putShort(SCREEN_HEIGHT, (short) Integer.parseInt(q.substring(x + 1)));
+      } else if (q.matches("v[0-9]+")) {
+        fields.putShort(SDK_VERSION, (short) Integer.parseInt(q.substring(1)));
+      } else if (q.matches("[a-z]{2,3}")) {
+        // after the keywords, such as "car"
+        fields.putShort(LANGUAGE, pack(q, 'a'));
+      } else {
+        throw new IllegalArgumentException("Unknown qualifier: " + q);
+      }
+    }
+    fields.put(SCREEN_LAYOUT, (byte) screenLayout);
+    fields.put(UI_MODE, (byte) uiMode);
+    fields.put(INPUT_FLAGS, (byte) inputFlags);
+    fields.put(SCREEN_LAYOUT2, (byte) screenLayout2);
+    fields.put(COLOR_MODE, (byte) colorMode);
+    return new ResourceConfig(fields);
+  }
+
+  /**
+   * Parses the subtags of a BCP 47 locale qualifier, such as <b>b+sr+Latn</b>.
+   */
+  private static void parseLocale(String[] subtags, ByteBuffer fields) {
+    fields.putShort(LANGUAGE, pack(subtags[0], 'a'));
+    for (int i = 1; i < subtags.length; i++) {
+      String subtag = subtags[i];
+      if (subtag.matches("[A-Z][a-z]{3}")) {
+        fields.position(LOCALE_SCRIPT);
+        fields.put(subtag.getBytes(StandardCharsets.US_ASCII));
+      } else if (subtag.matches("[A-Z]{2}|[0-9]{3}")) {
+        fields.putShort(COUNTRY, pack(subtag, '0'));
+      } else if (subtag.matches("[a-z0-9]{5,8}|[0-9][a-z0-9]{3}")) {
+        fields.position(LOCALE_VARIANT);
+        fields.put(subtag.getBytes(StandardCharsets.US_ASCII));
+      } else {
+        throw new IllegalArgumentException("Unknown locale subtag: " + subtag);
+      }
+    }
+  }
+
+  private static int dp(String s) {
+    return Integer.parseInt(s.substring(0, s.length() - 2));
+  }
+
+  /**
+   * Packs a language or region code, as ResTable_config::packLanguageOrRegion does: two
+   * characters as is, and three in the 15 low bits, relative to the given base.
+   */
+  private static short pack(String code, char base) {
+    if (code.length() < 3) {
+      int c0 = (code.length() > 0) ? code.charAt(0) : 0;
+      int c1 = (code.length() > 1) ? code.charAt(1) : 0;
+      return (short) (c0 | c1 << 8);
+    }
+    int first = (code.charAt(0) - base) & 0x7f;
+    int second = (code.charAt(1) - base) & 0x7f;
+    int third = (code.charAt(2) - base) & 0x7f;
+    return (short) ((0x80 | (third << 2) | (second >> 3)) | ((second << 5) | first) << 8);
+  }
+
+  private static String unpack(int code, char base) {
+    int c0 = code & 0xff;
+    int c1 = code >>> 8;
+    if ((c0 & 0x80) == 0) {
+      StringBuilder sb = new StringBuilder(2);
+      if (c0 != 0) {
+        sb.append((char) c0);
+      }
+      if (c1 != 0) {
+        sb.append((char) c1);
+      }
+      return sb.toString();
+    }
+    int first = c1 & 0x1f;
+    int second = ((c1 & 0xe0) >> 5) + ((c0 & 0x03) << 3);
+    int third = (c0 & 0x7c) >> 2;
+    return new String(new char[]{(char) (base + first), (char) (base + second),
+      (char) (base + third)});
+  }
+
+  private String ascii(int offset, int length) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      int c = u8(offset + i);
+      if (c == 0) {
+        break;
+      }
+      sb.append((char) c);
+    }
+    return sb.toString();
+  }
+
+  private static int indexOf(String s, String... values) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i].equals(s)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static StringBuilder append(StringBuilder sb, String qualifier) {
+    if (sb.length() != 0) {
+      sb.append('-');
+    }
+    return sb.append(qualifier);
   }
 
   public String densityQualifier() {
+    int density = getDensity();
     switch (density) {
       case 120:
         return "ldpi";
@@ -102,6 +1084,7 @@ public class ResourceConfig {
   }
 
   public String orientationQualifier() {
+    int orientation = getOrientation();
     switch (orientation) {
       case 1:
         return "port";
@@ -111,4 +1094,9 @@ public class ResourceConfig {
         return String.valueOf(orientation);
     }
   }
+
+  @Override
+  public String toString() {
+    return qualifiers();
+  }
 }
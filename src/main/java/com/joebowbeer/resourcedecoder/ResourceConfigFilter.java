@@ -0,0 +1,67 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Accepts configurations whose qualifiers are all in a given set, such as <b>en,hdpi</b>. The
+ * default configuration is always accepted, and platform version qualifiers (<b>v4</b>) are
+ * ignored, so <b>en,hdpi</b> accepts <b>en</b>, <b>hdpi-v4</b> and <b>en-hdpi</b>, but not
+ * <b>fr</b> or <b>en-land</b>.
+ *
+ * @see ResourceDecoder#setConfigFilter(Predicate)
+ */
+public class ResourceConfigFilter implements Predicate<ResourceConfig> {
+
+  private final Set<String> qualifiers = new HashSet<>();
+
+  /**
+   * Creates a filter from qualifier strings, each of which may hold several qualifiers separated
+   * by '-', such as <b>en-rUS</b>.
+   */
+  public ResourceConfigFilter(Collection<String> qualifiers) {
+    for (String s : qualifiers) {
+      this.qualifiers.addAll(Arrays.asList(s.trim().split("-")));
+    }
+  }
+
+  /**
+   * Parses a comma-separated list of qualifiers.
+   */
+  public static ResourceConfigFilter parse(String spec) {
+    return new ResourceConfigFilter(Arrays.asList(spec.split(",")));
+  }
+
+  @Override
+  public boolean test(ResourceConfig config) {
+    if (config.isDefault()) {
+      return true;
+    }
+    for (String qualifier : config.qualifiers().split("-")) {
+      if (!qualifier.isEmpty() && !isVersion(qualifier) && !qualifiers.contains(qualifier)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return qualifiers.toString();
+  }
+
+  private static boolean isVersion(String qualifier) {
+    if (qualifier.length() < 2 || qualifier.charAt(0) != 'v') {
+      return false;
+    }
+    for (int i = 1; i < qualifier.length(); i++) {
+      if (!Character.isDigit(qualifier.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
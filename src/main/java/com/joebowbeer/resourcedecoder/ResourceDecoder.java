@@ -3,9 +3,12 @@ package com.joebowbeer.resourcedecoder;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
 
 import com.joebowbeer.resourcedecoder.StringPool.Style;
 
@@ -60,12 +63,46 @@ public class ResourceDecoder {
 
   private final ContentHandler contentHandler;
 
+  private Predicate<ResourceConfig> configFilter;
+
+  private ResourceFilter resourceFilter;
+
+  private LongPredicate chunkFilter;
+
+  /* filter state of current package */
+  private long packageStart = -1;
+  private int typeStrings;
+  private int keyStrings;
+  private BitSet[] typeMatches;
+  private int[][] keyMatches;
+  private BitSet typeMatch;
+
   private boolean tableTypeSpecStarted;
 
   public ResourceDecoder(ContentHandler contentHandler) {
     this.contentHandler = contentHandler;
   }
 
+  /**
+   * Sets a filter on table type configurations. The entries of a type chunk whose configuration
+   * is rejected are skipped without being decoded or reported to the handler.
+   *
+   * @param configFilter configuration predicate, or null to decode all configurations
+   */
+  public void setConfigFilter(Predicate<ResourceConfig> configFilter) {
+    this.configFilter = configFilter;
+  }
+
+  /**
+   * Sets a filter on table packages, types and entry names. Rejected package and type chunks are
+   * skipped whole, and rejected entries are skipped without being decoded.
+   *
+   * @param resourceFilter resource filter, or null to decode everything
+   */
+  public void setResourceFilter(ResourceFilter resourceFilter) {
+    this.resourceFilter = resourceFilter;
+  }
+
   protected ContentHandler getHandler() {
     return contentHandler;
   }
@@ -141,6 +178,7 @@ public class ResourceDecoder {
 
   protected void decodeStringPool(int headerSize, int totalSize,
       ResourceInputStream in) throws IOException {
+    long chunkStart = in.getResourceOffset() - HSIZE;
     int stringCount = in.readInt();
     int styleCount = in.readInt();
     int flags = in.readInt();
@@ -187,7 +225,16 @@ public class ResourceDecoder {
       }
     }
     in.skipFully(totalSize - headerSize - dataRead);
-    getHandler().onStringPool(new StringPool(strings, styles));
+    StringPool pool = new StringPool(strings, styles);
+    if (resourceFilter != null && packageStart >= 0) {
+      // identify the type and key pools of the current package by offset
+      if (chunkStart - packageStart == typeStrings) {
+        typeMatches = resourceFilter.matchTypes(pool);
+      } else if (chunkStart - packageStart == keyStrings) {
+        keyMatches = resourceFilter.matchKeys(pool);
+      }
+    }
+    getHandler().onStringPool(pool);
   }
 
   protected int decodeStringUtf8(ResourceInputStream in, List<String> list)
@@ -262,6 +309,7 @@ public class ResourceDecoder {
 
   protected void decodeTablePackage(int headerSize, int totalSize,
       ResourceInputStream in) throws IOException {
+    long chunkStart = in.getResourceOffset() - HSIZE;
     int id = in.readInt();
     byte[] data = new byte[256];
     in.readFully(data);
@@ -270,8 +318,15 @@ public class ResourceDecoder {
     int lastPublicType = in.readInt();
     int keyStrings = in.readInt();
     int lastPublicKey = in.readInt();
+    if (resourceFilter != null && !resourceFilter.acceptPackage(id)) {
+      in.skipFully(totalSize - (HSIZE + 276));
+      return;
+    }
     in.skipFully(headerSize - (HSIZE + 276));
     assert typeStrings == 0 || keyStrings == 0 || typeStrings < keyStrings;
+    packageStart = chunkStart;
+    this.typeStrings = typeStrings;
+    this.keyStrings = keyStrings;
     getHandler().onTablePackageStart(id, name, typeStrings,
         lastPublicType, keyStrings, lastPublicKey);
     while (decode(in) != TYPE_NONE) {
@@ -280,6 +335,10 @@ public class ResourceDecoder {
       getHandler().onTableTypeSpecEnd();
       tableTypeSpecStarted = false;
     }
+    packageStart = -1;
+    typeMatches = null;
+    keyMatches = null;
+    typeMatch = null;
     getHandler().onTablePackageEnd();
   }
 
@@ -291,6 +350,10 @@ public class ResourceDecoder {
     }
     int id = in.readUnsignedByte();
     assert id > 0;
+    if (!acceptType(id)) {
+      in.skipFully(totalSize - (HSIZE + 1));
+      return;
+    }
     int res0 = in.readUnsignedByte();
     int res1 = in.readUnsignedShort();
     assert (res0 | res1) == 0;
@@ -305,12 +368,30 @@ public class ResourceDecoder {
     tableTypeSpecStarted = true;
   }
 
+  /**
+   * Sets a filter on table type chunks by file offset. Rejected type chunks are skipped whole.
+   *
+   * @param chunkFilter offset predicate, or null to decode all type chunks
+   */
+  public void setChunkFilter(LongPredicate chunkFilter) {
+    this.chunkFilter = chunkFilter;
+  }
+
   private static final int NO_ENTRY = 0xFFFFFFFF;
 
   protected void decodeTableType(int headerSize, int totalSize,
       ResourceInputStream in) throws IOException {
+    if (chunkFilter != null && !chunkFilter.test(in.getResourceOffset() - HSIZE)) {
+      in.skipFully(totalSize - HSIZE);
+      return;
+    }
     int id = in.readUnsignedByte();
     assert id > 0;
+    if (!acceptType(id)) {
+      in.skipFully(totalSize - (HSIZE + 1));
+      return;
+    }
+    typeMatch = (typeMatches != null) ? typeMatches[id - 1] : null;
     int res0 = in.readUnsignedByte();
     int res1 = in.readUnsignedShort();
     assert (res0 | res1) == 0;
@@ -319,34 +400,18 @@ public class ResourceDecoder {
 
     // configuration
     int configSize = in.readInt();
-    int mcc = in.readUnsignedShort();
-    int mnc = in.readUnsignedShort();
-    byte[] data = new byte[2];
-    in.readFully(data);
-    String language = new String(data, "US-ASCII").replace("\0", "");
+    if (configSize < 4) {
+      throw new IllegalStateException("Invalid config size: " + configSize);
+    }
+    byte[] data = new byte[configSize - 4];
     in.readFully(data);
-    String country = new String(data, "US-ASCII").replace("\0", "");
-    int orientation = in.readUnsignedByte();
-    int touchscreen = in.readUnsignedByte();
-    int density = in.readUnsignedShort();
-    int keyboard = in.readUnsignedByte();
-    int navigation = in.readUnsignedByte();
-    int inputFlags = in.readUnsignedByte();
-    int inputPad0 = in.readUnsignedByte();
-    int screenWidth = in.readUnsignedShort();
-    int screenHeight = in.readUnsignedShort();
-    int sdkVersion = in.readUnsignedShort();
-    int minorVersion = in.readUnsignedShort();
-    int screenLayout = in.readUnsignedByte();
-    int uiMode = in.readUnsignedByte();
-    int screenConfigPad1 = in.readUnsignedByte();
-    int screenConfigPad2 = in.readUnsignedByte();
-    ResourceConfig config = new ResourceConfig(mcc, mnc, language, country,
-        orientation, touchscreen, density,
-        keyboard, navigation, inputFlags, screenWidth, screenHeight,
-        sdkVersion, minorVersion, screenLayout, uiMode);
-
-    in.skipFully(headerSize - (HSIZE + 12 + 32));
+    ResourceConfig config = ResourceConfig.fromBytes(data);
+    if (configFilter != null && !configFilter.test(config)) {
+      in.skipFully(totalSize - (HSIZE + 12 + configSize));
+      return;
+    }
+
+    in.skipFully(headerSize - (HSIZE + 12 + configSize));
 
     int[] offsets = new int[entryCount];
     for (int i = 0; i < entryCount; i++) {
@@ -363,12 +428,20 @@ public class ResourceDecoder {
     getHandler().onTableTypeEnd();
   }
 
+  private boolean acceptType(int id) {
+    return typeMatches == null || !typeMatches[id - 1].isEmpty();
+  }
+
   protected int decodeTableEntry(ResourceInputStream in, int index)
       throws IOException {
     int size = in.readUnsignedShort();
     int flags = in.readUnsignedShort();
     int key = in.readInt();
     int dataRead = 8;
+    if (keyMatches != null && typeMatch != null
+        && !ResourceFilter.acceptEntry(keyMatches[key], typeMatch)) {
+      return dataRead + skipTableEntry(in, flags);
+    }
     if (!isComplexEntry(flags)) {
       getHandler().onTableEntryStart(index, flags, key, 0, 0);
       dataRead += decodeResourceValue(in);
@@ -388,6 +461,29 @@ public class ResourceDecoder {
     return dataRead;
   }
 
+  /**
+   * Skips the remainder of an entry after its key, and returns the number of bytes skipped.
+   */
+  protected int skipTableEntry(ResourceInputStream in, int flags) throws IOException {
+    int dataRead = 0;
+    int count = 1;
+    if (isComplexEntry(flags)) {
+      in.skipFully(4); // parent
+      count = in.readInt();
+      dataRead += 8;
+    }
+    for (int i = 0; i < count; i++) {
+      if (isComplexEntry(flags)) {
+        in.skipFully(4); // name
+        dataRead += 4;
+      }
+      int size = in.readUnsignedShort();
+      in.skipFully(size - 2);
+      dataRead += size;
+    }
+    return dataRead;
+  }
+
   protected int decodeResourceValue(ResourceInputStream in)
       throws IOException {
     long offset = in.getResourceOffset();
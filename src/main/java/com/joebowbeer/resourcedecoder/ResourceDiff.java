@@ -0,0 +1,688 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import nu.xom.Attribute;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.Elements;
+
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_STRING_POOL;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_TABLE;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_TABLE_PACKAGE;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_TABLE_TYPE;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_XML;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.hexId;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.isComplexEntry;
+import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_STRING;
+
+/**
+ * Compares two resource tables, or two binary xml files, and reports the differences. The chunks
+ * of two tables are first compared by their bytes: identical packages are skipped whole, and
+ * only the type chunks that differ are decoded into values, keyed by resource name and
+ * configuration. A type chunk whose bytes are identical is decoded nevertheless if it refers to a
+ * type, key or value string that changed. Xml files are compared element by element, unless they
+ * are identical.
+ */
+public class ResourceDiff {
+
+  private static final int HSIZE = 8;
+
+  private static final int NO_ENTRY = 0xFFFFFFFF;
+
+  public enum Kind {
+    ADDED, REMOVED, CHANGED
+  }
+
+  /**
+   * Value added, removed or changed. The name of a table value is of the form
+   * <b>R.type.key-config</b>, followed by the bag item's attribute id, if any. The name of an
+   * added or removed xml element is its path followed by its attributes, and it has no values;
+   * the values of a changed element are its old and new attributes.
+   */
+  public static class Difference {
+
+    public final Kind kind;
+    public final String name;
+    public final String oldValue;
+    public final String newValue;
+
+    public Difference(Kind kind, String name, String oldValue, String newValue) {
+      this.kind = kind;
+      this.name = name;
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+    }
+
+    @Override
+    public String toString() {
+      switch (kind) {
+        case ADDED:
+          return "+ " + name + (newValue != null ? "=" + newValue : "");
+        case REMOVED:
+          return "- " + name + (oldValue != null ? "=" + oldValue : "");
+        default:
+          return "~ " + name + "=" + oldValue + " -> " + newValue;
+      }
+    }
+  }
+
+  private final String oldName;
+  private final String newName;
+
+  private int skippedChunks;
+  private int decodedChunks;
+
+  public ResourceDiff(String oldName, String newName) {
+    this.oldName = oldName;
+    this.newName = newName;
+  }
+
+  /**
+   * Returns the number of type chunks that were identical in both files, and not decoded.
+   */
+  public int getSkippedChunks() {
+    return skippedChunks;
+  }
+
+  /**
+   * Returns the number of type chunks that were decoded, in either file.
+   */
+  public int getDecodedChunks() {
+    return decodedChunks;
+  }
+
+  /**
+   * Returns the differences from the old file to the new, sorted by name for tables, and in
+   * document order for xml.
+   *
+   * @throws IOException if the files are not both tables or both xml
+   */
+  public List<Difference> diff() throws IOException {
+    ByteBuffer a = ByteBuffer.wrap(Files.readAllBytes(Paths.get(oldName)))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(Paths.get(newName)))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    skippedChunks = 0;
+    decodedChunks = 0;
+    if (a.equals(b)) {
+      return Collections.emptyList();
+    }
+    int type = chunkType(a);
+    if (type != chunkType(b)) {
+      throw new IOException("Cannot compare " + oldName + " with " + newName);
+    }
+    switch (type) {
+      case TYPE_TABLE:
+        return diffTables(a, b);
+      case TYPE_XML:
+        return diffXml(a, b);
+      default:
+        throw new IOException("Unsupported chunk type: " + type);
+    }
+  }
+
+  private static int chunkType(ByteBuffer buf) throws IOException {
+    if (buf.capacity() < HSIZE || buf.getInt(4) > buf.capacity()) {
+      throw new IOException("Truncated chunk");
+    }
+    return u16(buf, 0);
+  }
+
+  /* Tables */
+  private List<Difference> diffTables(ByteBuffer a, ByteBuffer b) throws IOException {
+    Table ta = new Table(a);
+    Table tb = new Table(b);
+    BitSet values = changedStrings(a, ta.valuePool, b, tb.valuePool);
+    Set<Long> decodeA = new HashSet<>();
+    Set<Long> decodeB = new HashSet<>();
+    Set<Integer> ids = new TreeSet<>(ta.packages.keySet());
+    ids.addAll(tb.packages.keySet());
+    for (int id : ids) {
+      Package pa = ta.packages.get(id);
+      Package pb = tb.packages.get(id);
+      if (pa == null || pb == null) {
+        // added or removed package
+        (pa != null ? pa : pb).addAll(pa != null ? decodeA : decodeB);
+        continue;
+      }
+      if (values.isEmpty() && sameChunk(a, pa.offset, b, pb.offset)) {
+        skippedChunks += pa.size();
+        continue;
+      }
+      BitSet types = changedStrings(a, pa.typePool, b, pb.typePool);
+      BitSet keys = changedStrings(a, pa.keyPool, b, pb.keyPool);
+      Set<Integer> typeIds = new TreeSet<>(pa.types.keySet());
+      typeIds.addAll(pb.types.keySet());
+      for (int typeId : typeIds) {
+        Map<ResourceConfig, List<Integer>> ca =
+            pa.types.getOrDefault(typeId, Collections.emptyMap());
+        Map<ResourceConfig, List<Integer>> cb =
+            pb.types.getOrDefault(typeId, Collections.emptyMap());
+        Set<ResourceConfig> configs = new HashSet<>(ca.keySet());
+        configs.addAll(cb.keySet());
+        for (ResourceConfig config : configs) {
+          List<Integer> oa = ca.getOrDefault(config, Collections.emptyList());
+          List<Integer> ob = cb.getOrDefault(config, Collections.emptyList());
+          // duplicates are decoded on both sides, as they cannot be paired by configuration
+          if (oa.size() == 1 && ob.size() == 1 && sameChunk(a, oa.get(0), b, ob.get(0))
+              && !types.get(typeId - 1) && !references(a, oa.get(0), values, keys)) {
+            skippedChunks++;
+          } else {
+            Package.addAll(oa, decodeA);
+            Package.addAll(ob, decodeB);
+          }
+        }
+      }
+    }
+    decodedChunks = decodeA.size() + decodeB.size();
+    Map<String, String> oldValues = collectValues(a, decodeA);
+    Map<String, String> newValues = collectValues(b, decodeB);
+    List<Difference> diffs = new ArrayList<>();
+    Set<String> names = new TreeSet<>(oldValues.keySet());
+    names.addAll(newValues.keySet());
+    for (String name : names) {
+      String oldValue = oldValues.get(name);
+      String newValue = newValues.get(name);
+      if (oldValue == null) {
+        diffs.add(new Difference(Kind.ADDED, name, null, newValue));
+      } else if (newValue == null) {
+        diffs.add(new Difference(Kind.REMOVED, name, oldValue, null));
+      } else if (!oldValue.equals(newValue)) {
+        diffs.add(new Difference(Kind.CHANGED, name, oldValue, newValue));
+      }
+    }
+    return diffs;
+  }
+
+  /**
+   * Decodes the given type chunks, and returns their values keyed by name.
+   */
+  private static Map<String, String> collectValues(ByteBuffer buf, Set<Long> chunks)
+      throws IOException {
+    if (chunks.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    ValueCollector collector = new ValueCollector();
+    ResourceDecoder decoder = new ResourceDecoder(collector);
+    decoder.setChunkFilter(chunks::contains);
+    decoder.decode(new ResourceInputStream(new ByteArrayInputStream(buf.array())));
+    return collector.values;
+  }
+
+  /**
+   * Returns the indexes of the strings that differ between two string pool chunks, either of
+   * which may be missing.
+   */
+  private static BitSet changedStrings(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset)
+      throws IOException {
+    BitSet changed = new BitSet();
+    if (sameChunk(a, aOffset, b, bOffset)) {
+      return changed;
+    }
+    StringPool pa = decodePool(a, aOffset);
+    StringPool pb = decodePool(b, bOffset);
+    for (int i = 0, n = Math.max(pa.size(), pb.size()); i < n; i++) {
+      if (!Objects.equals(pa.getString(i), pb.getString(i))) {
+        changed.set(i);
+      }
+    }
+    return changed;
+  }
+
+  private static StringPool decodePool(ByteBuffer buf, int offset) throws IOException {
+    List<StringPool> pools = new ArrayList<>(1);
+    if (offset >= 0) {
+      ContentFilter handler = new ContentFilter() {
+        @Override
+        public void onStringPool(StringPool stringPool) {
+          pools.add(stringPool);
+          super.onStringPool(stringPool);
+        }
+      };
+      new ResourceDecoder(handler).decode(new ResourceInputStream(
+          new ByteArrayInputStream(buf.array(), offset, buf.getInt(offset + 4))));
+    }
+    return pools.isEmpty()
+        ? new StringPool(Collections.emptyList(), Collections.emptyList()) : pools.get(0);
+  }
+
+  /**
+   * Returns true if the given type chunk has an entry whose key, or a string value, is among the
+   * given indexes.
+   */
+  private static boolean references(ByteBuffer buf, int chunk, BitSet values, BitSet keys) {
+    if (values.isEmpty() && keys.isEmpty()) {
+      return false;
+    }
+    if (buf.get(chunk + 9) != 0) {
+      return true; // flags, such as sparse, that we do not scan
+    }
+    int headerSize = u16(buf, chunk + 2);
+    int entryCount = buf.getInt(chunk + 12);
+    int entriesStart = chunk + buf.getInt(chunk + 16);
+    for (int i = 0; i < entryCount; i++) {
+      int offset = buf.getInt(chunk + headerSize + 4 * i);
+      if (offset == NO_ENTRY) {
+        continue;
+      }
+      int entry = entriesStart + offset;
+      int size = u16(buf, entry);
+      int key = buf.getInt(entry + 4);
+      if (key >= 0 && keys.get(key)) {
+        return true;
+      }
+      if (isComplexEntry(u16(buf, entry + 2))) {
+        int count = buf.getInt(entry + 12);
+        for (int j = 0; j < count; j++) {
+          if (isString(buf, entry + size + 12 * j + 4, values)) {
+            return true;
+          }
+        }
+      } else if (isString(buf, entry + size, values)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isString(ByteBuffer buf, int value, BitSet values) {
+    int data = buf.getInt(value + 4);
+    return (buf.get(value + 3) & 0xff) == TYPE_STRING && data >= 0 && values.get(data);
+  }
+
+  private static boolean sameChunk(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset) {
+    if (aOffset < 0 || bOffset < 0) {
+      return aOffset < 0 && bOffset < 0;
+    }
+    int size = a.getInt(aOffset + 4);
+    return size == b.getInt(bOffset + 4) && range(a, aOffset, size).equals(range(b, bOffset, size));
+  }
+
+  private static ByteBuffer range(ByteBuffer buf, int offset, int size) {
+    return ((ByteBuffer) buf.duplicate().limit(offset + size).position(offset)).slice();
+  }
+
+  private static int u16(ByteBuffer buf, int offset) {
+    return buf.getShort(offset) & 0xFFFF;
+  }
+
+  /**
+   * File offsets of the value pool and packages of a table.
+   */
+  private static class Table {
+
+    int valuePool = -1;
+    final Map<Integer, Package> packages = new LinkedHashMap<>();
+
+    Table(ByteBuffer buf) throws IOException {
+      int end = buf.getInt(4);
+      for (int pos = u16(buf, 2), size; pos + HSIZE <= end; pos += size) {
+        size = chunkSize(buf, pos, end);
+        int type = u16(buf, pos);
+        if (type == TYPE_STRING_POOL && valuePool < 0) {
+          valuePool = pos;
+        } else if (type == TYPE_TABLE_PACKAGE) {
+          Package pkg = new Package(buf, pos, pos + size);
+          packages.put(pkg.id, pkg);
+        }
+      }
+    }
+  }
+
+  /**
+   * File offsets of the pools and type chunks of a package. Type chunks are keyed by type id and
+   * configuration; a key may have duplicate chunks.
+   */
+  private static class Package {
+
+    final int id;
+    final int offset;
+    final int typePool;
+    final int keyPool;
+    final Map<Integer, Map<ResourceConfig, List<Integer>>> types = new HashMap<>();
+
+    Package(ByteBuffer buf, int offset, int end) throws IOException {
+      this.offset = offset;
+      id = buf.getInt(offset + 8);
+      int typeStrings = buf.getInt(offset + 268);
+      int keyStrings = buf.getInt(offset + 276);
+      typePool = (typeStrings != 0) ? offset + typeStrings : -1;
+      keyPool = (keyStrings != 0) ? offset + keyStrings : -1;
+      for (int pos = offset + u16(buf, offset + 2), size; pos + HSIZE <= end; pos += size) {
+        size = chunkSize(buf, pos, end);
+        if (u16(buf, pos) == TYPE_TABLE_TYPE) {
+          int typeId = buf.get(pos + 8) & 0xff;
+          byte[] config = new byte[Math.max(0, buf.getInt(pos + 20) - 4)];
+          ((ByteBuffer) buf.duplicate().position(pos + 24)).get(config);
+          types.computeIfAbsent(typeId, k -> new HashMap<>())
+              .computeIfAbsent(ResourceConfig.fromBytes(config), k -> new ArrayList<>(1))
+              .add(pos);
+        }
+      }
+    }
+
+    int size() {
+      int size = 0;
+      for (Map<ResourceConfig, List<Integer>> configs : types.values()) {
+        for (List<Integer> offsets : configs.values()) {
+          size += offsets.size();
+        }
+      }
+      return size;
+    }
+
+    void addAll(Set<Long> chunks) {
+      for (Map<ResourceConfig, List<Integer>> configs : types.values()) {
+        for (List<Integer> offsets : configs.values()) {
+          addAll(offsets, chunks);
+        }
+      }
+    }
+
+    static void addAll(List<Integer> offsets, Set<Long> chunks) {
+      for (int offset : offsets) {
+        chunks.add((long) offset);
+      }
+    }
+  }
+
+  private static int chunkSize(ByteBuffer buf, int pos, int end) throws IOException {
+    int size = buf.getInt(pos + 4);
+    if (size < HSIZE || pos + size > end) {
+      throw new IOException("Invalid chunk at " + pos);
+    }
+    return size;
+  }
+
+  /**
+   * ContentFilter that collects the formatted values of the decoded type chunks, keyed by name.
+   */
+  private static class ValueCollector extends ContentFilter {
+
+    final Map<String, String> values = new TreeMap<>();
+
+    private boolean tableStarted;
+    private StringPool pool;
+    private boolean hasTypePool;
+    private boolean hasKeyPool;
+    private StringPool typePool;
+    private StringPool keyPool;
+    private String restypeName;
+    private String qualifiers;
+    private String entryName;
+    private boolean isComplexEntry;
+    private int entryMapName;
+
+    /* ContentFilter overrides */
+    @Override
+    public void onTableStart(int packageCount) {
+      tableStarted = true;
+      super.onTableStart(packageCount);
+    }
+
+    @Override
+    public void onStringPool(StringPool stringPool) {
+      // ignore unless we are inside table content
+      if (!tableStarted) {
+        super.onStringPool(stringPool);
+        return;
+      }
+      if (pool == null) {
+        pool = stringPool;
+      } else if (hasTypePool && typePool == null) {
+        typePool = stringPool;
+      } else if (hasKeyPool && keyPool == null) {
+        keyPool = stringPool;
+      } else {
+        throw new IllegalStateException();
+      }
+      super.onStringPool(stringPool);
+    }
+
+    @Override
+    public void onTablePackageStart(int id, String name, int typeStrings,
+        int lastPublicType, int keyStrings, int lastPublicKey) {
+      hasTypePool = typeStrings != 0;
+      hasKeyPool = keyStrings != 0;
+      super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+          keyStrings, lastPublicKey);
+    }
+
+    @Override
+    public void onTableTypeSpecStart(int id, int[] configs) {
+      restypeName = typePool.getString(id - 1);
+      super.onTableTypeSpecStart(id, configs);
+    }
+
+    @Override
+    public void onTableTypeStart(int id, ResourceConfig config, int entryCount,
+        int entryStart, int[] offsets) {
+      String q = config.qualifiers();
+      qualifiers = q.isEmpty() ? "" : "-" + q;
+      super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
+    }
+
+    @Override
+    public void onTableEntryStart(int id, int flags, int key, int parent,
+        int count) {
+      entryName = "R." + restypeName + "." + keyPool.getString(key) + qualifiers;
+      isComplexEntry = isComplexEntry(flags);
+      super.onTableEntryStart(id, flags, key, parent, count);
+    }
+
+    @Override
+    public void onTableEntryMapName(int name) {
+      entryMapName = name;
+      super.onTableEntryMapName(name);
+    }
+
+    @Override
+    public void onResourceValue(long offset, ResourceValue value) {
+      // ignore unless we are inside table content
+      if (tableStarted && entryName != null) {
+        // the first of duplicate type chunks is used, as at runtime
+        values.putIfAbsent(isComplexEntry ? entryName + " " + hexId(entryMapName) : entryName,
+            value.format(pool));
+      }
+      super.onResourceValue(offset, value);
+    }
+
+    @Override
+    public void onTableEntryEnd() {
+      entryName = null;
+      entryMapName = 0;
+      super.onTableEntryEnd();
+    }
+
+    @Override
+    public void onTableTypeSpecEnd() {
+      restypeName = null;
+      super.onTableTypeSpecEnd();
+    }
+
+    @Override
+    public void onTablePackageEnd() {
+      typePool = null;
+      keyPool = null;
+      super.onTablePackageEnd();
+    }
+
+    @Override
+    public void onTableEnd() {
+      tableStarted = false;
+      pool = null;
+      super.onTableEnd();
+    }
+  }
+
+  /* Xml */
+  private List<Difference> diffXml(ByteBuffer a, ByteBuffer b) throws IOException {
+    List<String> oldLines = elementLines(a);
+    List<String> newLines = elementLines(b);
+    BitSet oldKept = new BitSet();
+    BitSet newKept = new BitSet();
+    align(oldLines, 0, oldLines.size(), newLines, 0, newLines.size(), oldKept, newKept);
+    List<Difference> diffs = new ArrayList<>();
+    int i = 0;
+    int j = 0;
+    while (i < oldLines.size() || j < newLines.size()) {
+      // the lines between two kept lines were removed or added
+      int oldNext = oldKept.nextSetBit(i);
+      int newNext = newKept.nextSetBit(j);
+      oldNext = (oldNext >= 0) ? oldNext : oldLines.size();
+      newNext = (newNext >= 0) ? newNext : newLines.size();
+      addHunk(oldLines.subList(i, oldNext), newLines.subList(j, newNext), diffs);
+      i = oldNext + 1;
+      j = newNext + 1;
+    }
+    return diffs;
+  }
+
+  /**
+   * Adds the differences between the removed and added lines of a hunk. A removed element whose
+   * path matches an added one is reported as changed; removals are reported before additions.
+   */
+  private static void addHunk(List<String> removed, List<String> added, List<Difference> diffs) {
+    List<String> unpaired = new ArrayList<>(added);
+    for (String line : removed) {
+      String path = path(line);
+      int k = 0;
+      while (k < unpaired.size() && !path(unpaired.get(k)).equals(path)) {
+        k++;
+      }
+      if (k < unpaired.size()) {
+        diffs.add(new Difference(Kind.CHANGED, path, attributes(line),
+            attributes(unpaired.remove(k))));
+      } else {
+        diffs.add(new Difference(Kind.REMOVED, line, null, null));
+      }
+    }
+    for (String line : unpaired) {
+      diffs.add(new Difference(Kind.ADDED, line, null, null));
+    }
+  }
+
+  private static String path(String line) {
+    int space = line.indexOf(' ');
+    return (space >= 0) ? line.substring(0, space) : line;
+  }
+
+  private static String attributes(String line) {
+    int space = line.indexOf(' ');
+    return (space >= 0) ? line.substring(space + 1) : "";
+  }
+
+  /**
+   * Marks the lines of a longest common subsequence of the given ranges, in linear space, by
+   * Hirschberg's algorithm.
+   */
+  private static void align(List<String> a, int aStart, int aEnd, List<String> b, int bStart,
+      int bEnd, BitSet aKept, BitSet bKept) {
+    // trim the common prefix and suffix
+    while (aStart < aEnd && bStart < bEnd && a.get(aStart).equals(b.get(bStart))) {
+      aKept.set(aStart++);
+      bKept.set(bStart++);
+    }
+    while (aEnd > aStart && bEnd > bStart && a.get(aEnd - 1).equals(b.get(bEnd - 1))) {
+      aKept.set(--aEnd);
+      bKept.set(--bEnd);
+    }
+    if (aStart == aEnd || bStart == bEnd) {
+      return;
+    }
+    if (aEnd - aStart == 1) {
+      int j = b.subList(bStart, bEnd).indexOf(a.get(aStart));
+      if (j >= 0) {
+        aKept.set(aStart);
+        bKept.set(bStart + j);
+      }
+      return;
+    }
+    // split b where the lengths of the subsequences of both halves of a add up to the most
+    int aMid = (aStart + aEnd) >>> 1;
+    int[] forward = lcsLengths(a, aStart, aMid, b, bStart, bEnd, false);
+    int[] backward = lcsLengths(a, aMid, aEnd, b, bStart, bEnd, true);
+    int m = bEnd - bStart;
+    int split = 0;
+    for (int k = 1; k <= m; k++) {
+      if (forward[k] + backward[m - k] > forward[split] + backward[m - split]) {
+        split = k;
+      }
+    }
+    align(a, aStart, aMid, b, bStart, bStart + split, aKept, bKept);
+    align(a, aMid, aEnd, b, bStart + split, bEnd, aKept, bKept);
+  }
+
+  /**
+   * Returns the lengths of the longest common subsequences of a range of a and each prefix of a
+   * range of b, or of each suffix if reversed.
+   */
+  private static int[] lcsLengths(List<String> a, int aStart, int aEnd, List<String> b,
+      int bStart, int bEnd, boolean reverse) {
+    int m = bEnd - bStart;
+    int[] row = new int[m + 1];
+    for (int i = aStart; i < aEnd; i++) {
+      String s = a.get(reverse ? aStart + aEnd - 1 - i : i);
+      int diagonal = 0;
+      for (int j = 1; j <= m; j++) {
+        int above = row[j];
+        row[j] = s.equals(b.get(reverse ? bEnd - j : bStart + j - 1))
+            ? diagonal + 1 : Math.max(above, row[j - 1]);
+        diagonal = above;
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Returns a line for each element, in document order, of the form
+   * <b>/manifest/application name="value" ...</b>, with attributes sorted by name.
+   */
+  private static List<String> elementLines(ByteBuffer buf) throws IOException {
+    XmlContentToDocument handler = new XmlContentToDocument();
+    new ResourceDecoder(handler).decode(
+        new ResourceInputStream(new ByteArrayInputStream(buf.array())));
+    List<String> lines = new ArrayList<>();
+    Document doc = handler.toDocument();
+    if (doc != null) {
+      addLines(doc.getRootElement(), "", lines);
+    }
+    return lines;
+  }
+
+  private static void addLines(Element element, String parentPath, List<String> lines) {
+    String path = parentPath + "/" + element.getQualifiedName();
+    Map<String, String> attributes = new TreeMap<>();
+    for (int i = 0; i < element.getAttributeCount(); i++) {
+      Attribute attribute = element.getAttribute(i);
+      attributes.put(attribute.getQualifiedName(), attribute.getValue());
+    }
+    StringBuilder sb = new StringBuilder(path);
+    for (Map.Entry<String, String> e : attributes.entrySet()) {
+      sb.append(' ').append(e.getKey()).append("=\"").append(e.getValue()).append('"');
+    }
+    lines.add(sb.toString());
+    Elements children = element.getChildElements();
+    for (int i = 0; i < children.size(); i++) {
+      addLines(children.get(i), path, lines);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects table content by package id, resource type and resource name. Type and name patterns
+ * have the same syntax as the parts of {@link ResourcePatterns}; empty collections select
+ * everything.
+ *
+ * @see ResourceDecoder#setResourceFilter(ResourceFilter)
+ */
+public class ResourceFilter {
+
+  private final Set<Integer> packageIds;
+  private final ResourcePatterns patterns;
+  private final boolean matchNames;
+
+  public ResourceFilter(Collection<Integer> packageIds, Collection<String> types,
+      Collection<String> names) {
+    this.packageIds = new HashSet<>(packageIds);
+    this.matchNames = !names.isEmpty();
+    if (types.isEmpty() && names.isEmpty()) {
+      patterns = null;
+    } else {
+      List<String> list = new ArrayList<>();
+      for (String type : types.isEmpty() ? Collections.singleton("*") : types) {
+        for (String name : names.isEmpty() ? Collections.singleton("*") : names) {
+          list.add("R." + type + "." + name);
+        }
+      }
+      patterns = new ResourcePatterns(list);
+    }
+  }
+
+  public boolean acceptPackage(int id) {
+    return packageIds.isEmpty() || packageIds.contains(id);
+  }
+
+  /**
+   * Returns the patterns matching each type in the given type pool, or null if all types are
+   * selected. A type is selected if its set is not empty.
+   */
+  public BitSet[] matchTypes(StringPool typePool) {
+    if (patterns == null) {
+      return null;
+    }
+    BitSet[] types = new BitSet[typePool.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = patterns.matchType(typePool.getString(i));
+    }
+    return types;
+  }
+
+  /**
+   * Returns the patterns matching each key in the given key pool, or null if all names are
+   * selected.
+   *
+   * @see #acceptEntry(int[], BitSet)
+   */
+  public int[][] matchKeys(StringPool keyPool) {
+    return matchNames ? patterns.matchKeys(keyPool) : null;
+  }
+
+  /**
+   * Returns true if any of the patterns matching a key also matches its type.
+   */
+  public static boolean acceptEntry(int[] keyMatches, BitSet typeMatches) {
+    return ResourcePatterns.select(keyMatches, typeMatches) >= 0;
+  }
+}
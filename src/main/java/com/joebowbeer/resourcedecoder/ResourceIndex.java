@@ -0,0 +1,242 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Memory-mapped index of the values in a resources.arsc file, written by
+ * {@link TableIndexBuilder}. The index records the SHA-256 hash of the file, and its size and
+ * modification time, so that it can be reused without reading the file until the file changes.
+ * The little-endian layout is flat, so that lookups read only the pages they need:
+ * <pre>
+ * int magic, int version
+ * byte[64] hash, in hex
+ * int entryCount, int valueCount, int hashSize, int stringCount
+ * long fileSize, long lastModified
+ * entries[entryCount], sorted by id: int id, int name, int firstValue, int valueCount
+ * int[hashSize] entry index + 1, or 0; open addressing by name hash
+ * values[valueCount]: int offset, int type, int data, int itemName, int config, int text
+ * int[stringCount + 1] offsets into strings
+ * byte[] UTF-8 strings
+ * </pre>
+ * Names are of the form <b>package:type/key</b>, and are hashed without the package. For each
+ * value, <b>offset</b> is the file offset of its Res_value, <b>itemName</b> is the bag item name,
+ * or 0, <b>config</b> is the string index of its qualifiers, and <b>text</b> is the string index
+ * of its value, if it is a string, or -1.
+ */
+public class ResourceIndex {
+
+  public static final int MAGIC = 0x58444952; // RIDX
+  public static final int VERSION = 3;
+
+  static final int HASH_SIZE = 64;
+  static final int HEADER_SIZE = 8 + HASH_SIZE + 32;
+  static final int ENTRY_SIZE = 16;
+  static final int VALUE_SIZE = 24;
+
+  private final ByteBuffer buf;
+  private final int entryCount;
+  private final int valueCount;
+  private final int hashSize;
+  private final int stringCount;
+  private final int entriesStart;
+  private final int hashStart;
+  private final int valuesStart;
+  private final int offsetsStart;
+  private final int stringsStart;
+
+  private ResourceIndex(ByteBuffer buf) throws IOException {
+    this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+    if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+      throw new IOException("Not a resource index");
+    }
+    entryCount = buf.getInt(8 + HASH_SIZE);
+    valueCount = buf.getInt(12 + HASH_SIZE);
+    hashSize = buf.getInt(16 + HASH_SIZE);
+    stringCount = buf.getInt(20 + HASH_SIZE);
+    long size = HEADER_SIZE + (long) ENTRY_SIZE * entryCount + 4L * hashSize
+        + (long) VALUE_SIZE * valueCount + 4L * stringCount + 4;
+    if (entryCount < 0 || hashSize < 0 || valueCount < 0 || stringCount < 0
+        || size > buf.capacity()) {
+      throw new IOException("Truncated resource index");
+    }
+    entriesStart = HEADER_SIZE;
+    hashStart = entriesStart + ENTRY_SIZE * entryCount;
+    valuesStart = hashStart + 4 * hashSize;
+    offsetsStart = valuesStart + VALUE_SIZE * valueCount;
+    stringsStart = offsetsStart + 4 * (stringCount + 1);
+    if (stringsStart + buf.getInt(offsetsStart + 4 * stringCount) != buf.capacity()) {
+      throw new IOException("Truncated resource index");
+    }
+  }
+
+  /**
+   * Maps the given index file.
+   *
+   * @throws IOException if the file is not an index of this version, or is truncated
+   */
+  public static ResourceIndex open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+      return new ResourceIndex(channel.map(READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Returns the SHA-256 hash of the indexed file; see {@link EditPlan#hash(String)}.
+   */
+  public String getHash() {
+    byte[] hash = new byte[HASH_SIZE];
+    ((ByteBuffer) buf.duplicate().position(8)).get(hash);
+    return new String(hash, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Returns the size of the indexed file.
+   */
+  public long getFileSize() {
+    return buf.getLong(24 + HASH_SIZE);
+  }
+
+  /**
+   * Returns the modification time of the indexed file.
+   */
+  public long getLastModified() {
+    return buf.getLong(32 + HASH_SIZE);
+  }
+
+  /**
+   * Returns true if the given file has the size and modification time of the indexed file. This
+   * is checked without reading the file, so a change that preserves both is not detected.
+   */
+  public boolean isCurrent(File file) {
+    return file.length() == getFileSize() && file.lastModified() == getLastModified();
+  }
+
+  public int size() {
+    return entryCount;
+  }
+
+  public int getId(int index) {
+    return buf.getInt(entriesStart + ENTRY_SIZE * index);
+  }
+
+  /**
+   * Returns the name at the given index, such as <b>com.example:color/background</b>.
+   */
+  public String getName(int index) {
+    return getString(buf.getInt(entriesStart + ENTRY_SIZE * index + 4));
+  }
+
+  /**
+   * Returns the index of the given id, or -1 if not found.
+   */
+  public int indexOf(int id) {
+    int low = 0;
+    int high = entryCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = Integer.compareUnsigned(getId(mid), id);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the given name, such as <b>com.example:color/background</b>, or -1 if
+   * not found. Without a package, such as <b>color/background</b>, the name matches the entry of
+   * any package, and the lowest id is found.
+   */
+  public int indexOf(String name) {
+    if (hashSize == 0) {
+      return -1;
+    }
+    boolean qualified = name.indexOf(':') >= 0;
+    for (int slot = unqualified(name).hashCode() & (hashSize - 1);;
+        slot = (slot + 1) & (hashSize - 1)) {
+      int index = buf.getInt(hashStart + 4 * slot) - 1;
+      if (index < 0) {
+        return -1;
+      }
+      String entryName = getName(index);
+      if ((qualified ? entryName : unqualified(entryName)).equals(name)) {
+        return index;
+      }
+    }
+  }
+
+  /**
+   * Returns the given name without its package, if any.
+   */
+  private static String unqualified(String name) {
+    return name.substring(name.indexOf(':') + 1);
+  }
+
+  /**
+   * Returns the index of the first value of the entry at the given index.
+   */
+  public int getFirstValue(int index) {
+    return buf.getInt(entriesStart + ENTRY_SIZE * index + 8);
+  }
+
+  public int getValueCount(int index) {
+    return buf.getInt(entriesStart + ENTRY_SIZE * index + 12);
+  }
+
+  /**
+   * Returns the file offset of the Res_value at the given value index.
+   */
+  public long getOffset(int value) {
+    return buf.getInt(valuesStart + VALUE_SIZE * value) & 0xFFFFFFFFL;
+  }
+
+  public ResourceValue getValue(int value) {
+    int pos = valuesStart + VALUE_SIZE * value;
+    int type = buf.getInt(pos + 4);
+    int data = buf.getInt(pos + 8);
+    return new ResourceValue(type, new byte[]{
+      (byte) data, (byte) (data >> 8), (byte) (data >> 16), (byte) (data >> 24)});
+  }
+
+  /**
+   * Returns the bag item name of the given value, or 0.
+   */
+  public int getItemName(int value) {
+    return buf.getInt(valuesStart + VALUE_SIZE * value + 12);
+  }
+
+  /**
+   * Returns the configuration qualifiers of the given value, such as <b>en-hdpi</b>.
+   */
+  public String getConfig(int value) {
+    return getString(buf.getInt(valuesStart + VALUE_SIZE * value + 16));
+  }
+
+  /**
+   * Returns the string of the given value, or null if it is not a string.
+   */
+  public String getText(int value) {
+    int text = buf.getInt(valuesStart + VALUE_SIZE * value + 20);
+    return (text >= 0) ? getString(text) : null;
+  }
+
+  private String getString(int index) {
+    int start = buf.getInt(offsetsStart + 4 * index);
+    int end = buf.getInt(offsetsStart + 4 * (index + 1));
+    byte[] bytes = new byte[end - start];
+    ((ByteBuffer) buf.duplicate().position(stringsStart + start)).get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
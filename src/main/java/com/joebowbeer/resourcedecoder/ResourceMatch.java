@@ -0,0 +1,28 @@
+package com.joebowbeer.resourcedecoder;
+
+/**
+ * Resource value located by a {@link TableAttributeMatcher} pattern in one configuration, or by an
+ * {@link XmlAttributeMatcher} pattern, in which case the configuration is null.
+ */
+public class ResourceMatch {
+
+  public final String pattern;
+  public final String name;
+  public final ResourceConfig config;
+  public final long offset;
+  public final ResourceValue value;
+
+  public ResourceMatch(String pattern, String name, ResourceConfig config, long offset,
+      ResourceValue value) {
+    this.pattern = pattern;
+    this.name = name;
+    this.config = config;
+    this.offset = offset;
+    this.value = value;
+  }
+
+  @Override
+  public String toString() {
+    return "[Match " + name + " " + offset + " " + value + "]";
+  }
+}
@@ -0,0 +1,29 @@
+package com.joebowbeer.resourcedecoder;
+
+/**
+ * Names of resource ids, combining the declarations of a table with the android.R.* identifiers
+ * in {@link FrameworkIds}. The framework ids are searched in place rather than copied.
+ */
+public class ResourceNames {
+
+  private final IntMap<String> declarations;
+  private final FrameworkIds framework;
+
+  public ResourceNames(IntMap<String> declarations, FrameworkIds framework) {
+    this.declarations = declarations;
+    this.framework = framework;
+  }
+
+  /**
+   * Returns the name of the given id, such as <b>string/app_name</b>, or null. The framework
+   * names take precedence over the declarations of the table.
+   */
+  public String get(int resId) {
+    String name = framework.get(resId);
+    return name != null ? name : declarations.get(resId);
+  }
+
+  public boolean contains(int resId) {
+    return get(resId) != null;
+  }
+}
@@ -0,0 +1,208 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled set of resource name patterns of the form <b>R.type.name</b>, for example
+ * <b>R.bool.checked</b>, <b>R.color.brand_*</b> or <b>R.bool.feature_.*</b>.
+ * <p>
+ * The type and name parts are each either a glob, where <b>*</b> matches any sequence of
+ * characters and <b>?</b> matches any single character, or a regular expression. A part is treated
+ * as a regular expression if it contains one of <b>\^$|+()[]{}</b> or a <b>.</b> followed by a
+ * quantifier; otherwise <b>.</b> is literal, as in style names.
+ * <p>
+ * Literal and trailing-<b>*</b> name parts are compiled into a trie, which is walked once per key
+ * string. When several patterns match the same resource, an exact name wins over a prefix, a
+ * longer prefix wins over a shorter one, and any glob wins over a regular expression.
+ *
+ * @see TableAttributeMatcher
+ */
+public class ResourcePatterns {
+
+  private static final String PREFIX = "R.";
+
+  private static final Pattern REGEX_SYNTAX = Pattern.compile("[\\\\^$|+()\\[\\]{}]|\\.[*+?{]");
+
+  private final List<String> patterns;
+
+  private final String[] typeLiterals;
+  private final Pattern[] typeRegexes;
+  private final Pattern[] nameRegexes;
+
+  private final Node trie = new Node();
+
+  public ResourcePatterns(Collection<String> patterns) {
+    this.patterns = new ArrayList<>(new TreeSet<>(patterns));
+    int n = this.patterns.size();
+    typeLiterals = new String[n];
+    typeRegexes = new Pattern[n];
+    nameRegexes = new Pattern[n];
+    for (int i = 0; i < n; i++) {
+      compile(i, this.patterns.get(i));
+    }
+  }
+
+  public int size() {
+    return patterns.size();
+  }
+
+  public String get(int index) {
+    return patterns.get(index);
+  }
+
+  /**
+   * Returns the set of patterns whose type part matches the given type name.
+   */
+  public BitSet matchType(String typeName) {
+    BitSet set = new BitSet(size());
+    for (int i = 0, n = size(); i < n; i++) {
+      if (typeLiterals[i] != null
+          ? typeLiterals[i].equals(typeName)
+          : typeRegexes[i].matcher(typeName).matches()) {
+        set.set(i);
+      }
+    }
+    return set;
+  }
+
+  /**
+   * Evaluates the name parts against every string in the given key pool. Returns an array indexed
+   * by key, holding the matching patterns in order of precedence, or null for keys that match
+   * nothing.
+   */
+  public int[][] matchKeys(StringPool keyPool) {
+    int[][] keys = new int[keyPool.size()][];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = matchName(keyPool.getString(i));
+    }
+    return keys;
+  }
+
+  /**
+   * Returns the first of the given candidates whose type part is in the given set, or -1.
+   */
+  public static int select(int[] candidates, BitSet types) {
+    if (candidates != null) {
+      for (int index : candidates) {
+        if (types.get(index)) {
+          return index;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the highest precedence pattern matching the given type and name, or -1.
+   */
+  public int match(String typeName, String name) {
+    return select(matchName(name), matchType(typeName));
+  }
+
+  protected int[] matchName(String name) {
+    List<Integer> list = new ArrayList<>();
+    Node node = trie;
+    for (int i = 0, n = name.length(); node != null; i++) {
+      list.addAll(node.prefix);
+      if (i == n) {
+        list.addAll(node.exact);
+        break;
+      }
+      node = node.children.get(name.charAt(i));
+    }
+    // trie matches were collected from shortest to exact
+    Collections.reverse(list);
+    for (int i = 0, n = size(); i < n; i++) {
+      if (nameRegexes[i] != null && nameRegexes[i].matcher(name).matches()) {
+        list.add(i);
+      }
+    }
+    if (list.isEmpty()) {
+      return null;
+    }
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private void compile(int index, String pattern) {
+    if (!pattern.startsWith(PREFIX)) {
+      throw new IllegalArgumentException(pattern);
+    }
+    int dot = pattern.indexOf('.', PREFIX.length());
+    if (dot < 0) {
+      throw new IllegalArgumentException(pattern);
+    }
+    String type = pattern.substring(PREFIX.length(), dot);
+    String name = pattern.substring(dot + 1);
+    if (isLiteral(type)) {
+      typeLiterals[index] = type;
+    } else {
+      typeRegexes[index] = toRegex(type);
+    }
+    int star = name.indexOf('*');
+    if (isLiteral(name)) {
+      insert(name).exact.add(index);
+    } else if (star == name.length() - 1 && !isRegex(name)
+        && isLiteral(name.substring(0, star))) {
+      insert(name.substring(0, star)).prefix.add(index);
+    } else {
+      nameRegexes[index] = toRegex(name);
+    }
+  }
+
+  private Node insert(String key) {
+    Node node = trie;
+    for (int i = 0, n = key.length(); i < n; i++) {
+      node = node.children.computeIfAbsent(key.charAt(i), (c) -> new Node());
+    }
+    return node;
+  }
+
+  private static boolean isLiteral(String part) {
+    return part.indexOf('*') < 0 && part.indexOf('?') < 0 && !isRegex(part);
+  }
+
+  private static boolean isRegex(String part) {
+    return REGEX_SYNTAX.matcher(part).find();
+  }
+
+  private static Pattern toRegex(String part) {
+    if (isRegex(part)) {
+      return Pattern.compile(part);
+    }
+    StringBuilder sb = new StringBuilder();
+    int start = 0;
+    for (int i = 0, n = part.length(); i < n; i++) {
+      char c = part.charAt(i);
+      if (c == '*' || c == '?') {
+        if (i > start) {
+          sb.append(Pattern.quote(part.substring(start, i)));
+        }
+        sb.append(c == '*' ? ".*" : ".");
+        start = i + 1;
+      }
+    }
+    if (start < part.length()) {
+      sb.append(Pattern.quote(part.substring(start)));
+    }
+    return Pattern.compile(sb.toString());
+  }
+
+  private static class Node {
+
+    final Map<Character, Node> children = new HashMap<>();
+    final List<Integer> exact = new ArrayList<>(1);
+    final List<Integer> prefix = new ArrayList<>(1);
+  }
+}
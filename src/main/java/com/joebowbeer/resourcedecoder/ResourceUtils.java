@@ -23,6 +23,30 @@ public class ResourceUtils {
     return ((pack + 1) << 24) | (((type + 1) & 0xFF) << 16) | (entry & 0xFFFF);
   }
 
+  /**
+   * Formats the given id as 0x12345678.
+   */
+  public static String hexId(int id) {
+    char[] chars = new char[10];
+    chars[0] = '0';
+    chars[1] = 'x';
+    for (int i = 9; i > 1; i--, id >>>= 4) {
+      chars[i] = HEX_DIGITS[id & 0xF];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Removes the type from a resource name: <b>android:attr/label</b> becomes <b>android:label</b>.
+   */
+  public static String trimType(String s) {
+    int colon = s.indexOf(':') + 1;
+    int slash = s.indexOf('/') + 1;
+    return s.substring(0, colon) + s.substring(slash);
+  }
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
   public static int getPackage(int id) {
     return (id >> 24) - 1;
   }
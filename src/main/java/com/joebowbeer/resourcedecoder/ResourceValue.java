@@ -3,6 +3,8 @@ package com.joebowbeer.resourcedecoder;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
 
 public class ResourceValue {
 
@@ -117,40 +119,173 @@ public class ResourceValue {
   }
 
   public String format(StringPool pool) {
+    if (type == TYPE_STRING) {
+      return pool.getString(intValue()); // TODO?
+    }
+    return format(pool, new StringBuilder(16)).toString();
+  }
+
+  /**
+   * Appends the formatted value to the given builder. The output is the same as
+   * {@link #format(StringPool)}.
+   */
+  public StringBuilder format(StringPool pool, StringBuilder sb) {
+    try {
+      format(pool, (Appendable) sb);
+    } catch (IOException ex) {
+      throw new AssertionError(ex); // StringBuilder does not throw
+    }
+    return sb;
+  }
+
+  /**
+   * Appends the formatted value to the given output. The output is the same as
+   * {@link #format(StringPool)}, without using a {@link java.util.Formatter}.
+   */
+  public void format(StringPool pool, Appendable out) throws IOException {
+    int value = intValue();
     switch (type) {
       case TYPE_NULL:
-        return ""; // TODO?
+        return; // TODO?
       case TYPE_REFERENCE:
-        return String.format("@%#010x", intValue());
+        appendHex(out.append("@0x"), value, 8);
+        return;
       case TYPE_ATTRIBUTE:
-        return String.format("?%#010x", intValue());
-      case TYPE_STRING:
-        return pool.getString(intValue()); // TODO?
+        appendHex(out.append("?0x"), value, 8);
+        return;
+      case TYPE_STRING: {
+        String s = pool.getString(value); // TODO?
+        if (s != null) {
+          out.append(s);
+        }
+        return;
+      }
       case TYPE_FLOAT:
-        return String.format("%f", floatValue());
+        appendFixed(out, floatValue(), 6);
+        return;
       case TYPE_DIMENSION:
-        return String.format("%.2f%s", complexToFloat(), dimensionUnit());
+        appendFixed(out, complexToFloat(), 2);
+        out.append(dimensionUnit());
+        return;
       case TYPE_FRACTION:
-        return String.format("%.2f%s", complexToFloat() * 100, fractionUnit());
+        appendFixed(out, complexToFloat() * 100, 2);
+        out.append(fractionUnit());
+        return;
       case TYPE_INT_DEC:
-        return String.valueOf(intValue());
+        out.append(Integer.toString(value));
+        return;
       case TYPE_INT_HEX:
-        return String.format("%#x", intValue());
+        appendHex(out.append("0x"), value, 1);
+        return;
       case TYPE_INT_BOOLEAN:
-        return String.valueOf(booleanValue());
+        out.append(booleanValue() ? "true" : "false");
+        return;
       case TYPE_INT_COLOR_ARGB8:
       case TYPE_INT_COLOR_ARGB4:
-        return String.format("#%08x", intValue());
+        appendHex(out.append('#'), value, 8);
+        return;
       case TYPE_INT_COLOR_RGB8:
       case TYPE_INT_COLOR_RGB4:
-        return String.format("#%06x", intValue());
+        appendHex(out.append('#'), value, 6);
+        return;
       case TYPE_DYNAMIC_REFERENCE: // TODO
       case TYPE_DYNAMIC_ATTRIBUTE: // TODO
       default:
-        return String.format("%#x", intValue());
+        appendHex(out.append("0x"), value, 1);
+    }
+  }
+
+  /**
+   * Appends the unsigned hex digits of value, zero-padded to at least the given width.
+   */
+  private static void appendHex(Appendable out, int value, int width) throws IOException {
+    int digits = Math.max(width, (35 - Integer.numberOfLeadingZeros(value)) >> 2);
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      out.append(HEX_DIGITS[(value >>> shift) & 0xF]);
+    }
+  }
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private static final long[] POWERS_OF_TEN = {
+    1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L
+  };
+
+  /**
+   * Appends the given float with a fixed number of decimals, as <b>%.Nf</b> does. Rounding is
+   * half up on the exact binary value, which matches Formatter for all float inputs. Values too
+   * large for long arithmetic, and locales that do not use '.' and '0', fall back to String.format.
+   */
+  private static void appendFixed(Appendable out, float f, int decimals) throws IOException {
+    if (Float.isNaN(f)) {
+      out.append("NaN");
+      return;
+    }
+    int bits = Float.floatToRawIntBits(f);
+    boolean negative = bits < 0;
+    if (Float.isInfinite(f)) {
+      out.append(negative ? "-Infinity" : "Infinity");
+      return;
+    }
+    int exponent = (bits >> 23) & 0xFF;
+    long mantissa = bits & 0x7FFFFF;
+    if (exponent == 0) {
+      exponent = 1; // subnormal
+    } else {
+      mantissa |= 0x800000;
+    }
+    exponent -= 150; // f = mantissa * 2^exponent
+    if (exponent > 16 || !isPlainLocale()) {
+      out.append(String.format("%." + decimals + "f", f));
+      return;
+    }
+    long scaled = mantissa * POWERS_OF_TEN[decimals]; // < 2^44
+    long rounded;
+    if (exponent >= 0) {
+      rounded = scaled << exponent;
+    } else if (exponent > -63) {
+      rounded = (scaled + (1L << (-exponent - 1))) >> -exponent;
+    } else {
+      rounded = 0;
+    }
+    if (negative) {
+      out.append('-');
+    }
+    long unit = POWERS_OF_TEN[decimals];
+    out.append(Long.toString(rounded / unit));
+    if (decimals > 0) {
+      out.append('.');
+      long fraction = rounded % unit;
+      for (long p = unit / 10; p > 0; p /= 10) {
+        out.append((char) ('0' + (fraction / p) % 10));
+      }
     }
   }
 
+  private static volatile Locale plainLocale;
+  private static volatile Locale otherLocale;
+
+  /**
+   * Returns true if the default format locale uses '.' for decimals and ASCII digits.
+   */
+  private static boolean isPlainLocale() {
+    Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    if (locale.equals(plainLocale)) {
+      return true;
+    }
+    if (locale.equals(otherLocale)) {
+      return false;
+    }
+    DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+    boolean plain = symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0';
+    if (plain) {
+      plainLocale = locale;
+    } else {
+      otherLocale = locale;
+    }
+    return plain;
+  }
+
   protected boolean booleanValue() {
     return (data[0] | data[1] | data[2] | data[3]) != 0;
   }
@@ -205,13 +340,27 @@ public class ResourceValue {
   /* Encoders */
 
   public static byte[] encode(String name, String value) throws IOException {
-    int type = typeFromName(name);
+    return encode(typeFromName(name), value);
+  }
+
+  /**
+   * Encodes the given value as a Res_value of the given type. All fixed-size types can be
+   * encoded; strings and dynamic references cannot be edited in place.
+   */
+  public static byte[] encode(int type, String value) throws IOException {
+    return encode(type, parse(value, type));
+  }
+
+  /**
+   * Encodes a Res_value of the given type and data, such as a string pool index.
+   */
+  public static byte[] encode(int type, int data) throws IOException {
     int size = 8;
     ByteArrayOutputStream out = new ByteArrayOutputStream(size);
     writeShort(out, size);
     out.write(0); // res0
     out.write(type);
-    writeInt(out, parse(value, type));
+    writeInt(out, data);
     return out.toByteArray();
   }
 
@@ -225,17 +374,75 @@ public class ResourceValue {
     }
   }
 
+  /**
+   * Returns the type that the given literal value would be compiled as, such as TYPE_INT_BOOLEAN
+   * for <b>true</b>, or TYPE_STRING if it is not a literal of any other type.
+   */
+  public static int typeFromValue(String value) {
+    if (value.equals("true") || value.equals("false")) {
+      return TYPE_INT_BOOLEAN;
+    } else if (value.equals("@null") || value.startsWith("@0x")) {
+      return TYPE_REFERENCE;
+    } else if (value.startsWith("?0x")) {
+      return TYPE_ATTRIBUTE;
+    } else if (value.matches("#[0-9a-fA-F]{3}")) {
+      return TYPE_INT_COLOR_RGB4;
+    } else if (value.matches("#[0-9a-fA-F]{4}")) {
+      return TYPE_INT_COLOR_ARGB4;
+    } else if (value.matches("#[0-9a-fA-F]{6}")) {
+      return TYPE_INT_COLOR_RGB8;
+    } else if (value.matches("#[0-9a-fA-F]{8}")) {
+      return TYPE_INT_COLOR_ARGB8;
+    } else if (value.matches("0x[0-9a-fA-F]{1,8}")) {
+      return TYPE_INT_HEX;
+    } else if (value.matches("-?[0-9]{1,9}")) {
+      return TYPE_INT_DEC;
+    } else if (value.matches("-?[0-9]+(\\.[0-9]+)?(px|dp|dip|sp|pt|in|mm)")) {
+      return TYPE_DIMENSION;
+    } else {
+      return TYPE_STRING;
+    }
+  }
+
   private static int parse(String s, int type) {
     switch (type) {
-      case TYPE_INT_BOOLEAN: {
+      case TYPE_NULL:
+        if (!s.isEmpty()) {
+          throw new IllegalArgumentException(s);
+        }
+        return 0;
+      case TYPE_REFERENCE:
+        return s.equals("@null") ? 0 : parseId(s, '@');
+      case TYPE_ATTRIBUTE:
+        return parseId(s, '?');
+      case TYPE_FLOAT:
+        return Float.floatToIntBits(Float.parseFloat(s));
+      case TYPE_DIMENSION:
+        return parseComplex(s, DIMENSION_UNIT_STRS, 1);
+      case TYPE_FRACTION:
+        return parseComplex(s, FRACTION_UNIT_STRS, 100);
+      case TYPE_INT_DEC:
+        return Integer.parseInt(s);
+      case TYPE_INT_HEX:
+        if (!s.startsWith("0x")) {
+          throw new IllegalArgumentException(s);
+        }
+        return Integer.parseUnsignedInt(s.substring(2), 16);
+      case TYPE_INT_BOOLEAN:
         return parseBoolean(s);
-      }
-      case TYPE_INT_COLOR_ARGB8: {
+      case TYPE_INT_COLOR_ARGB8:
+      case TYPE_INT_COLOR_ARGB4:
         return parseColor(s);
+      case TYPE_INT_COLOR_RGB8:
+      case TYPE_INT_COLOR_RGB4: {
+        int color = parseColor(s);
+        if ((color >>> 24) != 0xFF) {
+          throw new IllegalArgumentException("Opaque color required: " + s);
+        }
+        return color;
       }
-      default: {
-        throw new IllegalArgumentException(String.valueOf(type));
-      }
+      default:
+        throw new IllegalArgumentException("Cannot encode type " + String.valueOf(type));
     }
   }
 
@@ -244,13 +451,99 @@ public class ResourceValue {
     return Boolean.parseBoolean(bool) ? -1 : 0;
   }
 
+  /**
+   * Parses #rgb, #argb, #rrggbb or #aarrggbb as ARGB.
+   */
   private static int parseColor(String color) {
-    if (!color.startsWith("#") || color.length() != 9) {
+    if (!color.startsWith("#")) {
       throw new IllegalArgumentException(color);
     }
-    return (int) Long.parseLong(color.substring(1), 16);
+    int value = (int) Long.parseLong(color.substring(1), 16);
+    switch (color.length()) {
+      case 4: // #rgb
+      case 5: // #argb
+        if (color.length() == 4) {
+          value |= 0xF000;
+        }
+        return ((value & 0xF000) * 0x11000) | ((value & 0xF00) * 0x1100)
+            | ((value & 0xF0) * 0x110) | ((value & 0xF) * 0x11);
+      case 7: // #rrggbb
+        return value | 0xFF000000;
+      case 9: // #aarrggbb
+        return value;
+      default:
+        throw new IllegalArgumentException(color);
+    }
+  }
+
+  private static int parseId(String s, char prefix) {
+    if (s.length() != 11 || s.charAt(0) != prefix || !s.startsWith("0x", 1)) {
+      throw new IllegalArgumentException(s);
+    }
+    return Integer.parseUnsignedInt(s.substring(3), 16);
+  }
+
+  /**
+   * Parses a number with one of the given units, such as 16dp or 50%p, as a complex value.
+   */
+  private static int parseComplex(String s, String[] units, int scale) {
+    int unit = -1;
+    for (int i = 0; i < units.length; i++) {
+      if (s.endsWith(units[i]) && (unit < 0 || units[i].length() > units[unit].length())) {
+        unit = i;
+      }
+    }
+    String number = s;
+    if (unit >= 0) {
+      number = s.substring(0, s.length() - units[unit].length());
+    } else if (units == DIMENSION_UNIT_STRS && s.endsWith("dip")) {
+      unit = 1; // dp
+      number = s.substring(0, s.length() - 3);
+    } else {
+      throw new IllegalArgumentException("Missing unit: " + s);
+    }
+    return floatToComplex(Float.parseFloat(number) / scale) | unit;
+  }
+
+  /**
+   * Encodes the mantissa and radix of a complex value, as ResourceTypes.cpp does.
+   */
+  private static int floatToComplex(float f) {
+    boolean negative = f < 0;
+    if (negative) {
+      f = -f;
+    }
+    long bits = (long) (f * (double) (1 << 23) + 0.5);
+    int radix;
+    int shift;
+    if ((bits & 0x7fffff) == 0) {
+      radix = RADIX_23P0;
+      shift = 23;
+    } else if ((bits & 0xffffffffff800000L) == 0) {
+      radix = RADIX_0P23;
+      shift = 0;
+    } else if ((bits & 0xffffffff80000000L) == 0) {
+      radix = RADIX_8P15;
+      shift = 8;
+    } else if ((bits & 0xffffff8000000000L) == 0) {
+      radix = RADIX_16P7;
+      shift = 16;
+    } else {
+      radix = RADIX_23P0;
+      shift = 23;
+    }
+    int mantissa = (int) ((bits >> shift) & COMPLEX_MANTISSA_MASK);
+    if (negative) {
+      mantissa = -mantissa & COMPLEX_MANTISSA_MASK;
+    }
+    return (mantissa << COMPLEX_MANTISSA_SHIFT) | (radix << COMPLEX_RADIX_SHIFT);
   }
 
+  private static final int RADIX_23P0 = 0;
+  private static final int RADIX_16P7 = 1;
+  private static final int RADIX_8P15 = 2;
+  private static final int RADIX_0P23 = 3;
+
   /**
    * LE version of DataOutput.writeInt
    */
@@ -0,0 +1,132 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Batch of in-place edits to encoded resource values. The patches are sorted by offset and the
+ * header of every original value is checked against its replacement before anything is written,
+ * so that a mismatch in size or type leaves the file unchanged. Only the data bytes are written.
+ */
+public class ResourceValuePatcher {
+
+  private static final int HEADER_SIZE = 4; // size, res0, dataType
+  private static final int VALUE_SIZE = 8;
+
+  private final List<Patch> patches = new ArrayList<>();
+
+  /**
+   * Adds a patch replacing the value at the given offset.
+   *
+   * @param offset file offset of the Res_value
+   * @param value encoded replacement; see {@link ResourceValue#encode(String, String)}
+   */
+  public void add(long offset, byte[] value) {
+    if (value.length != VALUE_SIZE) {
+      throw new IllegalArgumentException("Invalid value size: " + value.length);
+    }
+    patches.add(new Patch(offset, value));
+  }
+
+  public int size() {
+    return patches.size();
+  }
+
+  public void apply(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), READ, WRITE)) {
+      apply(channel);
+    }
+  }
+
+  /**
+   * Validates and writes all patches, in order of offset.
+   *
+   * @throws IllegalStateException if an original value does not match the size and type of its
+   * replacement, or if two patches replace the same value differently
+   */
+  public void apply(FileChannel channel) throws IOException {
+    validate(channel);
+    for (Patch patch : patches) {
+      ByteBuffer data = ByteBuffer.wrap(patch.value, HEADER_SIZE, VALUE_SIZE - HEADER_SIZE);
+      long position = patch.offset + HEADER_SIZE;
+      while (data.hasRemaining()) {
+        position += channel.write(data, position);
+      }
+    }
+  }
+
+  /**
+   * Validates all patches and adds their data bytes to the given rewriter, for edits that are
+   * combined with changes in the size of other chunks.
+   */
+  public void addTo(FileChannel channel, ChunkRewriter rewriter) throws IOException {
+    validate(channel);
+    for (Patch patch : patches) {
+      rewriter.patch(patch.offset + HEADER_SIZE,
+          Arrays.copyOfRange(patch.value, HEADER_SIZE, VALUE_SIZE));
+    }
+  }
+
+  /**
+   * Validates all patches and adds them to the given plan, with the values they replace.
+   */
+  public void addTo(FileChannel channel, EditPlan plan) throws IOException {
+    validate(channel);
+    for (Patch patch : patches) {
+      ByteBuffer original = ByteBuffer.allocate(VALUE_SIZE);
+      readFully(channel, original, patch.offset);
+      plan.add(patch.offset, original.array(), patch.value);
+    }
+  }
+
+  private void validate(FileChannel channel) throws IOException {
+    patches.sort(Comparator.comparingLong(patch -> patch.offset));
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    Patch prev = null;
+    for (Patch patch : patches) {
+      if (prev != null && patch.offset < prev.offset + VALUE_SIZE) {
+        if (patch.offset != prev.offset || !Arrays.equals(patch.value, prev.value)) {
+          throw new IllegalStateException("Conflicting edits at " + patch.offset);
+        }
+      }
+      header.clear();
+      readFully(channel, header, patch.offset);
+      for (int i = 0; i < HEADER_SIZE; i++) {
+        if (header.get(i) != patch.value[i]) {
+          throw new IllegalStateException("Value type mismatch at " + patch.offset);
+        }
+      }
+      prev = patch;
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buf, long position)
+      throws IOException {
+    while (buf.hasRemaining()) {
+      int n = channel.read(buf, position + buf.position());
+      if (n < 0) {
+        throw new IllegalStateException("Offset beyond end of file: " + position);
+      }
+    }
+  }
+
+  private static class Patch {
+
+    final long offset;
+    final byte[] value;
+
+    Patch(long offset, byte[] value) {
+      this.offset = offset;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Properties;
+
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_XML;
+import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_STRING;
+
+/**
+ * ContentFilter that applies the edits located by its matchers to a {@link PatchingInputStream}
+ * while the file is decoded, so that the edited copy is written in a single pass. Table values
+ * are patched as soon as they are matched. Xml documents are held back until they end, because
+ * attributes and elements are matched at the end of their elements.
+ */
+public class StreamingEditor extends ContentFilter {
+
+  private PatchingInputStream stream;
+
+  private TableAttributeMatcher resMatcher;
+  private Properties resProps;
+  private int resPatched;
+
+  private XmlAttributeMatcher attrMatcher;
+  private Properties attrProps;
+
+  private XmlElementMatcher xmlMatcher;
+
+  /**
+   * Creates an editor. The matchers must be among the parents.
+   */
+  public StreamingEditor(ContentHandler parent) {
+    super(parent);
+  }
+
+  /**
+   * Sets the stream that is being decoded.
+   */
+  public void setStream(PatchingInputStream stream) {
+    this.stream = stream;
+  }
+
+  public void setResourceEdits(TableAttributeMatcher matcher, Properties props) {
+    resMatcher = matcher;
+    resProps = props;
+  }
+
+  public void setAttributeEdits(XmlAttributeMatcher matcher, Properties props) {
+    attrMatcher = matcher;
+    attrProps = props;
+  }
+
+  public void setElementRemovals(XmlElementMatcher matcher) {
+    xmlMatcher = matcher;
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onChunkStart(long offset, int type, int headerSize, int totalSize) {
+    if (type == TYPE_XML && (attrMatcher != null || xmlMatcher != null)) {
+      stream.hold(offset);
+    }
+    super.onChunkStart(offset, type, headerSize, totalSize);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    super.onResourceValue(offset, value);
+    if (resMatcher != null) {
+      List<ResourceMatch> matches = resMatcher.getResourceMatches();
+      for (; resPatched < matches.size(); resPatched++) {
+        ResourceMatch match = matches.get(resPatched);
+        if (match.value.type == TYPE_STRING) {
+          throw new IllegalStateException("Cannot edit string in one pass: " + match.name);
+        }
+        patch(match, resProps.getProperty(match.pattern));
+      }
+    }
+  }
+
+  @Override
+  public void onTableStart(int packageCount) {
+    resPatched = 0;
+    super.onTableStart(packageCount);
+  }
+
+  @Override
+  public void onXmlEnd() {
+    super.onXmlEnd();
+    if (attrMatcher != null) {
+      for (ResourceMatch match : attrMatcher.getResourceMatches()) {
+        if (match.value.type == TYPE_STRING) {
+          throw new IllegalStateException("Cannot assign string attribute: " + match.name);
+        }
+        patch(match, attrProps.getProperty(match.pattern));
+      }
+    }
+    if (xmlMatcher != null) {
+      for (Chunk chunk : xmlMatcher.getChanges()) {
+        Log.i(chunk);
+        stream.patch(chunk.offset + 4, ByteBuffer.allocate(4)
+            .order(ByteOrder.LITTLE_ENDIAN).putInt(chunk.totalSize).array());
+      }
+    }
+    stream.release();
+  }
+
+  private void patch(ResourceMatch match, String value) {
+    try {
+      // encode as the type of the original value
+      stream.patch(match.offset, ResourceValue.encode(match.value.type, value));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    Log.i(match.offset + ": " + match.name + "=" + value);
+  }
+}
@@ -0,0 +1,101 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import nu.xom.Element;
+import nu.xom.ParentNode;
+import nu.xom.Text;
+
+/**
+ * Serializer that writes elements as they are decoded, instead of traversing a complete
+ * {@link nu.xom.Document}. The output is the same as {@link #write(nu.xom.Document)} would produce
+ * for the equivalent tree.
+ * <p>
+ * The start tag of the innermost element is held back until its first child or its end arrives, so
+ * that attributes can still be added to it. A text node is held back until its next sibling or the
+ * end of its parent is known, which decides whether it is boundary whitespace. Completed siblings
+ * are detached from the tree, so memory is bounded by the depth of the document.
+ */
+public class StreamingSerializer extends Main.TableSerializer {
+
+  private final Deque<Element> openElements = new ArrayDeque<>();
+
+  private boolean startTagPending;
+
+  private Text pendingText;
+
+  public StreamingSerializer(ResourceNames names, OutputStream out) {
+    super(names, out);
+  }
+
+  public void startDocument() throws IOException {
+    openElements.clear();
+    startTagPending = false;
+    pendingText = null;
+    writeXMLDeclaration();
+  }
+
+  /**
+   * Starts the given element, which has been appended to the current element, if any.
+   */
+  public void startElement(Element element) throws IOException {
+    writeStartTag();
+    writeText();
+    openElements.push(element);
+    startTagPending = true;
+  }
+
+  /**
+   * Writes the given text node, which has been appended to the current element.
+   */
+  public void text(Text text) throws IOException {
+    writeText();
+    if (!text.getValue().isEmpty()) {
+      writeStartTag();
+      pendingText = text;
+    }
+  }
+
+  /**
+   * Ends the current element and detaches its preceding siblings.
+   */
+  public void endElement() throws IOException {
+    writeText();
+    Element element = openElements.pop();
+    if (startTagPending) {
+      writeEmptyElementTag(element);
+      startTagPending = false;
+    } else {
+      writeEndTag(element);
+    }
+    ParentNode parent = element.getParent();
+    if (parent != null) {
+      // keep the last child element; writeEndTag checks for one
+      while (parent.indexOf(element) > 0) {
+        parent.removeChild(0);
+      }
+    }
+  }
+
+  public void endDocument() throws IOException {
+    breakLine();
+    flush();
+  }
+
+  private void writeStartTag() throws IOException {
+    if (startTagPending) {
+      writeStartTag(openElements.peek());
+      startTagPending = false;
+    }
+  }
+
+  private void writeText() throws IOException {
+    if (pendingText != null) {
+      write(pendingText);
+      pendingText = null;
+    }
+  }
+}
@@ -20,6 +20,10 @@ public class StringPool {
     return "[StringPool " + strings + " " + styles + "]";
   }
 
+  public int size() {
+    return strings.size();
+  }
+
   public String getString(int index) {
     if (index == -1 || index >= strings.size()) {
       return null;
@@ -0,0 +1,205 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends strings to an encoded string pool chunk. The existing strings, offsets and styles are
+ * copied unchanged, so that every index into the pool remains valid; new strings are added after
+ * the last string, and the pool is marked unsorted.
+ */
+public class StringPoolEditor {
+
+  private static final int HSIZE = 8;
+
+  private final byte[] chunk;
+  private final ByteBuffer header;
+  private final int headerSize;
+  private final int stringCount;
+  private final int styleCount;
+  private final boolean utf8;
+  private final int stringsStart;
+  private final int stringsEnd;
+  private final int stylesStart;
+  private final Map<String, Integer> indexes = new HashMap<>();
+  private final List<byte[]> added = new ArrayList<>();
+
+  /**
+   * Creates an editor of the given chunk.
+   *
+   * @param chunk encoded string pool; see {@link ChunkRewriter#readChunk}
+   * @param pool decoded strings of the chunk
+   */
+  public StringPoolEditor(byte[] chunk, StringPool pool) {
+    this.chunk = chunk;
+    header = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+    if ((header.getShort(0) & 0xFFFF) != ResourceDecoder.TYPE_STRING_POOL
+        || header.getInt(4) != chunk.length) {
+      throw new IllegalArgumentException("Not a string pool");
+    }
+    headerSize = header.getShort(2) & 0xFFFF;
+    stringCount = header.getInt(HSIZE);
+    styleCount = header.getInt(HSIZE + 4);
+    utf8 = (header.getInt(HSIZE + 8) & StringPool.UTF8_FLAG) != 0;
+    int offsetsEnd = headerSize + 4 * (stringCount + styleCount);
+    stringsStart = (stringCount != 0) ? header.getInt(HSIZE + 12) : offsetsEnd;
+    stylesStart = (styleCount != 0) ? header.getInt(HSIZE + 16) : chunk.length;
+    if (stringsStart != offsetsEnd || stringCount != pool.size()) {
+      throw new IllegalStateException("Unsupported string pool layout");
+    }
+    // end of the last string, excluding padding
+    int end = stringsStart;
+    for (int i = 0; i < stringCount; i++) {
+      int start = stringsStart + header.getInt(headerSize + 4 * i);
+      if (start >= end) {
+        end = start + encodedLength(start);
+      }
+    }
+    stringsEnd = end;
+    // styled strings come first, and are not reused, as their spans would apply to the reference
+    for (int i = styleCount; i < stringCount; i++) {
+      indexes.putIfAbsent(pool.getString(i), i);
+    }
+  }
+
+  /**
+   * Returns the index of the given unstyled string, or -1 if not found.
+   */
+  public int indexOf(String s) {
+    Integer index = indexes.get(s);
+    return (index != null) ? index : -1;
+  }
+
+  /**
+   * Returns the index of the given string, appending it if not found.
+   */
+  public int add(String s) {
+    int index = indexOf(s);
+    return (index >= 0) ? index : append(s);
+  }
+
+  /**
+   * Appends the given string, even if the pool already contains it, and returns its index. An
+   * attribute name needs its own index when its resource id must be mapped.
+   */
+  public int append(String s) {
+    int index = stringCount + added.size();
+    added.add(utf8 ? encodeUtf8(s) : encodeUtf16(s));
+    indexes.putIfAbsent(s, index);
+    return index;
+  }
+
+  public int size() {
+    return stringCount + added.size();
+  }
+
+  public boolean isModified() {
+    return !added.isEmpty();
+  }
+
+  /**
+   * Returns the encoded chunk, including the added strings.
+   */
+  public byte[] toByteArray() {
+    if (!isModified()) {
+      return chunk;
+    }
+    int[] offsets = new int[added.size()];
+    int offset = stringsEnd - stringsStart;
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = offset;
+      offset += added.get(i).length;
+    }
+    int newStylesStart = stringsStart + 4 * offsets.length + offset;
+    newStylesStart += -newStylesStart & 3;
+    ByteBuffer out = ByteBuffer.allocate(newStylesStart + chunk.length - stylesStart)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    // header, string offsets
+    out.put(chunk, 0, headerSize + 4 * stringCount);
+    out.putInt(4, out.capacity());
+    out.putInt(HSIZE, size());
+    out.putInt(HSIZE + 8, header.getInt(HSIZE + 8) & ~StringPool.SORTED_FLAG);
+    out.putInt(HSIZE + 12, stringsStart + 4 * offsets.length);
+    if (styleCount != 0) {
+      out.putInt(HSIZE + 16, newStylesStart);
+    }
+    for (int o : offsets) {
+      out.putInt(o);
+    }
+    // style offsets, strings
+    out.put(chunk, headerSize + 4 * stringCount, stringsEnd - headerSize - 4 * stringCount);
+    for (byte[] s : added) {
+      out.put(s);
+    }
+    // padding, styles
+    out.position(newStylesStart);
+    out.put(chunk, stylesStart, chunk.length - stylesStart);
+    return out.array();
+  }
+
+  /**
+   * Returns the encoded length of the string at the given position, including its terminator.
+   */
+  private int encodedLength(int position) {
+    int length;
+    if (utf8) {
+      int p = position;
+      p += ((chunk[p] & 0x80) != 0) ? 2 : 1; // nchars
+      int nbytes = chunk[p] & 0xFF;
+      if ((nbytes & 0x80) != 0) {
+        nbytes = ((nbytes & 0x7F) << 8) | (chunk[p + 1] & 0xFF);
+        p++;
+      }
+      length = p + 1 - position + nbytes + 1;
+    } else {
+      int nchars = header.getShort(position) & 0xFFFF;
+      int p = position + 2;
+      if ((nchars & 0x8000) != 0) {
+        nchars = ((nchars & 0x7FFF) << 16) | (header.getShort(p) & 0xFFFF);
+        p += 2;
+      }
+      length = p - position + 2 * nchars + 2;
+    }
+    return length;
+  }
+
+  private static byte[] encodeUtf8(String s) {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + 5);
+    writeLength8(out, s.length());
+    writeLength8(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+    out.write(0);
+    return out.toByteArray();
+  }
+
+  private static void writeLength8(ByteArrayOutputStream out, int length) {
+    if (length > 0x7FFF) {
+      throw new IllegalArgumentException("String too long: " + length);
+    }
+    if (length > 0x7F) {
+      out.write(0x80 | (length >> 8));
+    }
+    out.write(length);
+  }
+
+  private static byte[] encodeUtf16(String s) {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_16LE);
+    int nchars = s.length();
+    ByteBuffer out = ByteBuffer.allocate(bytes.length + (nchars > 0x7FFF ? 6 : 4))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    if (nchars > 0x7FFF) {
+      out.putShort((short) (0x8000 | (nchars >> 16)));
+    }
+    out.putShort((short) nchars);
+    out.put(bytes);
+    out.putShort((short) 0);
+    return out.array();
+  }
+}
@@ -1,7 +1,9 @@
 package com.joebowbeer.resourcedecoder;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,49 +13,113 @@ import static com.joebowbeer.resourcedecoder.ResourceUtils.isComplexEntry;
 /**
  * ContentFilter that locates ResourceValue instances matched by one of a given set of pattern
  * strings. Patterns are of the form <b>name=value</b>, for example:
- * <b>R.color.background=#ff000000</b>.
+ * <b>R.color.background=#ff000000</b>. Names may contain wildcards, for example
+ * <b>R.color.brand_*</b>; see {@link ResourcePatterns}.
  */
 public class TableAttributeMatcher extends ContentFilter {
 
   private final Set<String> patterns;
 
+  private final ResourcePatterns compiled;
+
   private final Map<String, List<Long>> matches = new HashMap<>();
 
+  private final List<ResourceMatch> resourceMatches = new ArrayList<>();
+
+  private final BitSet matched = new BitSet();
+
+  private StringPool valuePool;
+  private long valuePoolOffset = -1;
+
   private boolean tableStarted;
+  private long chunkOffset;
   private StringPool pool;
   private boolean hasTypePool;
   private boolean hasKeyPool;
   private StringPool typePool;
   private StringPool keyPool;
   private String packageName;
-  private int typeSpecIndex;
+  private int typeId;
   private String restypeName;
   private ResourceConfig itemConfig;
   private String itemName;
   private boolean isComplexEntry;
+  private int[][] keyMatches;
+  private BitSet typeMatches;
+  private int[] itemCandidates;
+  private int itemPattern = -1;
 
   public TableAttributeMatcher(Set<String> patterns) {
     this.patterns = patterns;
+    this.compiled = new ResourcePatterns(patterns);
   }
 
   public TableAttributeMatcher(Set<String> patterns, ContentHandler parent) {
     super(parent);
     this.patterns = patterns;
+    this.compiled = new ResourcePatterns(patterns);
   }
 
   public Set<String> getPatterns() {
     return patterns;
   }
 
+  /**
+   * Returns the offsets of the matched values, keyed by pattern.
+   */
   public Map<String, List<Long>> getMatches() {
     return matches;
   }
 
+  /**
+   * Returns the patterns that match at least one value. A value is recorded in
+   * {@link #getMatches()} under its highest precedence pattern only, so a pattern may match values
+   * and still be missing from those keys.
+   */
+  public Set<String> getMatched() {
+    Set<String> set = new HashSet<>();
+    for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+      set.add(compiled.get(i));
+    }
+    return set;
+  }
+
+  /**
+   * Returns each matched value with its resource name and configuration, in file order.
+   */
+  public List<ResourceMatch> getResourceMatches() {
+    return resourceMatches;
+  }
+
+  /**
+   * Returns the table's string pool, which holds the values of string resources.
+   */
+  public StringPool getValuePool() {
+    return valuePool;
+  }
+
+  /**
+   * Returns the file offset of the table's string pool chunk.
+   */
+  public long getValuePoolOffset() {
+    return valuePoolOffset;
+  }
+
   /* ContentFilter overrides */
+  @Override
+  public void onChunkStart(long offset, int type, int headerSize, int totalSize) {
+    chunkOffset = offset;
+    super.onChunkStart(offset, type, headerSize, totalSize);
+  }
+
   @Override
   public void onTableStart(int packageCount) {
     tableStarted = true;
     matches.clear();
+    resourceMatches.clear();
+    matched.clear();
+    valuePool = null;
+    valuePoolOffset = -1;
     super.onTableStart(packageCount);
   }
 
@@ -65,11 +131,13 @@ public class TableAttributeMatcher extends ContentFilter {
       return;
     }
     if (pool == null) {
-      pool = stringPool;
+      pool = valuePool = stringPool;
+      valuePoolOffset = chunkOffset;
     } else if (hasTypePool && typePool == null) {
       typePool = stringPool;
     } else if (hasKeyPool && keyPool == null) {
       keyPool = stringPool;
+      keyMatches = compiled.matchKeys(keyPool);
     } else {
       throw new IllegalStateException();
     }
@@ -88,7 +156,9 @@ public class TableAttributeMatcher extends ContentFilter {
 
   @Override
   public void onTableTypeSpecStart(int id, int[] configs) {
-    restypeName = typePool.getString(typeSpecIndex++);
+    typeId = id;
+    restypeName = typePool.getString(id - 1);
+    typeMatches = compiled.matchType(restypeName);
     super.onTableTypeSpecStart(id, configs);
   }
 
@@ -104,22 +174,29 @@ public class TableAttributeMatcher extends ContentFilter {
       int count) {
     itemName = keyPool.getString(key);
     isComplexEntry = isComplexEntry(flags);
+    itemCandidates = keyMatches[key];
+    itemPattern = ResourcePatterns.select(itemCandidates, typeMatches);
     super.onTableEntryStart(id, flags, key, parent, count);
   }
 
   @Override
   public void onResourceValue(long offset, ResourceValue value) {
     assert offset == (int) offset;
-    if (tableStarted && !isComplexEntry) {
-      String name = "R." + restypeName + "." + itemName;
-      if (patterns.contains(name)) {
-        List<Long> list = matches.get(name);
-        if (list == null) {
-          list = new ArrayList<>();
-          matches.put(name, list);
+    if (tableStarted && !isComplexEntry && itemPattern >= 0) {
+      for (int index : itemCandidates) {
+        if (typeMatches.get(index)) {
+          matched.set(index);
         }
-        list.add(offset);
       }
+      String pattern = compiled.get(itemPattern);
+      List<Long> list = matches.get(pattern);
+      if (list == null) {
+        list = new ArrayList<>();
+        matches.put(pattern, list);
+      }
+      list.add(offset);
+      String name = "R." + restypeName + "." + itemName;
+      resourceMatches.add(new ResourceMatch(pattern, name, itemConfig, offset, value));
     }
     super.onResourceValue(offset, value);
   }
@@ -127,6 +204,8 @@ public class TableAttributeMatcher extends ContentFilter {
   @Override
   public void onTableEntryEnd() {
     itemName = null;
+    itemCandidates = null;
+    itemPattern = -1;
     super.onTableEntryEnd();
   }
 
@@ -139,14 +218,16 @@ public class TableAttributeMatcher extends ContentFilter {
   @Override
   public void onTableTypeSpecEnd() {
     restypeName = null;
+    typeMatches = null;
     super.onTableTypeSpecEnd();
   }
 
   @Override
   public void onTablePackageEnd() {
-    typeSpecIndex = 0;
+    typeId = 0;
     typePool = null;
     keyPool = null;
+    keyMatches = null;
     packageName = null;
     super.onTablePackageEnd();
   }
@@ -0,0 +1,297 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.isComplexEntry;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_STRING;
+
+/**
+ * ContentFilter that collects table values into parallel primitive columns, one row per value
+ * (bag items included), and writes them as little-endian column files that can be memory-mapped:
+ * <ul>
+ * <li><b>id.i32</b> resource id</li>
+ * <li><b>key.i32</b> index into <b>key.dict</b></li>
+ * <li><b>type.u8</b> index into <b>type.dict</b></li>
+ * <li><b>config.u16</b> index into <b>config.dict</b> (qualifier strings)</li>
+ * <li><b>name.i32</b> bag item name, or 0 for simple entries</li>
+ * <li><b>valuetype.u8</b> Res_value data type</li>
+ * <li><b>data.i32</b> Res_value data; for strings, an index into <b>string.dict</b></li>
+ * </ul>
+ * A dictionary file holds a string count, count + 1 offsets and the concatenated UTF-8 bytes; each
+ * dictionary is deduplicated. <b>schema.txt</b> lists the row count and files.
+ */
+public class TableColumnExporter extends ContentFilter {
+
+  private final IntArray ids = new IntArray(1024);
+  private final IntArray keys = new IntArray(1024);
+  private final IntArray types = new IntArray(1024);
+  private final IntArray configs = new IntArray(1024);
+  private final IntArray names = new IntArray(1024);
+  private final IntArray valueTypes = new IntArray(1024);
+  private final IntArray data = new IntArray(1024);
+
+  private final Dictionary keyDict = new Dictionary();
+  private final Dictionary typeDict = new Dictionary();
+  private final Dictionary configDict = new Dictionary();
+  private final Dictionary stringDict = new Dictionary();
+
+  private boolean tableStarted;
+  private StringPool pool;
+  private int[] poolIndexes;
+  private boolean hasTypePool;
+  private boolean hasKeyPool;
+  private StringPool typePool;
+  private StringPool keyPool;
+  private int packageId;
+  private int typeId;
+  private int typeIndex;
+  private int configIndex;
+  private int itemId;
+  private int itemKey;
+  private boolean isComplexEntry;
+  private int entryMapName;
+
+  public TableColumnExporter() {
+  }
+
+  public TableColumnExporter(ContentHandler parent) {
+    super(parent);
+  }
+
+  public int getRowCount() {
+    return ids.size();
+  }
+
+  /**
+   * Writes the columns and dictionaries to the given directory, creating it if needed.
+   */
+  public void write(File dir) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create " + dir);
+    }
+    writeColumn(new File(dir, "id.i32"), ids, 4);
+    writeColumn(new File(dir, "key.i32"), keys, 4);
+    writeColumn(new File(dir, "type.u8"), types, 1);
+    writeColumn(new File(dir, "config.u16"), configs, 2);
+    writeColumn(new File(dir, "name.i32"), names, 4);
+    writeColumn(new File(dir, "valuetype.u8"), valueTypes, 1);
+    writeColumn(new File(dir, "data.i32"), data, 4);
+    keyDict.write(new File(dir, "key.dict"));
+    typeDict.write(new File(dir, "type.dict"));
+    configDict.write(new File(dir, "config.dict"));
+    stringDict.write(new File(dir, "string.dict"));
+    try (Writer out = new OutputStreamWriter(
+        new FileOutputStream(new File(dir, "schema.txt")), StandardCharsets.UTF_8)) {
+      out.write("rows=" + getRowCount() + "\n"
+          + "id.i32 key.i32 type.u8 config.u16 name.i32 valuetype.u8 data.i32\n"
+          + "key.dict type.dict config.dict string.dict\n");
+    }
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onTableStart(int packageCount) {
+    tableStarted = true;
+    super.onTableStart(packageCount);
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onStringPool(stringPool);
+      return;
+    }
+    if (pool == null) {
+      pool = stringPool;
+      poolIndexes = new int[pool.size()];
+      for (int i = 0; i < poolIndexes.length; i++) {
+        poolIndexes[i] = stringDict.add(pool.getString(i));
+      }
+    } else if (hasTypePool && typePool == null) {
+      typePool = stringPool;
+    } else if (hasKeyPool && keyPool == null) {
+      keyPool = stringPool;
+    } else {
+      throw new IllegalStateException();
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onTablePackageStart(int id, String name, int typeStrings,
+      int lastPublicType, int keyStrings, int lastPublicKey) {
+    packageId = id;
+    hasTypePool = typeStrings != 0;
+    hasKeyPool = keyStrings != 0;
+    super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+        keyStrings, lastPublicKey);
+  }
+
+  @Override
+  public void onTableTypeSpecStart(int id, int[] configs) {
+    typeId = id;
+    typeIndex = typeDict.add(typePool.getString(id - 1));
+    if (typeIndex > 0xFF) {
+      throw new IllegalStateException("Too many resource types");
+    }
+    super.onTableTypeSpecStart(id, configs);
+  }
+
+  @Override
+  public void onTableTypeStart(int id, ResourceConfig config, int entryCount,
+      int entryStart, int[] offsets) {
+    configIndex = configDict.add(config.qualifiers());
+    if (configIndex > 0xFFFF) {
+      throw new IllegalStateException("Too many configurations");
+    }
+    super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
+  }
+
+  @Override
+  public void onTableEntryStart(int id, int flags, int key, int parent,
+      int count) {
+    itemId = makeId(packageId - 1, typeId - 1, id);
+    itemKey = keyDict.add(keyPool.getString(key));
+    isComplexEntry = isComplexEntry(flags);
+    super.onTableEntryStart(id, flags, key, parent, count);
+  }
+
+  @Override
+  public void onTableEntryMapName(int name) {
+    entryMapName = name;
+    super.onTableEntryMapName(name);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onResourceValue(offset, value);
+      return;
+    }
+    int intValue = value.intValue();
+    if (value.type == TYPE_STRING && intValue >= 0 && intValue < poolIndexes.length) {
+      intValue = poolIndexes[intValue];
+    }
+    ids.add(itemId);
+    keys.add(itemKey);
+    types.add(typeIndex);
+    configs.add(configIndex);
+    names.add(isComplexEntry ? entryMapName : 0);
+    valueTypes.add(value.type);
+    data.add(intValue);
+    super.onResourceValue(offset, value);
+  }
+
+  @Override
+  public void onTableEntryEnd() {
+    entryMapName = 0;
+    super.onTableEntryEnd();
+  }
+
+  @Override
+  public void onTablePackageEnd() {
+    packageId = 0;
+    typeId = 0;
+    typePool = null;
+    keyPool = null;
+    super.onTablePackageEnd();
+  }
+
+  @Override
+  public void onTableEnd() {
+    tableStarted = false;
+    pool = null;
+    poolIndexes = null;
+    super.onTableEnd();
+  }
+
+  private static void writeColumn(File file, IntArray column, int width) throws IOException {
+    try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+      ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0, n = column.size(); i < n; i++) {
+        if (buf.remaining() < width) {
+          drain(channel, buf);
+        }
+        int value = column.get(i);
+        switch (width) {
+          case 1:
+            buf.put((byte) value);
+            break;
+          case 2:
+            buf.putShort((short) value);
+            break;
+          default:
+            buf.putInt(value);
+        }
+      }
+      drain(channel, buf);
+    }
+  }
+
+  private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+    buf.flip();
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+    buf.clear();
+  }
+
+  /**
+   * Deduplicated string dictionary.
+   */
+  private static class Dictionary {
+
+    final Map<String, Integer> indexes = new HashMap<>();
+    final List<String> strings = new ArrayList<>();
+
+    int add(String s) {
+      if (s == null) {
+        s = "";
+      }
+      Integer index = indexes.get(s);
+      if (index == null) {
+        index = strings.size();
+        indexes.put(s, index);
+        strings.add(s);
+      }
+      return index;
+    }
+
+    void write(File file) throws IOException {
+      List<byte[]> encoded = new ArrayList<>(strings.size());
+      IntArray offsets = new IntArray(strings.size() + 2);
+      offsets.add(strings.size());
+      int offset = 0;
+      for (String s : strings) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        encoded.add(bytes);
+        offsets.add(offset);
+        offset += bytes.length;
+      }
+      offsets.add(offset);
+      writeColumn(file, offsets, 4);
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
+        for (byte[] bytes : encoded) {
+          out.write(bytes);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+
+/**
+ * ContentFilter that resolves each table entry to the values that a device with the given
+ * configuration would see: those of the best matching configuration, as chosen by
+ * {@link ResourceConfig#isBetterThan}. Each type chunk is matched against the device once, and
+ * configurations are compared only in the dimensions that the type spec flags as varying for the
+ * entry.
+ */
+public class TableConfigResolver extends ContentFilter {
+
+  // Additional flag indicating an entry is public.
+  private static final int SPEC_PUBLIC = 0x40000000;
+
+  private final ResourceConfig device;
+
+  private final String qualifiers;
+
+  private final Map<Integer, List<ResourceMatch>> resolved =
+      new TreeMap<>(Integer::compareUnsigned);
+
+  private final Map<Integer, ResourceConfig> configs = new HashMap<>();
+
+  private boolean tableStarted;
+  private StringPool pool;
+  private StringPool valuePool;
+  private boolean hasTypePool;
+  private boolean hasKeyPool;
+  private StringPool typePool;
+  private StringPool keyPool;
+  private int packageId;
+  private int typeId;
+  private String restypeName;
+  private int[] specFlags;
+  private ResourceConfig config;
+  private boolean configMatches;
+  private List<ResourceMatch> values;
+  private String itemName;
+
+  public TableConfigResolver(ResourceConfig device) {
+    this.device = device;
+    this.qualifiers = device.qualifiers();
+  }
+
+  public TableConfigResolver(ResourceConfig device, ContentHandler parent) {
+    super(parent);
+    this.device = device;
+    this.qualifiers = device.qualifiers();
+  }
+
+  public ResourceConfig getDevice() {
+    return device;
+  }
+
+  /**
+   * Returns the values of each resolved resource, keyed by resource id. The values of a bag are
+   * in file order; each match's pattern is the device's qualifiers.
+   */
+  public Map<Integer, List<ResourceMatch>> getResolved() {
+    return resolved;
+  }
+
+  /**
+   * Returns the table's string pool, which holds the values of string resources.
+   */
+  public StringPool getValuePool() {
+    return valuePool;
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onTableStart(int packageCount) {
+    tableStarted = true;
+    super.onTableStart(packageCount);
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onStringPool(stringPool);
+      return;
+    }
+    if (pool == null) {
+      pool = valuePool = stringPool;
+    } else if (hasTypePool && typePool == null) {
+      typePool = stringPool;
+    } else if (hasKeyPool && keyPool == null) {
+      keyPool = stringPool;
+    } else {
+      throw new IllegalStateException();
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onTablePackageStart(int id, String name, int typeStrings,
+      int lastPublicType, int keyStrings, int lastPublicKey) {
+    packageId = id;
+    hasTypePool = typeStrings != 0;
+    hasKeyPool = keyStrings != 0;
+    super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+        keyStrings, lastPublicKey);
+  }
+
+  @Override
+  public void onTableTypeSpecStart(int id, int[] configs) {
+    typeId = id;
+    restypeName = typePool.getString(id - 1);
+    specFlags = configs;
+    super.onTableTypeSpecStart(id, configs);
+  }
+
+  @Override
+  public void onTableTypeStart(int id, ResourceConfig config, int entryCount,
+      int entryStart, int[] offsets) {
+    this.config = config;
+    configMatches = config.match(device);
+    super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
+  }
+
+  @Override
+  public void onTableEntryStart(int id, int flags, int key, int parent,
+      int count) {
+    if (configMatches) {
+      int resId = makeId(packageId - 1, typeId - 1, id);
+      ResourceConfig best = configs.get(resId);
+      if (best == null || config.isBetterThan(best, device, mask(id))) {
+        configs.put(resId, config);
+        values = new ArrayList<>(Math.max(count, 1));
+        resolved.put(resId, values);
+        itemName = "R." + restypeName + "." + keyPool.getString(key);
+      }
+    }
+    super.onTableEntryStart(id, flags, key, parent, count);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    if (values != null) {
+      values.add(new ResourceMatch(qualifiers, itemName, config, offset, value));
+    }
+    super.onResourceValue(offset, value);
+  }
+
+  @Override
+  public void onTableEntryEnd() {
+    values = null;
+    itemName = null;
+    super.onTableEntryEnd();
+  }
+
+  @Override
+  public void onTableTypeEnd() {
+    config = null;
+    configMatches = false;
+    super.onTableTypeEnd();
+  }
+
+  @Override
+  public void onTableTypeSpecEnd() {
+    restypeName = null;
+    specFlags = null;
+    super.onTableTypeSpecEnd();
+  }
+
+  @Override
+  public void onTablePackageEnd() {
+    packageId = 0;
+    typeId = 0;
+    typePool = null;
+    keyPool = null;
+    super.onTablePackageEnd();
+  }
+
+  @Override
+  public void onTableEnd() {
+    tableStarted = false;
+    pool = null;
+    super.onTableEnd();
+  }
+
+  /**
+   * Returns the configuration dimensions that vary for the given entry, or all if unknown.
+   */
+  private int mask(int entry) {
+    return (specFlags != null && entry < specFlags.length)
+        ? specFlags[entry] & ~SPEC_PUBLIC : -1;
+  }
+}
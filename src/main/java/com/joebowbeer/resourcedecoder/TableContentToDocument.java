@@ -1,9 +1,7 @@
 package com.joebowbeer.resourcedecoder;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 import nu.xom.Attribute;
 import nu.xom.Document;
@@ -23,23 +21,26 @@ import static com.joebowbeer.resourcedecoder.ResourceUtils.ATTR_ZERO;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.formatAllowedTypes;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.formatQuantity;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.getEntry;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.hexId;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.isArrayId;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.isComplexEntry;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.isInternalId;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.isPublicEntry;
 import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.trimType;
 import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_ATTRIBUTE;
 import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_REFERENCE;
 
 public class TableContentToDocument extends ContentFilter implements DocumentBuilder {
 
-  private static final String FORMAT = "%#010x"; // 0x12345678
+  private final IntMap<String> declarations = new IntMap<>(1024);
+  private final IntSet references = new IntSet(1024);
+  private final IntMap<List<ReferenceAttribute>> pending = new IntMap<>();
 
-  private final Map<String, String> declarations = new HashMap<>();
-  private final Set<String> references = new HashSet<>();
+  private FrameworkIds framework; // if set, resolve names while decoding
 
   private Document document;
-  private Element curNode;
+  protected Element curNode;
   private StringPool pool;
   private StringPool typePool;
   private StringPool keyPool;
@@ -47,7 +48,7 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
   private boolean hasKeyPool;
   private int packageId;
   private String packageName;
-  private int typeSpecIndex;
+  private int typeId;
   private String restypeName;
   private ResourceConfig itemConfig;
   private boolean isComplexEntry;
@@ -60,14 +61,40 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
     super(parent);
   }
 
-  public Map<String, String> getDeclarations() {
+  public IntMap<String> getDeclarations() {
     return declarations;
   }
 
-  public Set<String> getReferences() {
+  public IntSet getReferences() {
     return references;
   }
 
+  /**
+   * Resolves reference names while decoding, using the table declarations and the given
+   * android.R.* identifiers. Backward references are resolved at once; forward references are
+   * filled in when their declaration arrives. The document then needs no name replacement.
+   */
+  public void setResolveNames(FrameworkIds framework) {
+    this.framework = framework;
+  }
+
+  public boolean isResolvingNames() {
+    return framework != null;
+  }
+
+  /**
+   * Returns the referenced ids that were not resolved while decoding.
+   */
+  public IntSet getUnresolved() {
+    IntSet unresolved = new IntSet();
+    pending.forEach((resId, attrs) -> {
+      if (attrs != null) {
+        unresolved.add(resId);
+      }
+    });
+    return unresolved;
+  }
+
   /* DocumentBuilder */
   @Override
   public Document toDocument() {
@@ -80,7 +107,8 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
     document = null;
     declarations.clear();
     references.clear();
-    curNode = new Element("packages");
+    pending.clear();
+    startDocument(new Element("packages"));
     super.onTableStart(packageCount);
   }
 
@@ -113,8 +141,7 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
     Element packageNode = new Element("package");
     packageNode.addAttribute(new Attribute("id", formatId(id)));
     packageNode.addAttribute(new Attribute("name", name));
-    curNode.appendChild(packageNode);
-    curNode = packageNode;
+    startNode(packageNode);
     super.onTablePackageStart(id, name, typeStrings,
         lastPublicType, keyStrings, lastPublicKey);
   }
@@ -123,11 +150,11 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
   public void onTableTypeSpecStart(int id, int[] configs) {
     Element restypeNode = new Element("resourcetype");
     restypeNode.addAttribute(new Attribute("id", formatId(id)));
-    restypeName = typePool.getString(typeSpecIndex++);
+    typeId = id; // types may be filtered out, so use the id rather than a count
+    restypeName = typePool.getString(id - 1);
     restypeNode.addAttribute(new Attribute("name", restypeName));
     // ignore fast-lookup configs table
-    curNode.appendChild(restypeNode);
-    curNode = restypeNode;
+    startNode(restypeNode);
     super.onTableTypeSpecStart(id, configs);
   }
 
@@ -136,8 +163,7 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
       int entryStart, int[] offsets) {
     itemConfig = config;
     Element configNode = configElement(config);
-    curNode.appendChild(configNode);
-    curNode = configNode;
+    startNode(configNode);
     super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
   }
 
@@ -152,11 +178,10 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
       itemNode.addAttribute(new Attribute("ispublic", "true"));
     }
     if (parent != 0) {
-      itemNode.addAttribute(new Attribute("parentref", formatName(parent)));
+      itemNode.addAttribute(nameAttribute("parentref", parent));
     }
-    curNode.appendChild(itemNode);
-    curNode = itemNode;
-    declareId(makeId(packageId - 1, typeSpecIndex - 1, id), restypeName, itemName);
+    startNode(itemNode);
+    declareId(makeId(packageId - 1, typeId - 1, id), restypeName, itemName);
     super.onTableEntryStart(id, flags, key, parent, count);
   }
 
@@ -174,11 +199,11 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
       return;
     }
     if (!isComplexEntry) {
-      curNode.addAttribute(new Attribute("value", formatValue(value)));
+      curNode.addAttribute(valueAttribute(value));
     } else {
       switch (restypeName) {
         case "attr": {
-          curNode.appendChild(attrValueElement(entryMapName, value));
+          addNode(attrValueElement(entryMapName, value));
           break;
         }
         case "array": {
@@ -186,23 +211,23 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
           Element elementNode = new Element("element");
           elementNode.addAttribute(
               new Attribute("index", String.valueOf(getEntry(entryMapName))));
-          elementNode.addAttribute(new Attribute("value", formatValue(value)));
-          curNode.appendChild(elementNode);
+          elementNode.addAttribute(valueAttribute(value));
+          addNode(elementNode);
           break;
         }
         case "plurals": {
           assert isInternalId(entryMapName);
           Element elementNode = new Element("quantity");
           elementNode.addAttribute(new Attribute("name", formatQuantity(entryMapName)));
-          elementNode.addAttribute(new Attribute("value", formatValue(value)));
-          curNode.appendChild(elementNode);
+          elementNode.addAttribute(valueAttribute(value));
+          addNode(elementNode);
           break;
         }
         default: { // TODO?
           Element valueNode = new Element("value");
-          valueNode.addAttribute(new Attribute("name", formatName(entryMapName)));
-          valueNode.addAttribute(new Attribute("value", formatValue(value)));
-          curNode.appendChild(valueNode);
+          valueNode.addAttribute(nameAttribute("name", entryMapName));
+          valueNode.addAttribute(valueAttribute(value));
+          addNode(valueNode);
           break;
         }
       }
@@ -213,21 +238,21 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
   @Override
   public void onTableEntryEnd() {
     entryMapName = 0;
-    curNode = (Element) curNode.getParent();
+    endNode();
     super.onTableEntryEnd();
   }
 
   @Override
   public void onTableTypeEnd() {
     itemConfig = null;
-    curNode = (Element) curNode.getParent();
+    endNode();
     super.onTableTypeEnd();
   }
 
   @Override
   public void onTableTypeSpecEnd() {
     restypeName = null;
-    curNode = (Element) curNode.getParent();
+    endNode();
     super.onTableTypeSpecEnd();
   }
 
@@ -235,73 +260,126 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
   public void onTablePackageEnd() {
     packageId = 0;
     packageName = null;
-    typeSpecIndex = 0;
+    typeId = 0;
     typePool = null;
     keyPool = null;
-    curNode = (Element) curNode.getParent();
+    endNode();
     super.onTablePackageEnd();
   }
 
   @Override
   public void onTableEnd() {
-    document = new Document(curNode);
-    curNode = null;
+    endDocument();
     pool = null;
     super.onTableEnd();
   }
 
+  protected void startDocument(Element root) {
+    curNode = root;
+  }
+
+  protected void endDocument() {
+    document = new Document(curNode);
+    curNode = null;
+  }
+
+  /**
+   * Appends the given node to the current node, and makes it the current node.
+   */
+  protected void startNode(Element node) {
+    curNode.appendChild(node);
+    curNode = node;
+  }
+
+  protected void endNode() {
+    curNode = (Element) curNode.getParent();
+  }
+
+  /**
+   * Appends the given leaf node to the current node.
+   */
+  protected void addNode(Element node) {
+    startNode(node);
+    endNode();
+  }
+
   protected Element configElement(ResourceConfig config) {
     Element node = new Element("configuration");
-    if (config.mcc != 0) {
-      node.addAttribute(new Attribute("mcc", String.valueOf(config.mcc)));
+    if (config.getMcc() != 0) {
+      node.addAttribute(new Attribute("mcc", String.valueOf(config.getMcc())));
+    }
+    if (config.getMnc() != 0) {
+      node.addAttribute(new Attribute("mnc", String.valueOf(config.getMnc())));
     }
-    if (config.mnc != 0) {
-      node.addAttribute(new Attribute("mnc", String.valueOf(config.mnc)));
+    if (!config.getLanguage().isEmpty()) {
+      node.addAttribute(new Attribute("language", config.getLanguage()));
     }
-    if (!config.language.isEmpty()) {
-      node.addAttribute(new Attribute("language", config.language));
+    if (!config.getCountry().isEmpty()) {
+      node.addAttribute(new Attribute("country", config.getCountry()));
     }
-    if (!config.country.isEmpty()) {
-      node.addAttribute(new Attribute("country", config.country));
+    if (!config.getLocaleScript().isEmpty()) {
+      node.addAttribute(new Attribute("script", config.getLocaleScript()));
     }
-    if (config.orientation != 0) {
+    if (!config.getLocaleVariant().isEmpty()) {
+      node.addAttribute(new Attribute("variant", config.getLocaleVariant()));
+    }
+    if (config.getOrientation() != 0) {
       node.addAttribute(new Attribute("orientation", config.orientationQualifier()));
     }
-    if (config.touchscreen != 0) {
+    if (config.getTouchscreen() != 0) {
       node.addAttribute(new Attribute("touchscreen",
-          String.valueOf(config.touchscreen)));
+          String.valueOf(config.getTouchscreen())));
     }
-    if (config.density != 0) {
+    if (config.getDensity() != 0) {
       node.addAttribute(new Attribute("density", config.densityQualifier()));
     }
-    if (config.keyboard != 0) {
+    if (config.getKeyboard() != 0) {
       node.addAttribute(new Attribute("keyboard",
-          String.valueOf(config.keyboard)));
+          String.valueOf(config.getKeyboard())));
     }
-    if (config.navigation != 0) {
+    if (config.getNavigation() != 0) {
       node.addAttribute(new Attribute("navigation",
-          String.valueOf(config.navigation)));
+          String.valueOf(config.getNavigation())));
     }
-    if (config.inputFlags != 0) {
+    if (config.getInputFlags() != 0) {
       node.addAttribute(new Attribute("inputflags",
-          String.format("%#x", config.inputFlags)));
+          String.format("%#x", config.getInputFlags())));
     }
-    if (config.screenWidth != 0) {
+    if (config.getScreenWidth() != 0) {
       node.addAttribute(new Attribute("screenwidth",
-          String.valueOf(config.screenWidth)));
+          String.valueOf(config.getScreenWidth())));
     }
-    if (config.screenHeight != 0) {
+    if (config.getScreenHeight() != 0) {
       node.addAttribute(new Attribute("screenheight",
-          String.valueOf(config.screenHeight)));
+          String.valueOf(config.getScreenHeight())));
+    }
+    if (config.getSdkVersion() != 0) {
+      node.addAttribute(new Attribute("sdkversion", String.valueOf(config.getSdkVersion())));
+    }
+    if (config.getScreenLayout() != 0) {
+      node.addAttribute(new Attribute("screenLayout", String.valueOf(config.getScreenLayout())));
+    }
+    if (config.getUiMode() != 0) {
+      node.addAttribute(new Attribute("uiMode", String.valueOf(config.getUiMode())));
+    }
+    if (config.getSmallestScreenWidthDp() != 0) {
+      node.addAttribute(new Attribute("smallestScreenWidthDp",
+          String.valueOf(config.getSmallestScreenWidthDp())));
     }
-    if (config.sdkVersion != 0) {
-      node.addAttribute(new Attribute("sdkversion", String.valueOf(config.sdkVersion)));
+    if (config.getScreenWidthDp() != 0) {
+      node.addAttribute(new Attribute("screenWidthDp",
+          String.valueOf(config.getScreenWidthDp())));
     }
-    if (config.screenLayout != 0) {
-      node.addAttribute(new Attribute("screenLayout", String.valueOf(config.screenLayout)));
+    if (config.getScreenHeightDp() != 0) {
+      node.addAttribute(new Attribute("screenHeightDp",
+          String.valueOf(config.getScreenHeightDp())));
     }
-    if (config.uiMode != 0) {
-      node.addAttribute(new Attribute("uiMode", String.valueOf(config.uiMode)));
+    if (config.getScreenLayout2() != 0) {
+      node.addAttribute(new Attribute("screenLayout2",
+          String.valueOf(config.getScreenLayout2())));
+    }
+    if (config.getColorMode() != 0) {
+      node.addAttribute(new Attribute("colorMode", String.valueOf(config.getColorMode())));
     }
     return node;
   }
@@ -343,49 +421,71 @@ public class TableContentToDocument extends ContentFilter implements DocumentBui
         node.addAttribute(new Attribute("quantity", "many"));
         break;
       default: // TODO?
-        node.addAttribute(new Attribute("name", formatName(name)));
-        node.addAttribute(new Attribute("value", formatValue(value)));
+        node.addAttribute(nameAttribute("name", name));
+        node.addAttribute(valueAttribute(value));
     }
     return node;
   }
 
   private String formatId(int id) {
-    return String.format("%#x", id);
+    return hexId(id);
   }
 
-  private String formatValue(ResourceValue value) {
+  private Attribute valueAttribute(ResourceValue value) {
     if (value.type == TYPE_ATTRIBUTE) {
-      return formatAttribute(value.intValue());
+      return referenceAttribute("value", '?', value.intValue());
     }
     if (value.type == TYPE_REFERENCE) {
-      return formatReference(value.intValue());
+      if (value.intValue() == 0) {
+        return new Attribute("value", "@null");
+      }
+      return referenceAttribute("value", '@', value.intValue());
     }
-    return value.format(pool);
+    return new Attribute("value", value.format(pool));
   }
 
-  private String formatAttribute(int resId) {
-    return "?" + referenceId(resId);
+  private Attribute nameAttribute(String name, int resId) {
+    return referenceAttribute(name, '$', resId);
   }
 
-  private String formatReference(int resId) {
-    if (resId == 0) {
-      return "@null";
+  private Attribute referenceAttribute(String name, char prefix, int resId) {
+    references.add(resId);
+    if (framework == null) {
+      return new ReferenceAttribute(name, prefix, resId);
     }
-    return "@" + referenceId(resId);
-  }
-
-  private String formatName(int resId) {
-    return "$" + referenceId(resId);
+    String resolved = declarations.get(resId);
+    if (resolved == null) {
+      resolved = framework.get(resId);
+    }
+    if (resolved != null) {
+      return new Attribute(name, resolvedValue(prefix, resolved));
+    }
+    // forward reference: fill in when declared
+    ReferenceAttribute attr = new ReferenceAttribute(name, prefix, resId);
+    List<ReferenceAttribute> attrs = pending.get(resId);
+    if (attrs == null) {
+      attrs = new ArrayList<>(2);
+      pending.put(resId, attrs);
+    }
+    attrs.add(attr);
+    return attr;
   }
 
-  private String referenceId(int resId) {
-    String idString = String.format(FORMAT, resId);
-    references.add(idString);
-    return idString;
+  private static String resolvedValue(char prefix, String name) {
+    return (prefix == '$') ? trimType(name) : prefix + name;
   }
 
   private void declareId(int resId, String restypeName, String itemName) {
-    String idString = String.format(FORMAT, resId);
-    declarations.put(idString, restypeName + "/" + itemName);
+    String name = restypeName + "/" + itemName;
+    declarations.put(resId, name);
+    if (framework != null) {
+      List<ReferenceAttribute> attrs = pending.get(resId);
+      if (attrs != null) {
+        for (ReferenceAttribute attr : attrs) {
+          attr.setValue(resolvedValue(attr.prefix, name));
+        }
+        pending.put(resId, null);
+      }
+    }
   }
 }
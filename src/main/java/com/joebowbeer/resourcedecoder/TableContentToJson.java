@@ -0,0 +1,184 @@
+package com.joebowbeer.resourcedecoder;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.hexId;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.isComplexEntry;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_REFERENCE;
+
+/**
+ * ContentFilter that writes one JSON record per table entry as it is decoded. Each record holds
+ * the package, type, name, id, configuration qualifiers and formatted value. Complex entries hold
+ * their parent and a <b>values</b> array of name/value pairs instead of a value.
+ */
+public class TableContentToJson extends ContentFilter {
+
+  private final JsonRecordWriter writer;
+
+  private boolean tableStarted;
+  private StringPool pool;
+  private boolean hasTypePool;
+  private boolean hasKeyPool;
+  private StringPool typePool;
+  private StringPool keyPool;
+  private int packageId;
+  private String packageName;
+  private int typeId;
+  private String restypeName;
+  private String itemConfig;
+  private boolean isComplexEntry;
+  private int entryMapName;
+
+  public TableContentToJson(JsonRecordWriter writer) {
+    this.writer = writer;
+  }
+
+  public TableContentToJson(JsonRecordWriter writer, ContentHandler parent) {
+    super(parent);
+    this.writer = writer;
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onTableStart(int packageCount) {
+    tableStarted = true;
+    super.onTableStart(packageCount);
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onStringPool(stringPool);
+      return;
+    }
+    if (pool == null) {
+      pool = stringPool;
+    } else if (hasTypePool && typePool == null) {
+      typePool = stringPool;
+    } else if (hasKeyPool && keyPool == null) {
+      keyPool = stringPool;
+    } else {
+      throw new IllegalStateException();
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onTablePackageStart(int id, String name, int typeStrings,
+      int lastPublicType, int keyStrings, int lastPublicKey) {
+    packageId = id;
+    packageName = name;
+    hasTypePool = typeStrings != 0;
+    hasKeyPool = keyStrings != 0;
+    super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+        keyStrings, lastPublicKey);
+  }
+
+  @Override
+  public void onTableTypeSpecStart(int id, int[] configs) {
+    typeId = id;
+    restypeName = typePool.getString(id - 1);
+    super.onTableTypeSpecStart(id, configs);
+  }
+
+  @Override
+  public void onTableTypeStart(int id, ResourceConfig config, int entryCount,
+      int entryStart, int[] offsets) {
+    itemConfig = config.qualifiers();
+    super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
+  }
+
+  @Override
+  public void onTableEntryStart(int id, int flags, int key, int parent,
+      int count) {
+    isComplexEntry = isComplexEntry(flags);
+    writer.beginRecord()
+        .field("package", packageName)
+        .field("type", restypeName)
+        .field("name", keyPool.getString(key))
+        .field("id", formatId(makeId(packageId - 1, typeId - 1, id)))
+        .field("config", itemConfig);
+    if (isComplexEntry) {
+      if (parent != 0) {
+        writer.field("parent", formatId(parent));
+      }
+      writer.beginArray("values");
+    }
+    super.onTableEntryStart(id, flags, key, parent, count);
+  }
+
+  @Override
+  public void onTableEntryMapName(int name) {
+    entryMapName = name;
+    super.onTableEntryMapName(name);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onResourceValue(offset, value);
+      return;
+    }
+    if (!isComplexEntry) {
+      valueField(value);
+    } else {
+      writer.beginElement().field("name", formatId(entryMapName));
+      valueField(value);
+      writer.endObject();
+    }
+    super.onResourceValue(offset, value);
+  }
+
+  @Override
+  public void onTableEntryEnd() {
+    if (isComplexEntry) {
+      writer.endArray();
+    }
+    writer.endRecord();
+    entryMapName = 0;
+    super.onTableEntryEnd();
+  }
+
+  @Override
+  public void onTableTypeEnd() {
+    itemConfig = null;
+    super.onTableTypeEnd();
+  }
+
+  @Override
+  public void onTableTypeSpecEnd() {
+    restypeName = null;
+    super.onTableTypeSpecEnd();
+  }
+
+  @Override
+  public void onTablePackageEnd() {
+    packageId = 0;
+    packageName = null;
+    typeId = 0;
+    typePool = null;
+    keyPool = null;
+    super.onTablePackageEnd();
+  }
+
+  @Override
+  public void onTableEnd() {
+    tableStarted = false;
+    pool = null;
+    writer.flush();
+    super.onTableEnd();
+  }
+
+  private String formatId(int id) {
+    return hexId(id);
+  }
+
+  private void valueField(ResourceValue value) {
+    if (value.type == TYPE_REFERENCE && value.intValue() == 0) {
+      writer.field("value", "@null");
+    } else {
+      writer.field("value", value, pool);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import nu.xom.Attribute;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.Serializer;
+
+/**
+ * TableContentToDocument that splits the table into one document per resource type, or per
+ * package, and serializes each shard to its own file on a thread pool while decoding continues.
+ * Completed shards are detached from the tree, so only shards in flight are held in memory; when
+ * the pool falls behind, the decoding thread serializes the next shard itself.
+ */
+public class TableContentToShards extends TableContentToDocument {
+
+  public enum Mode {
+    PACKAGE, TYPE
+  }
+
+  private final File dir;
+  private final Mode mode;
+  private final ResourceNames names;
+  private final ThreadPoolExecutor executor;
+  private final List<Future<?>> shards = new ArrayList<>();
+
+  private Element packageNode;
+
+  /**
+   * Creates a shard writer.
+   *
+   * @param dir output directory
+   * @param mode shard per package or per resource type
+   * @param names resolved names of resource ids; see {@link Main#resolveNames(IntMap)}
+   * @param threads number of serializer threads
+   */
+  public TableContentToShards(File dir, Mode mode, ResourceNames names, int threads) {
+    this.dir = dir;
+    this.mode = mode;
+    this.names = names;
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(threads), TableContentToShards::newThread,
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  public TableContentToShards(File dir, Mode mode, ResourceNames names, int threads,
+      ContentHandler parent) {
+    this(dir, mode, names, threads);
+    setParent(parent);
+  }
+
+  /**
+   * Stops accepting shards. Pending shards are abandoned; use {@link #awaitShards()} to complete
+   * them instead.
+   */
+  public void shutdownNow() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Waits for all shards to be written, and returns the number of shards.
+   */
+  public int awaitShards() throws IOException {
+    executor.shutdown();
+    try {
+      for (Future<?> shard : shards) {
+        shard.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+    }
+    return shards.size();
+  }
+
+  /* DocumentBuilder */
+  @Override
+  public Document toDocument() {
+    return null;
+  }
+
+  /* TableContentToDocument overrides */
+  @Override
+  public void onTablePackageStart(int id, String name, int typeStrings,
+      int lastPublicType, int keyStrings, int lastPublicKey) {
+    super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+        keyStrings, lastPublicKey);
+    packageNode = curNode;
+  }
+
+  @Override
+  public void onTableTypeSpecEnd() {
+    Element restypeNode = curNode;
+    super.onTableTypeSpecEnd();
+    if (mode == Mode.TYPE) {
+      restypeNode.detach();
+      Element root = new Element("packages");
+      Element node = new Element(packageNode.getQualifiedName(), packageNode.getNamespaceURI());
+      for (int i = 0; i < packageNode.getAttributeCount(); i++) {
+        node.addAttribute(new Attribute(packageNode.getAttribute(i)));
+      }
+      node.appendChild(restypeNode);
+      root.appendChild(node);
+      submit(new Document(root), packageNode.getAttributeValue("id") + "-"
+          + restypeNode.getAttributeValue("name") + ".xml");
+    }
+  }
+
+  @Override
+  public void onTablePackageEnd() {
+    super.onTablePackageEnd();
+    if (mode == Mode.PACKAGE) {
+      packageNode.detach();
+      Element root = new Element("packages");
+      root.appendChild(packageNode);
+      submit(new Document(root), packageNode.getAttributeValue("id") + ".xml");
+    }
+    packageNode = null;
+  }
+
+  /**
+   * Creates daemon threads, so that a decoding failure does not leave the JVM running.
+   */
+  private static Thread newThread(Runnable r) {
+    Thread thread = new Thread(r, "shard-writer");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  protected void submit(Document doc, String filename) {
+    File file = new File(dir, filename);
+    shards.add(executor.submit(() -> {
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+        Serializer output = new Main.TableSerializer(names, out);
+        Main.configure(output);
+        output.write(doc);
+        output.flush();
+      }
+      return null;
+    }));
+  }
+}
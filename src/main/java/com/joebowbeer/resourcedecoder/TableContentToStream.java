@@ -0,0 +1,74 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import nu.xom.Document;
+import nu.xom.Element;
+
+/**
+ * TableContentToDocument that writes each node to a {@link StreamingSerializer} as it is decoded,
+ * instead of building a Document.
+ */
+public class TableContentToStream extends TableContentToDocument {
+
+  private final StreamingSerializer serializer;
+
+  public TableContentToStream(StreamingSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  public TableContentToStream(StreamingSerializer serializer, ContentHandler parent) {
+    super(parent);
+    this.serializer = serializer;
+  }
+
+  /* DocumentBuilder */
+  @Override
+  public Document toDocument() {
+    return null;
+  }
+
+  /* TableContentToDocument overrides */
+  @Override
+  protected void startDocument(Element root) {
+    super.startDocument(root);
+    try {
+      serializer.startDocument();
+      serializer.startElement(root);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  protected void endDocument() {
+    try {
+      serializer.endElement();
+      serializer.endDocument();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    curNode = null;
+  }
+
+  @Override
+  protected void startNode(Element node) {
+    super.startNode(node);
+    try {
+      serializer.startElement(node);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  protected void endNode() {
+    try {
+      serializer.endElement();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    super.endNode();
+  }
+}
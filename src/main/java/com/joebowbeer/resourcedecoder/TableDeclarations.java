@@ -0,0 +1,109 @@
+package com.joebowbeer.resourcedecoder;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+
+/**
+ * ContentFilter that collects the resource names declared by table content, keyed by resource id,
+ * without building a document. Used to resolve forward references before streaming.
+ *
+ * @see TableContentToDocument#getDeclarations()
+ */
+public class TableDeclarations extends ContentFilter {
+
+  private final IntMap<String> declarations = new IntMap<>(1024);
+
+  private boolean tableStarted;
+  private StringPool pool;
+  private boolean hasTypePool;
+  private boolean hasKeyPool;
+  private StringPool typePool;
+  private StringPool keyPool;
+  private int packageId;
+  private int typeId;
+  private String restypeName;
+
+  public TableDeclarations() {
+  }
+
+  public TableDeclarations(ContentHandler parent) {
+    super(parent);
+  }
+
+  public IntMap<String> getDeclarations() {
+    return declarations;
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onTableStart(int packageCount) {
+    tableStarted = true;
+    declarations.clear();
+    super.onTableStart(packageCount);
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onStringPool(stringPool);
+      return;
+    }
+    if (pool == null) {
+      pool = stringPool;
+    } else if (hasTypePool && typePool == null) {
+      typePool = stringPool;
+    } else if (hasKeyPool && keyPool == null) {
+      keyPool = stringPool;
+    } else {
+      throw new IllegalStateException();
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onTablePackageStart(int id, String name, int typeStrings,
+      int lastPublicType, int keyStrings, int lastPublicKey) {
+    packageId = id;
+    hasTypePool = typeStrings != 0;
+    hasKeyPool = keyStrings != 0;
+    super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+        keyStrings, lastPublicKey);
+  }
+
+  @Override
+  public void onTableTypeSpecStart(int id, int[] configs) {
+    typeId = id;
+    restypeName = typePool.getString(id - 1);
+    super.onTableTypeSpecStart(id, configs);
+  }
+
+  @Override
+  public void onTableEntryStart(int id, int flags, int key, int parent,
+      int count) {
+    int resId = makeId(packageId - 1, typeId - 1, id);
+    declarations.put(resId, restypeName + "/" + keyPool.getString(key));
+    super.onTableEntryStart(id, flags, key, parent, count);
+  }
+
+  @Override
+  public void onTableTypeSpecEnd() {
+    restypeName = null;
+    super.onTableTypeSpecEnd();
+  }
+
+  @Override
+  public void onTablePackageEnd() {
+    packageId = 0;
+    typeId = 0;
+    typePool = null;
+    keyPool = null;
+    super.onTablePackageEnd();
+  }
+
+  @Override
+  public void onTableEnd() {
+    tableStarted = false;
+    pool = null;
+    super.onTableEnd();
+  }
+}
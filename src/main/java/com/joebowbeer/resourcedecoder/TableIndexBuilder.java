@@ -0,0 +1,286 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.joebowbeer.resourcedecoder.ResourceIndex.ENTRY_SIZE;
+import static com.joebowbeer.resourcedecoder.ResourceIndex.HASH_SIZE;
+import static com.joebowbeer.resourcedecoder.ResourceIndex.HEADER_SIZE;
+import static com.joebowbeer.resourcedecoder.ResourceIndex.VALUE_SIZE;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.isComplexEntry;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_STRING;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * ContentFilter that collects every table value, with its file offset, and writes them as a
+ * {@link ResourceIndex}.
+ */
+public class TableIndexBuilder extends ContentFilter {
+
+  private final Map<Integer, Entry> entries = new TreeMap<>(Integer::compareUnsigned);
+
+  private final Map<String, Integer> indexes = new HashMap<>();
+  private final List<byte[]> strings = new ArrayList<>();
+
+  private boolean tableStarted;
+  private StringPool pool;
+  private boolean hasTypePool;
+  private boolean hasKeyPool;
+  private StringPool typePool;
+  private StringPool keyPool;
+  private int packageId;
+  private String packageName;
+  private int typeId;
+  private String restypeName;
+  private int config;
+  private Entry entry;
+  private boolean isComplexEntry;
+  private int entryMapName;
+  private int valueCount;
+
+  public TableIndexBuilder() {
+  }
+
+  public TableIndexBuilder(ContentHandler parent) {
+    super(parent);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Writes the index of the given file. The index is written to a temporary file that then
+   * replaces the given file, so that an index that is mapped is never rewritten.
+   *
+   * @param hash SHA-256 hash of the decoded file; see {@link EditPlan#hash(String)}
+   * @param fileSize size of the decoded file
+   * @param lastModified modification time of the decoded file
+   */
+  public void write(File file, String hash, long fileSize, long lastModified)
+      throws IOException {
+    byte[] hashBytes = hash.getBytes(StandardCharsets.US_ASCII);
+    if (hashBytes.length != HASH_SIZE) {
+      throw new IllegalArgumentException("Invalid hash: " + hash);
+    }
+    int hashSize = Integer.highestOneBit(Math.max(1, 2 * entries.size()) * 2 - 1);
+    int[] hashTable = new int[hashSize];
+    int stringsSize = 0;
+    for (byte[] s : strings) {
+      stringsSize += s.length;
+    }
+    ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * entries.size()
+        + 4 * hashSize + VALUE_SIZE * valueCount + 4 * (strings.size() + 1))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buf.putInt(ResourceIndex.MAGIC);
+    buf.putInt(ResourceIndex.VERSION);
+    buf.put(hashBytes);
+    buf.putInt(entries.size());
+    buf.putInt(valueCount);
+    buf.putInt(hashSize);
+    buf.putInt(strings.size());
+    buf.putLong(fileSize);
+    buf.putLong(lastModified);
+    int index = 0;
+    int firstValue = 0;
+    for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+      Entry item = e.getValue();
+      buf.putInt(e.getKey());
+      buf.putInt(item.name);
+      buf.putInt(firstValue);
+      buf.putInt(item.values.size());
+      firstValue += item.values.size();
+      int slot = item.hash & (hashSize - 1);
+      while (hashTable[slot] != 0) {
+        slot = (slot + 1) & (hashSize - 1);
+      }
+      hashTable[slot] = ++index;
+    }
+    for (int slot : hashTable) {
+      buf.putInt(slot);
+    }
+    for (Entry item : entries.values()) {
+      for (int[] value : item.values) {
+        for (int field : value) {
+          buf.putInt(field);
+        }
+      }
+    }
+    int offset = 0;
+    for (byte[] s : strings) {
+      buf.putInt(offset);
+      offset += s.length;
+    }
+    buf.putInt(offset);
+    File dir = file.getAbsoluteFile().getParentFile();
+    File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+        out.write(buf.array());
+        for (byte[] s : strings) {
+          out.write(s);
+        }
+      }
+      Files.move(tmpFile.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+    } finally {
+      tmpFile.delete();
+    }
+  }
+
+  private int addString(String s) {
+    if (s == null) {
+      s = "";
+    }
+    Integer index = indexes.get(s);
+    if (index == null) {
+      index = strings.size();
+      indexes.put(s, index);
+      strings.add(s.getBytes(StandardCharsets.UTF_8));
+    }
+    return index;
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onTableStart(int packageCount) {
+    tableStarted = true;
+    super.onTableStart(packageCount);
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onStringPool(stringPool);
+      return;
+    }
+    if (pool == null) {
+      pool = stringPool;
+    } else if (hasTypePool && typePool == null) {
+      typePool = stringPool;
+    } else if (hasKeyPool && keyPool == null) {
+      keyPool = stringPool;
+    } else {
+      throw new IllegalStateException();
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onTablePackageStart(int id, String name, int typeStrings,
+      int lastPublicType, int keyStrings, int lastPublicKey) {
+    packageId = id;
+    packageName = name;
+    hasTypePool = typeStrings != 0;
+    hasKeyPool = keyStrings != 0;
+    super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+        keyStrings, lastPublicKey);
+  }
+
+  @Override
+  public void onTableTypeSpecStart(int id, int[] configs) {
+    typeId = id;
+    restypeName = typePool.getString(id - 1);
+    super.onTableTypeSpecStart(id, configs);
+  }
+
+  @Override
+  public void onTableTypeStart(int id, ResourceConfig config, int entryCount,
+      int entryStart, int[] offsets) {
+    this.config = addString(config.qualifiers());
+    super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
+  }
+
+  @Override
+  public void onTableEntryStart(int id, int flags, int key, int parent,
+      int count) {
+    int resId = makeId(packageId - 1, typeId - 1, id);
+    entry = entries.get(resId);
+    if (entry == null) {
+      String name = restypeName + "/" + keyPool.getString(key);
+      entry = new Entry(addString(packageName + ":" + name), name.hashCode());
+      entries.put(resId, entry);
+    }
+    isComplexEntry = isComplexEntry(flags);
+    super.onTableEntryStart(id, flags, key, parent, count);
+  }
+
+  @Override
+  public void onTableEntryMapName(int name) {
+    entryMapName = name;
+    super.onTableEntryMapName(name);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    // ignore unless we are inside table content
+    if (!tableStarted || entry == null) {
+      super.onResourceValue(offset, value);
+      return;
+    }
+    int text = (value.type == TYPE_STRING) ? addString(value.format(pool)) : -1;
+    entry.values.add(new int[]{(int) offset, value.type, value.intValue(),
+      isComplexEntry ? entryMapName : 0, config, text});
+    valueCount++;
+    super.onResourceValue(offset, value);
+  }
+
+  @Override
+  public void onTableEntryEnd() {
+    entry = null;
+    entryMapName = 0;
+    super.onTableEntryEnd();
+  }
+
+  @Override
+  public void onTableTypeSpecEnd() {
+    restypeName = null;
+    super.onTableTypeSpecEnd();
+  }
+
+  @Override
+  public void onTablePackageEnd() {
+    packageId = 0;
+    packageName = null;
+    typeId = 0;
+    typePool = null;
+    keyPool = null;
+    super.onTablePackageEnd();
+  }
+
+  @Override
+  public void onTableEnd() {
+    tableStarted = false;
+    pool = null;
+    super.onTableEnd();
+  }
+
+  /**
+   * Resource id with its values in every configuration.
+   */
+  private static class Entry {
+
+    final int name;
+    final int hash;
+    final List<int[]> values = new ArrayList<>(1);
+
+    Entry(int name, int hash) {
+      this.name = name;
+      this.hash = hash;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_STRING;
+
+/**
+ * ContentFilter that locates the string values containing any of a given set of texts. The
+ * table's string pool is searched once, and each string value is then matched by its pool index,
+ * without formatting it.
+ */
+public class TableStringFinder extends ContentFilter {
+
+  private final Set<String> texts;
+
+  private final List<ResourceMatch> resourceMatches = new ArrayList<>();
+
+  private final List<Integer> resourceIds = new ArrayList<>();
+
+  private final Set<String> found = new LinkedHashSet<>();
+
+  private final Map<Integer, List<String>> indexTexts = new HashMap<>();
+
+  private final BitSet indexes = new BitSet();
+
+  private boolean tableStarted;
+  private StringPool pool;
+  private StringPool valuePool;
+  private boolean hasTypePool;
+  private boolean hasKeyPool;
+  private StringPool typePool;
+  private StringPool keyPool;
+  private int packageId;
+  private int typeId;
+  private String restypeName;
+  private ResourceConfig config;
+  private int resId;
+  private int key = -1;
+
+  public TableStringFinder(Set<String> texts) {
+    this.texts = texts;
+  }
+
+  public TableStringFinder(Set<String> texts, ContentHandler parent) {
+    super(parent);
+    this.texts = texts;
+  }
+
+  public Set<String> getTexts() {
+    return texts;
+  }
+
+  /**
+   * Returns the texts that were found in at least one value.
+   */
+  public Set<String> getFound() {
+    return found;
+  }
+
+  /**
+   * Returns each matched value with its resource name and configuration, in file order. The
+   * pattern of each match is the text that its value contains; a value that contains several of
+   * the texts is matched once for each.
+   */
+  public List<ResourceMatch> getResourceMatches() {
+    return resourceMatches;
+  }
+
+  /**
+   * Returns the ids of the matched values, parallel to {@link #getResourceMatches()}.
+   */
+  public List<Integer> getResourceIds() {
+    return resourceIds;
+  }
+
+  /**
+   * Returns the table's string pool, which holds the values of string resources.
+   */
+  public StringPool getValuePool() {
+    return valuePool;
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onTableStart(int packageCount) {
+    tableStarted = true;
+    super.onTableStart(packageCount);
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    // ignore unless we are inside table content
+    if (!tableStarted) {
+      super.onStringPool(stringPool);
+      return;
+    }
+    if (pool == null) {
+      pool = valuePool = stringPool;
+      search(stringPool);
+    } else if (hasTypePool && typePool == null) {
+      typePool = stringPool;
+    } else if (hasKeyPool && keyPool == null) {
+      keyPool = stringPool;
+    } else {
+      throw new IllegalStateException();
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onTablePackageStart(int id, String name, int typeStrings,
+      int lastPublicType, int keyStrings, int lastPublicKey) {
+    packageId = id;
+    hasTypePool = typeStrings != 0;
+    hasKeyPool = keyStrings != 0;
+    super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+        keyStrings, lastPublicKey);
+  }
+
+  @Override
+  public void onTableTypeSpecStart(int id, int[] configs) {
+    typeId = id;
+    restypeName = typePool.getString(id - 1);
+    super.onTableTypeSpecStart(id, configs);
+  }
+
+  @Override
+  public void onTableTypeStart(int id, ResourceConfig config, int entryCount,
+      int entryStart, int[] offsets) {
+    this.config = config;
+    super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
+  }
+
+  @Override
+  public void onTableEntryStart(int id, int flags, int key, int parent,
+      int count) {
+    resId = makeId(packageId - 1, typeId - 1, id);
+    this.key = key;
+    super.onTableEntryStart(id, flags, key, parent, count);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    if (key >= 0 && value.type == TYPE_STRING && indexes.get(value.intValue())) {
+      String name = "R." + restypeName + "." + keyPool.getString(key);
+      for (String text : indexTexts.get(value.intValue())) {
+        resourceMatches.add(new ResourceMatch(text, name, config, offset, value));
+        resourceIds.add(resId);
+        found.add(text);
+      }
+    }
+    super.onResourceValue(offset, value);
+  }
+
+  @Override
+  public void onTableEntryEnd() {
+    key = -1;
+    super.onTableEntryEnd();
+  }
+
+  @Override
+  public void onTableTypeEnd() {
+    config = null;
+    super.onTableTypeEnd();
+  }
+
+  @Override
+  public void onTableTypeSpecEnd() {
+    restypeName = null;
+    super.onTableTypeSpecEnd();
+  }
+
+  @Override
+  public void onTablePackageEnd() {
+    packageId = 0;
+    typeId = 0;
+    typePool = null;
+    keyPool = null;
+    super.onTablePackageEnd();
+  }
+
+  @Override
+  public void onTableEnd() {
+    tableStarted = false;
+    pool = null;
+    super.onTableEnd();
+  }
+
+  /**
+   * Marks the indexes of the pool strings that contain any of the texts, and records every text
+   * that each one contains.
+   */
+  private void search(StringPool stringPool) {
+    indexes.clear();
+    indexTexts.clear();
+    for (int i = 0; i < stringPool.size(); i++) {
+      String s = stringPool.getString(i);
+      for (String text : texts) {
+        if (s.contains(text)) {
+          indexes.set(i);
+          indexTexts.computeIfAbsent(i, k -> new ArrayList<>(1)).add(text);
+        }
+      }
+    }
+  }
+}
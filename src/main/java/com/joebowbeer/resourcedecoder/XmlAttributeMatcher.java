@@ -0,0 +1,140 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * XmlContentHandler that locates the typed values of attributes on elements matched by one of a
+ * given set of pattern strings. Patterns are of the form <b>selector@attribute</b>, for example:
+ * <b>activity[android:name=.DemoActivity]@android:exported</b>; see {@link XmlElementSelector}.
+ */
+public class XmlAttributeMatcher extends XmlContentHandler {
+
+  private final Set<String> patterns;
+
+  private final Map<String, XmlElementSelector> selectors = new LinkedHashMap<>();
+
+  private final Map<String, String> attributes = new HashMap<>();
+
+  private final Map<String, List<Long>> matches = new HashMap<>();
+
+  private final List<ResourceMatch> resourceMatches = new ArrayList<>();
+
+  private final Deque<List<ResourceMatch>> values = new ArrayDeque<>();
+
+  public XmlAttributeMatcher(Set<String> patterns) {
+    this.patterns = patterns;
+    addPatterns(patterns);
+  }
+
+  public XmlAttributeMatcher(Set<String> patterns, ContentHandler parent) {
+    super(parent);
+    this.patterns = patterns;
+    addPatterns(patterns);
+  }
+
+  public Set<String> getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * Returns the offsets of the matched values, keyed by pattern.
+   */
+  public Map<String, List<Long>> getMatches() {
+    return matches;
+  }
+
+  /**
+   * Returns each matched value with its element and attribute name, in the order that the
+   * elements end.
+   */
+  public List<ResourceMatch> getResourceMatches() {
+    return resourceMatches;
+  }
+
+  /**
+   * Returns the index of the '@' that separates the selector from the attribute name in the given
+   * pattern, or -1 if missing. An '@' inside a <b>[name=value]</b> component is skipped.
+   */
+  public static int indexOfAttribute(String pattern) {
+    int depth = 0;
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c == '[') {
+        depth++;
+      } else if (c == ']') {
+        depth--;
+      } else if (c == '@' && depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void addPatterns(Set<String> patterns) {
+    for (String pattern : patterns) {
+      int at = indexOfAttribute(pattern);
+      if (at <= 0 || at == pattern.length() - 1) {
+        throw new IllegalArgumentException("Invalid attribute pattern: " + pattern);
+      }
+      selectors.put(pattern, new XmlElementSelector(pattern.substring(0, at)));
+      attributes.put(pattern, pattern.substring(at + 1));
+    }
+  }
+
+  /* XmlContentHandler overrides */
+  @Override
+  public void onXmlStartElement(int nsIndex, int nameIndex, int attrIndex,
+      int attrSize, int attrCount, int idIndex, int classIndex, int styleIndex) {
+    values.add(new ArrayList<>(attrCount));
+    super.onXmlStartElement(nsIndex, nameIndex, attrIndex, attrSize,
+        attrCount, idIndex, classIndex, styleIndex);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    // attributes are matched when the element ends, and all of them are known
+    if (insideXml() && attrName != null && !values.isEmpty()) {
+      String name = (attrNamespace != null) ? addNsPrefix(attrName, attrNamespace) : attrName;
+      values.getLast().add(new ResourceMatch(null, name, null, offset, value));
+    }
+    super.onResourceValue(offset, value);
+  }
+
+  @Override
+  public void onXmlEndElement(int nsIndex, int nameIndex) {
+    List<ResourceMatch> attrs = values.removeLast();
+    for (Map.Entry<String, XmlElementSelector> entry : selectors.entrySet()) {
+      if (!entry.getValue().matches(curNode)) {
+        continue;
+      }
+      String pattern = entry.getKey();
+      String attribute = attributes.get(pattern);
+      for (ResourceMatch attr : attrs) {
+        if (attr.name.equals(attribute)) {
+          List<Long> list = matches.get(pattern);
+          if (list == null) {
+            list = new ArrayList<>();
+            matches.put(pattern, list);
+          }
+          list.add(attr.offset);
+          String name = curNode.getQualifiedName() + "@" + attribute;
+          resourceMatches.add(new ResourceMatch(pattern, name, null, attr.offset, attr.value));
+        }
+      }
+    }
+    super.onXmlEndElement(nsIndex, nameIndex);
+  }
+
+  @Override
+  public void onXmlEnd() {
+    values.clear();
+    super.onXmlEnd();
+  }
+}
@@ -0,0 +1,161 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ContentFilter that writes one JSON record per XML node event as it is decoded, without building
+ * a tree. Start element records hold the line number, qualified name and an <b>attributes</b>
+ * array; end element, text and namespace events have matching records.
+ */
+public class XmlContentToJson extends ContentFilter {
+
+  private final JsonRecordWriter writer;
+
+  private final List<String> namespaces = new ArrayList<>(); // prefix, uri pairs
+
+  private boolean xmlStarted;
+  private StringPool pool;
+  private int lineNumber;
+  private int attrsRemaining;
+  private String attrName;
+
+  public XmlContentToJson(JsonRecordWriter writer) {
+    this.writer = writer;
+  }
+
+  public XmlContentToJson(JsonRecordWriter writer, ContentHandler parent) {
+    super(parent);
+    this.writer = writer;
+  }
+
+  /* ContentFilter overrides */
+  @Override
+  public void onXmlStart() {
+    xmlStarted = true;
+    super.onXmlStart();
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    // ignore unless we are inside xml content
+    if (xmlStarted) {
+      pool = stringPool;
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onXmlNode(int lineNumber, int comment) {
+    this.lineNumber = lineNumber;
+    super.onXmlNode(lineNumber, comment);
+  }
+
+  @Override
+  public void onXmlStartNamespace(int prefixIndex, int uriIndex) {
+    String prefix = pool.getString(prefixIndex);
+    String uri = pool.getString(uriIndex);
+    namespaces.add(prefix);
+    namespaces.add(uri);
+    writer.beginRecord()
+        .field("event", "namespace")
+        .field("line", lineNumber)
+        .field("prefix", prefix)
+        .field("uri", uri)
+        .endRecord();
+    super.onXmlStartNamespace(prefixIndex, uriIndex);
+  }
+
+  @Override
+  public void onXmlStartElement(int nsIndex, int nameIndex, int attrIndex,
+      int attrSize, int attrCount, int idIndex, int classIndex, int styleIndex) {
+    writer.beginRecord()
+        .field("event", "start")
+        .field("line", lineNumber)
+        .field("name", qualifiedName(nsIndex, nameIndex))
+        .beginArray("attributes");
+    attrsRemaining = attrCount;
+    if (attrsRemaining == 0) {
+      writer.endArray().endRecord();
+    }
+    super.onXmlStartElement(nsIndex, nameIndex, attrIndex, attrSize,
+        attrCount, idIndex, classIndex, styleIndex);
+  }
+
+  @Override
+  public void onXmlAttribute(int nsIndex, int nameIndex, int rawIndex) {
+    attrName = qualifiedName(nsIndex, nameIndex);
+    super.onXmlAttribute(nsIndex, nameIndex, rawIndex);
+  }
+
+  @Override
+  public void onResourceValue(long offset, ResourceValue value) {
+    // ignore unless we are inside xml content
+    if (!xmlStarted) {
+      super.onResourceValue(offset, value);
+      return;
+    }
+    if (attrName != null) {
+      writer.beginElement()
+          .field("name", attrName)
+          .field("value", value, pool)
+          .endObject();
+      attrName = null;
+      if (--attrsRemaining == 0) {
+        writer.endArray().endRecord();
+      }
+    }
+    super.onResourceValue(offset, value);
+  }
+
+  @Override
+  public void onXmlCData(int cdataIndex) {
+    writer.beginRecord()
+        .field("event", "text")
+        .field("line", lineNumber)
+        .field("value", pool.getString(cdataIndex))
+        .endRecord();
+    super.onXmlCData(cdataIndex);
+  }
+
+  @Override
+  public void onXmlEndElement(int nsIndex, int nameIndex) {
+    writer.beginRecord()
+        .field("event", "end")
+        .field("line", lineNumber)
+        .field("name", qualifiedName(nsIndex, nameIndex))
+        .endRecord();
+    super.onXmlEndElement(nsIndex, nameIndex);
+  }
+
+  @Override
+  public void onXmlEndNamespace(int prefixIndex, int uriIndex) {
+    int n = namespaces.size();
+    if (n >= 2) {
+      namespaces.subList(n - 2, n).clear();
+    }
+    super.onXmlEndNamespace(prefixIndex, uriIndex);
+  }
+
+  @Override
+  public void onXmlEnd() {
+    xmlStarted = false;
+    pool = null;
+    namespaces.clear();
+    writer.flush();
+    super.onXmlEnd();
+  }
+
+  private String qualifiedName(int nsIndex, int nameIndex) {
+    String name = pool.getString(nameIndex);
+    String uri = pool.getString(nsIndex);
+    if (uri != null) {
+      for (int i = namespaces.size() - 1; i > 0; i -= 2) {
+        if (uri.equals(namespaces.get(i))) {
+          return namespaces.get(i - 1) + ":" + name;
+        }
+      }
+    }
+    return name;
+  }
+}
@@ -0,0 +1,77 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import nu.xom.Text;
+
+/**
+ * XmlContentHandler that writes each node to a {@link StreamingSerializer} as it is decoded,
+ * instead of building a Document.
+ */
+public class XmlContentToStream extends XmlContentHandler {
+
+  private final StreamingSerializer serializer;
+
+  public XmlContentToStream(StreamingSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  public XmlContentToStream(StreamingSerializer serializer, ContentHandler parent) {
+    super(parent);
+    this.serializer = serializer;
+  }
+
+  /* XmlContentHandler overrides */
+  @Override
+  public void onXmlStart() {
+    super.onXmlStart();
+    try {
+      serializer.startDocument();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void onXmlStartElement(int nsIndex, int nameIndex, int attrIndex,
+      int attrSize, int attrCount, int idIndex, int classIndex, int styleIndex) {
+    super.onXmlStartElement(nsIndex, nameIndex, attrIndex, attrSize,
+        attrCount, idIndex, classIndex, styleIndex);
+    try {
+      serializer.startElement(curNode);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void onXmlCData(int cdataIndex) {
+    super.onXmlCData(cdataIndex);
+    try {
+      serializer.text((Text) curNode.getChild(curNode.getChildCount() - 1));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void onXmlEndElement(int nsIndex, int nameIndex) {
+    try {
+      serializer.endElement();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    super.onXmlEndElement(nsIndex, nameIndex);
+  }
+
+  @Override
+  public void onXmlEnd() {
+    try {
+      serializer.endDocument();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    super.onXmlEnd();
+  }
+}
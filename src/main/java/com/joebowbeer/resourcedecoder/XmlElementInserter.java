@@ -0,0 +1,373 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nu.xom.Elements;
+
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_STRING_POOL;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_XML_END_ELEMENT;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_XML_RESOURCE_MAP;
+import static com.joebowbeer.resourcedecoder.ResourceDecoder.TYPE_XML_START_ELEMENT;
+
+/**
+ * XmlContentHandler that locates the elements to which new child elements are added. Edits are of
+ * the form <b>parent=element</b>, where both are {@link XmlElementSelector} patterns, for example:
+ * <b>manifest=uses-permission[android:name=android.permission.CAMERA]</b>. The new element is
+ * added as the last child of each matching parent, unless the parent already has a matching
+ * child. Attribute values are strings, unless they are booleans, references or colors.
+ * <p>
+ * {@link #addTo} queues the edits on a {@link ChunkRewriter}: new names and values are appended
+ * to the string pool, android attribute names are appended to the resource map, and the start
+ * and end element chunks are inserted before the end of the parent.
+ */
+public class XmlElementInserter extends XmlContentHandler {
+
+  public static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+  private static final int NODE_SIZE = 16;
+  private static final int ATTR_START = 20;
+  private static final int ATTR_SIZE = 20;
+
+  private final Set<String> edits;
+
+  private final Map<String, XmlElementSelector> parents = new LinkedHashMap<>();
+
+  private final Map<String, XmlElementSelector> elements = new HashMap<>();
+
+  private final Map<String, List<Long>> matches = new HashMap<>();
+
+  private final List<Insertion> insertions = new ArrayList<>();
+
+  private StringPool xmlPool;
+  private long poolOffset = -1;
+  private long mapOffset = -1;
+  private long chunkOffset;
+  private int lineNumber;
+
+  public XmlElementInserter(Set<String> edits) {
+    this.edits = edits;
+    addEdits(edits);
+  }
+
+  public XmlElementInserter(Set<String> edits, ContentHandler parent) {
+    super(parent);
+    this.edits = edits;
+    addEdits(edits);
+  }
+
+  public Set<String> getEdits() {
+    return edits;
+  }
+
+  /**
+   * Returns the offsets of the end elements of the matched parents, keyed by edit.
+   */
+  public Map<String, List<Long>> getMatches() {
+    return matches;
+  }
+
+  /**
+   * Returns the number of elements to insert.
+   */
+  public int size() {
+    return insertions.size();
+  }
+
+  /**
+   * Returns the index of the '=' that separates the parent from the new element in the given
+   * edit, or -1 if missing. An '=' inside a <b>[name=value]</b> component is skipped.
+   */
+  public static int indexOfElement(String edit) {
+    int depth = 0;
+    for (int i = 0; i < edit.length(); i++) {
+      char c = edit.charAt(i);
+      if (c == '[') {
+        depth++;
+      } else if (c == ']') {
+        depth--;
+      } else if (c == '=' && depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void addEdits(Set<String> edits) {
+    for (String edit : edits) {
+      int eq = indexOfElement(edit);
+      if (eq <= 0 || eq == edit.length() - 1) {
+        throw new IllegalArgumentException("Invalid element edit: " + edit);
+      }
+      parents.put(edit, new XmlElementSelector(edit.substring(0, eq)));
+      elements.put(edit, new XmlElementSelector(edit.substring(eq + 1)));
+    }
+  }
+
+  /**
+   * Queues the insertions, and the enlarged string pool and resource map, on the given rewriter.
+   *
+   * @param channel the decoded file
+   * @throws IllegalArgumentException if an attribute prefix or android attribute is unknown
+   */
+  public void addTo(FileChannel channel, ChunkRewriter rewriter) throws IOException {
+    if (insertions.isEmpty()) {
+      return;
+    }
+    if (poolOffset < 0 || mapOffset < 0) {
+      throw new IllegalStateException("Missing string pool or resource map");
+    }
+    StringPoolEditor strings = new StringPoolEditor(
+        ChunkRewriter.readChunk(channel, poolOffset), xmlPool);
+    ByteBuffer map = ByteBuffer.wrap(ChunkRewriter.readChunk(channel, mapOffset))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    int mapHeaderSize = map.getShort(2) & 0xFFFF;
+    IntArray resIds = new IntArray();
+    for (int pos = mapHeaderSize; pos + 4 <= map.capacity(); pos += 4) {
+      resIds.add(map.getInt(pos));
+    }
+    int mapSize = resIds.size();
+    for (Insertion insertion : insertions) {
+      rewriter.insert(insertion.offset, encodeElement(insertion, strings, resIds));
+    }
+    if (strings.isModified()) {
+      rewriter.replace(poolOffset, strings.toByteArray());
+    }
+    if (resIds.size() != mapSize) {
+      ByteBuffer newMap = ByteBuffer.allocate(mapHeaderSize + 4 * resIds.size())
+          .order(ByteOrder.LITTLE_ENDIAN);
+      newMap.put(map.array(), 0, mapHeaderSize);
+      newMap.putInt(4, newMap.capacity());
+      for (int id : resIds.toArray()) {
+        newMap.putInt(id);
+      }
+      rewriter.replace(mapOffset, newMap.array());
+    }
+  }
+
+  /**
+   * Encodes the start and end element chunks of the given insertion.
+   */
+  private static byte[] encodeElement(Insertion insertion, StringPoolEditor strings,
+      IntArray resIds) throws IOException {
+    XmlElementSelector element = insertion.element;
+    int name = strings.add(element.elementName);
+    List<Attr> attrs = new ArrayList<>();
+    for (Map.Entry<String, String> e : element.attributes.entrySet()) {
+      attrs.add(new Attr(e.getKey(), e.getValue(), insertion.namespaces, strings, resIds));
+    }
+    // attributes with resource ids come first, sorted by id, as aapt writes them
+    attrs.sort(Comparator.comparing((Attr a) -> a.resId == 0)
+        .thenComparing((a, b) -> Integer.compareUnsigned(a.resId, b.resId))
+        .thenComparing((Attr a) -> a.qname));
+    int startSize = NODE_SIZE + ATTR_START + ATTR_SIZE * attrs.size();
+    int endSize = NODE_SIZE + 8;
+    ByteBuffer buf = ByteBuffer.allocate(startSize + endSize).order(ByteOrder.LITTLE_ENDIAN);
+    putNode(buf, TYPE_XML_START_ELEMENT, startSize, insertion.lineNumber);
+    buf.putInt(-1); // ns
+    buf.putInt(name);
+    buf.putShort((short) ATTR_START);
+    buf.putShort((short) ATTR_SIZE);
+    buf.putShort((short) attrs.size());
+    buf.putShort((short) 0); // idIndex
+    buf.putShort((short) 0); // classIndex
+    buf.putShort((short) 0); // styleIndex
+    for (Attr attr : attrs) {
+      buf.putInt(attr.nsIndex);
+      buf.putInt(attr.nameIndex);
+      buf.putInt(attr.rawIndex);
+      buf.put(attr.value);
+    }
+    putNode(buf, TYPE_XML_END_ELEMENT, endSize, insertion.lineNumber);
+    buf.putInt(-1); // ns
+    buf.putInt(name);
+    return buf.array();
+  }
+
+  private static void putNode(ByteBuffer buf, int type, int size, int lineNumber) {
+    buf.putShort((short) type);
+    buf.putShort((short) NODE_SIZE);
+    buf.putInt(size);
+    buf.putInt(lineNumber);
+    buf.putInt(-1); // comment
+  }
+
+  /* XmlContentHandler overrides */
+  @Override
+  public void onChunkStart(long offset, int type, int headerSize, int totalSize) {
+    // ignore unless we are inside xml content
+    if (insideXml()) {
+      chunkOffset = offset;
+      if (type == TYPE_STRING_POOL && poolOffset < 0) {
+        poolOffset = offset;
+      } else if (type == TYPE_XML_RESOURCE_MAP) {
+        mapOffset = offset;
+      }
+    }
+    super.onChunkStart(offset, type, headerSize, totalSize);
+  }
+
+  @Override
+  public void onStringPool(StringPool stringPool) {
+    if (insideXml() && xmlPool == null) {
+      xmlPool = stringPool;
+    }
+    super.onStringPool(stringPool);
+  }
+
+  @Override
+  public void onXmlNode(int lineNumber, int comment) {
+    this.lineNumber = lineNumber;
+    super.onXmlNode(lineNumber, comment);
+  }
+
+  @Override
+  public void onXmlEndElement(int nsIndex, int nameIndex) {
+    for (Map.Entry<String, XmlElementSelector> e : parents.entrySet()) {
+      if (e.getValue().matches(curNode)) {
+        String edit = e.getKey();
+        matches.computeIfAbsent(edit, k -> new ArrayList<>()).add(chunkOffset);
+        XmlElementSelector element = elements.get(edit);
+        if (!hasChild(element)) {
+          insertions.add(new Insertion(chunkOffset, lineNumber, element,
+              new ArrayList<>(namespaces)));
+        }
+      }
+    }
+    super.onXmlEndElement(nsIndex, nameIndex);
+  }
+
+  private boolean hasChild(XmlElementSelector selector) {
+    Elements children = curNode.getChildElements();
+    for (int i = 0; i < children.size(); i++) {
+      if (selector.matches(children.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Element to insert before the end element at the given offset.
+   */
+  private static class Insertion {
+
+    final long offset;
+    final int lineNumber;
+    final XmlElementSelector element;
+    final List<List<String>> namespaces;
+
+    Insertion(long offset, int lineNumber, XmlElementSelector element,
+        List<List<String>> namespaces) {
+      this.offset = offset;
+      this.lineNumber = lineNumber;
+      this.element = element;
+      this.namespaces = namespaces;
+    }
+  }
+
+  /**
+   * Encoded attribute of an inserted element.
+   */
+  private static class Attr {
+
+    final String qname;
+    final int nsIndex;
+    final int nameIndex;
+    final int rawIndex;
+    final int resId;
+    final byte[] value;
+
+    Attr(String qname, String value, List<List<String>> namespaces, StringPoolEditor strings,
+        IntArray resIds) throws IOException {
+      this.qname = qname;
+      int colon = qname.indexOf(':');
+      String name = qname.substring(colon + 1);
+      int id = 0;
+      if (colon < 0) {
+        nsIndex = -1;
+      } else {
+        String uri = namespaceUri(qname.substring(0, colon), namespaces);
+        nsIndex = strings.add(uri);
+        if (ANDROID_NS.equals(uri)) {
+          int index = FrameworkIds.getDefault().indexOf("android:attr/" + name);
+          if (index < 0) {
+            throw new IllegalArgumentException("Unknown attribute: " + qname);
+          }
+          id = FrameworkIds.getDefault().getId(index);
+        }
+      }
+      resId = id;
+      nameIndex = (id != 0) ? mappedName(name, id, strings, resIds)
+          : unmappedName(name, strings, resIds);
+      int type = typeFromValue(value);
+      if (type == ResourceValue.TYPE_STRING) {
+        rawIndex = strings.add(value);
+        this.value = ResourceValue.encode(type, rawIndex);
+      } else {
+        rawIndex = -1;
+        this.value = ResourceValue.encode(type, value);
+      }
+    }
+
+    /**
+     * Returns the type of the given value. Without the formats of the attributes, only booleans,
+     * references and colors are typed; other literals, such as a version name of 1.0 or a numeric
+     * name, remain strings.
+     */
+    private static int typeFromValue(String value) {
+      if (value.startsWith("@") || value.startsWith("?") || value.startsWith("#")
+          || value.equals("true") || value.equals("false")) {
+        return ResourceValue.typeFromValue(value);
+      }
+      return ResourceValue.TYPE_STRING;
+    }
+
+    private static String namespaceUri(String prefix, List<List<String>> namespaces) {
+      for (List<String> pair : namespaces) {
+        if (prefix.equals(pair.get(0))) {
+          return pair.get(1);
+        }
+      }
+      throw new IllegalArgumentException("Undeclared namespace prefix: " + prefix);
+    }
+
+    /**
+     * Returns the index of the name mapped to the given resource id, mapping it if needed.
+     */
+    private static int mappedName(String name, int resId, StringPoolEditor strings,
+        IntArray resIds) {
+      for (int i = 0; i < resIds.size(); i++) {
+        if (resIds.get(i) == resId) {
+          return i;
+        }
+      }
+      int index = strings.append(name);
+      while (resIds.size() < index) {
+        resIds.add(0); // no resource id
+      }
+      resIds.add(resId);
+      return index;
+    }
+
+    /**
+     * Returns the index of a name that is not mapped to a resource id.
+     */
+    private static int unmappedName(String name, StringPoolEditor strings, IntArray resIds) {
+      int index = strings.add(name);
+      if (index < resIds.size() && resIds.get(index) != 0) {
+        index = strings.append(name);
+      }
+      return index;
+    }
+  }
+}
@@ -1,15 +1,19 @@
 package com.joebowbeer.resourcedecoder;
 
 import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * XmlContentHandler that locates elements matched by the given set of pattern strings. Produces a
  * set of {@link Chunk} instances representing the edits that are needed to remove the matched
  * elements. Each edit extends a chunk's totalSize, causing the XML parser to skip past one or more
- * subsequent elements.
+ * subsequent elements. Alternatively, {@link #getRemovals()} lists the chunks of the matched
+ * elements, so that they can be cut from the file.
  *
  * @see XmlElementSelector
  */
@@ -21,6 +25,10 @@ public class XmlElementMatcher extends XmlContentHandler {
 
   private final Set<Chunk> changes = new HashSet<>();
 
+  private final NavigableMap<Long, Chunk> xmlChunks = new TreeMap<>();
+
+  private final NavigableMap<Long, Chunk> removals = new TreeMap<>();
+
   private final Deque<Long> startElementOffsetStack = new ArrayDeque<>();
 
   public XmlElementMatcher(Iterable<String> patterns) {
@@ -40,6 +48,13 @@ public class XmlElementMatcher extends XmlContentHandler {
     return changes;
   }
 
+  /**
+   * Returns every chunk of the matched elements, including their descendants, in file order.
+   */
+  public Collection<Chunk> getRemovals() {
+    return removals.values();
+  }
+
   private void addSelectors(Iterable<String> patterns) {
     for (String pattern : patterns) {
       selectors.add(new XmlElementSelector(pattern));
@@ -51,7 +66,9 @@ public class XmlElementMatcher extends XmlContentHandler {
   public void onChunkStart(long offset, int type, int headerSize, int totalSize) {
     // ignore unless we are inside xml content
     if (insideXml()) {
-      chunks.add(new Chunk(offset, type, headerSize, totalSize));
+      Chunk chunk = new Chunk(offset, type, headerSize, totalSize);
+      chunks.add(chunk);
+      xmlChunks.put(offset, chunk);
     }
     super.onChunkStart(offset, type, headerSize, totalSize);
   }
@@ -73,6 +90,7 @@ public class XmlElementMatcher extends XmlContentHandler {
         Chunk chunk = chunks.removeLast();
         changes.remove(chunk);
         long nextOffset = chunk.offset + chunk.totalSize;
+        removals.putAll(xmlChunks.subMap(startElementOffset, nextOffset));
         // roll back to chunk that precedes XmlStartElement
         do {
           chunk = chunks.removeLast();
@@ -94,6 +112,7 @@ public class XmlElementMatcher extends XmlContentHandler {
   @Override
   public void onXmlEnd() {
     chunks.clear();
+    xmlChunks.clear();
     super.onXmlEnd();
   }
 }
@@ -0,0 +1,175 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ApkRewriterTest {
+
+  private static final String SO_NAME = "lib/armeabi/libdemo.so";
+
+  public ApkRewriterTest() {
+  }
+
+  @Test
+  public void testReplaceStored() throws IOException {
+    File apk = createApk();
+    byte[] orig = Files.readAllBytes(apk.toPath());
+    byte[] arsc = concat(read(apk, "resources.arsc"), new byte[]{1, 2, 3});
+    ApkRewriter rewriter = new ApkRewriter();
+    rewriter.replace("resources.arsc", arsc);
+    rewriter.apply(apk.getPath());
+    byte[] bytes = Files.readAllBytes(apk.toPath());
+    assertArrayEquals(arsc, read(apk, "resources.arsc"));
+    assertEquals(0, indexOf(bytes, arsc) % 4);
+    assertEquals(0, indexOf(bytes, read(apk, SO_NAME)) % 4096);
+    // entries before the replacement are unchanged
+    int header = indexOf(orig, "resources.arsc".getBytes("UTF-8")) - 30;
+    assertArrayEquals(Arrays.copyOf(orig, header), Arrays.copyOf(bytes, header));
+    assertArrayEquals(resource("AndroidManifest.xml"), read(apk, "AndroidManifest.xml"));
+  }
+
+  @Test
+  public void testReplaceDeflated() throws IOException {
+    File apk = createApk();
+    byte[] so = read(apk, SO_NAME);
+    byte[] manifest = concat(read(apk, "AndroidManifest.xml"), new byte[100]);
+    ApkRewriter rewriter = new ApkRewriter();
+    rewriter.replace("AndroidManifest.xml", manifest);
+    rewriter.apply(apk.getPath());
+    byte[] bytes = Files.readAllBytes(apk.toPath());
+    assertArrayEquals(manifest, read(apk, "AndroidManifest.xml"));
+    assertArrayEquals(resource("resources.arsc"), read(apk, "resources.arsc"));
+    assertEquals(0, indexOf(bytes, resource("resources.arsc")) % 4);
+    assertEquals(0, indexOf(bytes, so) % 4096);
+    try (ZipFile zip = new ZipFile(apk)) {
+      assertEquals(ZipEntry.DEFLATED, zip.getEntry("AndroidManifest.xml").getMethod());
+      assertEquals(4, zip.size());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMissingEntry() throws IOException {
+    File apk = createApk();
+    ApkRewriter rewriter = new ApkRewriter();
+    rewriter.replace("missing.xml", new byte[0]);
+    rewriter.apply(apk.getPath());
+  }
+
+  /**
+   * Test that Zip64 markers in the central directory are rejected, and the archive is unchanged.
+   */
+  @Test
+  public void testZip64() throws IOException {
+    File apk = createApk();
+    byte[] orig = Files.readAllBytes(apk.toPath());
+    ByteBuffer buf = ByteBuffer.wrap(orig).order(ByteOrder.LITTLE_ENDIAN);
+    int end = orig.length - 22;
+    int cd = buf.getInt(end + 16);
+    // uncompressed size, local header offset of the first entry; size of the central directory
+    for (int offset : new int[]{cd + 24, cd + 42, end + 12}) {
+      byte[] bytes = orig.clone();
+      ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, 0xFFFFFFFF);
+      Files.write(apk.toPath(), bytes);
+      ApkRewriter rewriter = new ApkRewriter();
+      rewriter.replace("resources.arsc", new byte[0]);
+      try {
+        rewriter.apply(apk.getPath());
+        fail();
+      } catch (IOException expected) {
+        assertTrue(expected.getMessage(), expected.getMessage().contains("Zip64"));
+      }
+      assertArrayEquals(bytes, Files.readAllBytes(apk.toPath()));
+    }
+  }
+
+  /**
+   * Creates an archive with deflated and aligned stored entries.
+   */
+  private static File createApk() throws IOException {
+    File file = File.createTempFile("demo", ".apk");
+    file.deleteOnExit();
+    byte[] so = new byte[5000];
+    new Random(1).nextBytes(so);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+      zip.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+      zip.write(resource("AndroidManifest.xml"));
+      zip.closeEntry();
+      putStored(zip, bytes.size(), "resources.arsc", resource("resources.arsc"), 4);
+      putStored(zip, bytes.size(), SO_NAME, so, 4096);
+      zip.putNextEntry(new ZipEntry("classes.dex"));
+      zip.write(new byte[1000]);
+      zip.closeEntry();
+    }
+    Files.write(file.toPath(), bytes.toByteArray());
+    return file;
+  }
+
+  private static void putStored(ZipOutputStream zip, long offset, String name, byte[] data,
+      int alignment) throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(data.length);
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    entry.setCrc(crc.getValue());
+    // alignment extra field, as zipalign writes
+    long dataOffset = offset + 30 + name.length() + 6;
+    int pad = (int) ((alignment - dataOffset % alignment) % alignment);
+    ByteBuffer extra = ByteBuffer.allocate(6 + pad).order(ByteOrder.LITTLE_ENDIAN);
+    extra.putShort((short) 0xd935).putShort((short) (2 + pad)).putShort((short) alignment);
+    entry.setExtra(extra.array());
+    zip.putNextEntry(entry);
+    zip.write(data);
+    zip.closeEntry();
+  }
+
+  private static byte[] read(File apk, String name) throws IOException {
+    try (ZipFile zip = new ZipFile(apk);
+        InputStream in = zip.getInputStream(zip.getEntry(name))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      for (int n; (n = in.read(buf)) != -1;) {
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  private static byte[] resource(String name) throws IOException {
+    return Files.readAllBytes(new File(ClassLoader.getSystemResource(name).getPath()).toPath());
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] c = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, c, a.length, b.length);
+    return c;
+  }
+
+  private static int indexOf(byte[] bytes, byte[] target) {
+    outer:
+    for (int i = 0; i <= bytes.length - target.length; i++) {
+      for (int j = 0; j < target.length; j++) {
+        if (bytes[i + j] != target[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+}
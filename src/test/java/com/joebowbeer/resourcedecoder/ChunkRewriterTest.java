@@ -0,0 +1,177 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+public class ChunkRewriterTest {
+
+  public ChunkRewriterTest() {
+  }
+
+  @Test
+  public void testNoEdits() throws IOException {
+    File file = copyResourceFile("resources.arsc");
+    byte[] orig = Files.readAllBytes(file.toPath());
+    new ChunkRewriter().apply(file.getPath());
+    assertArrayEquals(orig, Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void testAppendStrings() throws IOException {
+    File file = copyResourceFile("resources.arsc");
+    long length = file.length();
+    Pools pools = new Pools();
+    Main.decode(file.getPath(), pools);
+    ChunkRewriter rewriter = new ChunkRewriter();
+    for (int i = 0; i < pools.offsets.size(); i++) {
+      // grow every pool, so that the package header offsets move
+      long offset = pools.offsets.get(i);
+      StringPool pool = pools.pools.get(i);
+      StringPoolEditor editor;
+      try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+        editor = new StringPoolEditor(ChunkRewriter.readChunk(channel, offset), pool);
+      }
+      assertEquals(0, editor.add(pool.getString(0)));
+      assertEquals(pool.size(), editor.add("addedé"));
+      assertEquals(pool.size() + 1, editor.add("x"));
+      rewriter.replace(offset, editor.toByteArray());
+    }
+    rewriter.apply(file.getPath());
+    assertTrue(file.length() > length);
+    Pools edited = new Pools();
+    Main.decode(file.getPath(), edited);
+    assertEquals(pools.pools.size(), edited.pools.size());
+    for (int i = 0; i < pools.pools.size(); i++) {
+      StringPool pool = pools.pools.get(i);
+      StringPool editedPool = edited.pools.get(i);
+      assertEquals(pool.size() + 2, editedPool.size());
+      for (int j = 0; j < pool.size(); j++) {
+        assertEquals(pool.getString(j), editedPool.getString(j));
+      }
+      assertEquals("addedé", editedPool.getString(pool.size()));
+    }
+  }
+
+  @Test
+  public void testAddStyledString() throws IOException {
+    // "bold" is styled with the tag "b"
+    byte[] chunk = styledPool("bold", "b", "plain");
+    File file = File.createTempFile("styled", ".bin");
+    file.deleteOnExit();
+    Files.write(file.toPath(), chunk);
+    Pools pools = new Pools();
+    Main.decode(file.getPath(), pools);
+    StringPoolEditor editor = new StringPoolEditor(chunk, pools.pools.get(0));
+    assertEquals(-1, editor.indexOf("bold"));
+    assertEquals(1, editor.add("b"));
+    assertEquals(2, editor.add("plain"));
+    assertEquals(3, editor.add("bold"));
+    assertEquals(3, editor.add("bold"));
+    Files.write(file.toPath(), editor.toByteArray());
+    Pools edited = new Pools();
+    Main.decode(file.getPath(), edited);
+    StringPool pool = edited.pools.get(0);
+    assertEquals(4, pool.size());
+    assertEquals("bold", pool.getString(0));
+    assertEquals("bold", pool.getString(3));
+    // the styles are unchanged
+    String before = pools.pools.get(0).toString();
+    String after = pool.toString();
+    assertEquals(before.substring(before.indexOf("] [")), after.substring(after.indexOf("] [")));
+  }
+
+  @Test
+  public void testEditOutsideChunk() throws IOException {
+    File file = copyResourceFile("AndroidManifest.xml");
+    byte[] orig = Files.readAllBytes(file.toPath());
+    ChunkRewriter rewriter = new ChunkRewriter();
+    rewriter.remove(9);
+    try {
+      rewriter.apply(file.getPath());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    assertArrayEquals(orig, Files.readAllBytes(file.toPath()));
+  }
+
+  /**
+   * Collects the string pools and their offsets.
+   */
+  private static class Pools extends ContentFilter {
+
+    final List<Long> offsets = new ArrayList<>();
+    final List<StringPool> pools = new ArrayList<>();
+
+    @Override
+    public void onChunkStart(long offset, int type, int headerSize, int totalSize) {
+      if (type == ResourceDecoder.TYPE_STRING_POOL) {
+        offsets.add(offset);
+      }
+      super.onChunkStart(offset, type, headerSize, totalSize);
+    }
+
+    @Override
+    public void onStringPool(StringPool stringPool) {
+      pools.add(stringPool);
+      super.onStringPool(stringPool);
+    }
+  }
+
+  /**
+   * Encodes a UTF-8 string pool whose first string is styled by the second, from 0 to 1.
+   */
+  private static byte[] styledPool(String... strings) {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    int[] offsets = new int[strings.length];
+    for (int i = 0; i < strings.length; i++) {
+      offsets[i] = data.size();
+      data.write(strings[i].length());
+      data.write(strings[i].length());
+      data.write(strings[i].getBytes(StandardCharsets.UTF_8), 0, strings[i].length());
+      data.write(0);
+    }
+    while (data.size() % 4 != 0) {
+      data.write(0);
+    }
+    int headerSize = 28;
+    int stringsStart = headerSize + 4 * (strings.length + 1);
+    int stylesStart = stringsStart + data.size();
+    int[] styles = {1, 0, 1, StringPool.Style.END, StringPool.Style.END, StringPool.Style.END};
+    ByteBuffer out = ByteBuffer.allocate(stylesStart + 4 * styles.length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    out.putShort((short) ResourceDecoder.TYPE_STRING_POOL).putShort((short) headerSize)
+        .putInt(out.capacity()).putInt(strings.length).putInt(1).putInt(StringPool.UTF8_FLAG)
+        .putInt(stringsStart).putInt(stylesStart);
+    for (int offset : offsets) {
+      out.putInt(offset);
+    }
+    out.putInt(0);
+    out.put(data.toByteArray());
+    for (int style : styles) {
+      out.putInt(style);
+    }
+    return out.array();
+  }
+
+  private static File copyResourceFile(String name) throws IOException {
+    File file = File.createTempFile("rewrite", name);
+    file.deleteOnExit();
+    File orig = new File(ClassLoader.getSystemResource(name).getPath());
+    Files.copy(orig.toPath(), file.toPath(), REPLACE_EXISTING);
+    return file;
+  }
+}
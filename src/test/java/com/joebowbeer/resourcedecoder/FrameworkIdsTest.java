@@ -0,0 +1,59 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FrameworkIdsTest {
+
+  public FrameworkIdsTest() {
+  }
+
+  @Test
+  public void testDefault() {
+    FrameworkIds ids = FrameworkIds.getDefault();
+    assertEquals("android:attr/fragmentFadeEnterAnimation", ids.get(0x010102e9));
+    assertEquals(25, ids.getApiLevel(ids.indexOf(0x010102e9)));
+    assertNull(ids.get(0x7f010000));
+    assertEquals(0x01010003, ids.getId(ids.indexOf("android:attr/name")));
+    assertEquals(-1, ids.indexOf("android:attr/missing"));
+    assertEquals(-1, ids.indexOf("attr/name"));
+  }
+
+  @Test
+  public void testApiLevels() throws IOException {
+    Map<Integer, String> v21 = new HashMap<>();
+    v21.put(0x01010000, "android:attr/theme");
+    Map<Integer, String> v23 = new HashMap<>(v21);
+    v23.put(0x01010001, "android:attr/label");
+    Map<Integer, Map<Integer, String>> levels = new TreeMap<>();
+    levels.put(23, v23);
+    levels.put(21, v21);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameworkIds.write(levels, out);
+    FrameworkIds ids = FrameworkIds.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(2, ids.size());
+    assertEquals("android:attr/theme", ids.get(0x01010000, 21));
+    assertNull(ids.get(0x01010001, 21));
+    assertEquals("android:attr/label", ids.get(0x01010001, 23));
+    assertEquals("android:attr/label", ids.get(0x01010001));
+  }
+
+  @Test
+  public void testResourceNames() {
+    IntMap<String> declarations = new IntMap<>();
+    declarations.put(0x010102e9, "attr/declared");
+    declarations.put(0x7f010000, "attr/custom");
+    ResourceNames names = new ResourceNames(declarations, FrameworkIds.getDefault());
+    // framework names take precedence
+    assertEquals("android:attr/fragmentFadeEnterAnimation", names.get(0x010102e9));
+    assertEquals("attr/custom", names.get(0x7f010000));
+    assertFalse(names.contains(0x7f010001));
+  }
+}
@@ -0,0 +1,40 @@
+package com.joebowbeer.resourcedecoder;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IntMapTest {
+
+  public IntMapTest() {
+  }
+
+  @Test
+  public void testPutGet() {
+    IntMap<String> map = new IntMap<>(2);
+    for (int i = -1000; i <= 1000; i++) {
+      assertNull(map.put(i * 0x10000, String.valueOf(i)));
+    }
+    assertEquals(2001, map.size());
+    assertEquals("0", map.get(0));
+    assertEquals("-7", map.get(-7 * 0x10000));
+    assertEquals("7", map.put(7 * 0x10000, "seven"));
+    assertEquals("seven", map.get(7 * 0x10000));
+    assertFalse(map.containsKey(1));
+    assertNull(map.get(1));
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(0));
+  }
+
+  @Test
+  public void testSet() {
+    IntSet set = new IntSet();
+    assertTrue(set.add(0x7f020001));
+    assertTrue(set.add(0));
+    assertTrue(set.add(0x01010000));
+    assertFalse(set.add(0x7f020001));
+    assertTrue(set.contains(0));
+    assertFalse(set.contains(0x7f020000));
+    assertArrayEquals(new int[]{0, 0x01010000, 0x7f020001}, set.toArray());
+  }
+}
@@ -1,10 +1,23 @@
 package com.joebowbeer.resourcedecoder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -65,6 +78,211 @@ public class MainTest {
     assertTrue(bytesEquals(orig, tmpFile));
   }
 
+  /**
+   * Test of main method with wildcard resource patterns.
+   */
+  @Test
+  public void testMainPatterns() throws IOException {
+    File tmpFile = File.createTempFile("resources", ".arsc");
+    tmpFile.deleteOnExit();
+    File orig = getResourceFile("resources.arsc");
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    String[] args = {
+      "-file", tmpFile.getAbsolutePath(),
+      "-R", "R.bool.check*=false",
+      "-R", "R.color.back.*=#FF000000"};
+    Main.main(args);
+    assertFalse(bytesEquals(orig, tmpFile));
+    args[3] = "R.bool.check*=true";
+    args[5] = "R.color.back.*=#ff113377";
+    Main.main(args);
+    assertTrue(bytesEquals(orig, tmpFile));
+  }
+
+  /**
+   * Test of main method with a broad pattern whose only value is selected by a specific one.
+   */
+  @Test
+  public void testMainOverlappingPatterns() throws IOException {
+    File tmpFile = File.createTempFile("resources", ".arsc");
+    tmpFile.deleteOnExit();
+    File orig = getResourceFile("resources.arsc");
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    String path = tmpFile.getAbsolutePath();
+    TableAttributeMatcher matcher = new TableAttributeMatcher(
+        new HashSet<>(Arrays.asList("R.color.*", "R.color.background")));
+    Main.decode(path, matcher);
+    assertEquals(Collections.singleton("R.color.background"), matcher.getMatches().keySet());
+    assertEquals(matcher.getPatterns(), matcher.getMatched());
+    Main.main(new String[]{"-file", path,
+      "-R", "R.color.*=#FF000000", "-R", "R.color.background=#FF00FF00"});
+    assertTrue(dump("-file", path, "-dump", "-ndjson")
+        .contains("\"name\":\"background\",\"id\":\"0x7f050000\",\"config\":\"\","
+            + "\"value\":\"#ff00ff00\""));
+  }
+
+  /**
+   * Test of main method with a string resource, which grows the table's string pool.
+   */
+  @Test
+  public void testMainString() throws IOException {
+    File tmpFile = File.createTempFile("resources", ".arsc");
+    tmpFile.deleteOnExit();
+    File orig = getResourceFile("resources.arsc");
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    String path = tmpFile.getAbsolutePath();
+    Main.main(new String[]{"-file", path, "-R", "R.string.hello=Hello world!"});
+    assertTrue(tmpFile.length() > orig.length());
+    String[] records = dump("-file", path, "-dump", "-ndjson").split("\n");
+    assertTrue(records[6].contains("\"name\":\"hello\",")
+        && records[6].contains("\"value\":\"Hello world!\""));
+    // existing strings are reused
+    long length = tmpFile.length();
+    Main.main(new String[]{"-file", path, "-R", "R.string.hello=demothing1"});
+    assertEquals(length, tmpFile.length());
+    records = dump("-file", path, "-dump", "-ndjson").split("\n");
+    assertTrue(records[6].contains("\"value\":\"demothing1\""));
+  }
+
+  /**
+   * Test of main method with manifest attribute edits.
+   */
+  @Test
+  public void testMainAttributes() throws IOException {
+    File tmpFile = File.createTempFile("AndroidManifest", ".xml");
+    tmpFile.deleteOnExit();
+    File orig = getResourceFile("AndroidManifest.xml");
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    String[] args = {
+      "-file", tmpFile.getAbsolutePath(),
+      "-A", "manifest@android:versionCode=42",
+      "-A", "uses-sdk[android:minSdkVersion=8]@android:targetSdkVersion=21"};
+    Main.main(args);
+    assertEquals(orig.length(), tmpFile.length());
+    String xml = dump("-file", tmpFile.getAbsolutePath(), "-dump");
+    assertTrue(xml.contains("android:versionCode=\"42\""));
+    assertTrue(xml.contains("android:targetSdkVersion=\"21\""));
+    args[3] = "manifest@android:versionCode=1";
+    args[5] = "uses-sdk@android:targetSdkVersion=15";
+    Main.main(args);
+    assertTrue(bytesEquals(orig, tmpFile));
+  }
+
+  /**
+   * Test of main method with an entry of an archive.
+   */
+  @Test
+  public void testMainEntry() throws IOException {
+    File apk = File.createTempFile("demo", ".apk");
+    apk.deleteOnExit();
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(apk))) {
+      zip.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+      zip.write(Files.readAllBytes(getResourceFile("AndroidManifest.xml").toPath()));
+      zip.closeEntry();
+    }
+    Main.main(new String[]{"-file", apk.getAbsolutePath(), "-entry", "AndroidManifest.xml",
+      "-A", "manifest@android:versionCode=42"});
+    String xml = dump("-file", apk.getAbsolutePath(), "-entry", "AndroidManifest.xml", "-dump");
+    assertTrue(xml.contains("android:versionCode=\"42\""));
+  }
+
+  /**
+   * Test that an edit plan recorded for one file is applied to an identical file.
+   */
+  @Test
+  public void testMainPlan() throws IOException {
+    File planDir = Files.createTempDirectory("plans").toFile();
+    planDir.deleteOnExit();
+    File orig = getResourceFile("resources.arsc");
+    File[] files = new File[2];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = File.createTempFile("resources", ".arsc");
+      files[i].deleteOnExit();
+      Files.copy(orig.toPath(), files[i].toPath(), REPLACE_EXISTING);
+    }
+    String hash = EditPlan.hash(orig.getPath());
+    File planFile = EditPlan.getFile(planDir, hash);
+    planFile.deleteOnExit();
+    for (File file : files) {
+      Main.main(new String[]{
+        "-file", file.getAbsolutePath(),
+        "-plan", planDir.getAbsolutePath(),
+        "-R", "R.bool.checked=false",
+        "-R", "R.color.background=#FF000000"});
+      assertTrue(planFile.isFile());
+    }
+    assertFalse(bytesEquals(orig, files[0]));
+    assertTrue(bytesEquals(files[0], files[1]));
+    EditPlan plan = EditPlan.load(planDir, hash);
+    assertEquals(2, plan.size());
+    assertEquals("-R R.bool.checked=false -R R.color.background=#FF000000", plan.getEdits());
+    // the plan does not apply to the edited file
+    try {
+      plan.apply(files[0].getPath());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  /**
+   * Test that filters are part of an edit plan's key, and that a saved plan does not suppress
+   * decode output.
+   */
+  @Test
+  public void testMainPlanOptions() throws IOException {
+    File planDir = Files.createTempDirectory("plans").toFile();
+    planDir.deleteOnExit();
+    File orig = getResourceFile("resources.arsc");
+    String hash = EditPlan.hash(orig.getPath());
+    EditPlan.getFile(planDir, hash).deleteOnExit();
+    File[] files = new File[3];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = File.createTempFile("resources", ".arsc");
+      files[i].deleteOnExit();
+      Files.copy(orig.toPath(), files[i].toPath(), REPLACE_EXISTING);
+    }
+    String planPath = planDir.getAbsolutePath();
+    Main.main(new String[]{"-file", files[0].getAbsolutePath(), "-plan", planPath,
+      "-config", "hdpi,en-rUS", "-type", "color", "-R", "R.color.background=#FF000000"});
+    assertEquals("-R R.color.background=#FF000000 -config en,hdpi,rUS -type color",
+        EditPlan.load(planDir, hash).getEdits());
+    Main.main(new String[]{"-file", files[1].getAbsolutePath(), "-plan", planPath,
+      "-R", "R.color.background=#FF000000"});
+    assertEquals("-R R.color.background=#FF000000", EditPlan.load(planDir, hash).getEdits());
+    String found = dump("-file", files[2].getAbsolutePath(), "-plan", planPath,
+        "-R", "R.color.background=#FF000000", "-find", "icon.png");
+    assertTrue(found.contains("R.drawable.icon"));
+    assertTrue(bytesEquals(files[1], files[2]));
+  }
+
+  /**
+   * Test that single-pass edits write the same bytes as edits in place.
+   */
+  @Test
+  public void testMainOut() throws IOException {
+    testOut("resources.arsc",
+        "-R", "R.bool.checked=false", "-R", "R.color.background=#FF000000");
+    testOut("AndroidManifest.xml",
+        "-X", USES_PERMISSION_INTERNET, "-A", "manifest@android:versionCode=42");
+  }
+
+  private void testOut(String name, String... edits) throws IOException {
+    File orig = getResourceFile(name);
+    File tmpFile = File.createTempFile("edited", name);
+    tmpFile.deleteOnExit();
+    File outFile = File.createTempFile("out", name);
+    outFile.deleteOnExit();
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    List<String> args = new ArrayList<>(Arrays.asList(edits));
+    args.addAll(0, Arrays.asList("-file", tmpFile.getAbsolutePath()));
+    Main.main(args.toArray(new String[0]));
+    args.set(1, orig.getAbsolutePath());
+    args.addAll(Arrays.asList("-out", outFile.getAbsolutePath()));
+    Main.main(args.toArray(new String[0]));
+    assertFalse(bytesEquals(orig, outFile));
+    assertTrue(bytesEquals(tmpFile, outFile));
+  }
+
   /**
    * Test that manifest is unchanged if given -X pattern is specified but matching element is
    * missing from AndroidManifest.xml.
@@ -112,11 +330,331 @@ public class MainTest {
     testRemove(USES_PERMISSION_INTERNET);
   }
 
+  /**
+   * Test that compacting removal cuts the matched element from the manifest.
+   */
+  @Test
+  public void testCompactRemoveInternetPermission() throws IOException {
+    File tmpFile = File.createTempFile("AndroidManifest", ".xml");
+    tmpFile.deleteOnExit();
+    File orig = getResourceFile("AndroidManifest.xml");
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    String path = tmpFile.getAbsolutePath();
+    String expected = dump("-file", path, "-dump");
+    Main.main(new String[]{"-file", path, "-X", USES_PERMISSION_INTERNET, "-compact"});
+    // start and end element chunks
+    assertEquals(orig.length() - 56 - 24, tmpFile.length());
+    String actual = dump("-file", path, "-dump");
+    assertFalse(actual.contains("android.permission.INTERNET"));
+    assertEquals(expected.replaceAll(" *<uses-permission [^\\n]*\\n", ""), actual);
+  }
+
+  /**
+   * Test that inserted elements are decoded, and are not inserted again.
+   */
+  @Test
+  public void testInsertCameraPermission() throws IOException {
+    File tmpFile = File.createTempFile("AndroidManifest", ".xml");
+    tmpFile.deleteOnExit();
+    File orig = getResourceFile("AndroidManifest.xml");
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    String path = tmpFile.getAbsolutePath();
+    String[] args = {
+      "-file", path,
+      "-I", "manifest=uses-permission[android:name=android.permission.CAMERA]",
+      "-I", "application=meta-data[android:name=com.example.key][android:value=42]"};
+    Main.main(args);
+    String actual = dump("-file", path, "-dump");
+    // each is the last child of its parent
+    int metaData = actual.indexOf(
+        "<meta-data android:name=\"com.example.key\" android:value=\"42\"/>");
+    int camera = actual.indexOf("<uses-permission android:name=\"android.permission.CAMERA\"/>");
+    assertTrue(metaData > actual.indexOf("</activity>"));
+    assertTrue(metaData < actual.indexOf("</application>"));
+    assertTrue(camera > actual.indexOf("</application>"));
+    assertTrue(camera < actual.indexOf("</manifest>"));
+    File copy = File.createTempFile("AndroidManifest", ".xml");
+    copy.deleteOnExit();
+    Files.copy(tmpFile.toPath(), copy.toPath(), REPLACE_EXISTING);
+    Main.main(args);
+    assertTrue(bytesEquals(copy, tmpFile));
+  }
+
+  /**
+   * Test that a string attribute cannot be assigned in one pass, and that the copy is discarded.
+   */
+  @Test
+  public void testOutStringAttribute() throws IOException {
+    File outFile = File.createTempFile("AndroidManifest", ".xml");
+    outFile.deleteOnExit();
+    try {
+      Main.main(new String[]{"-file", getResourceFile("AndroidManifest.xml").getPath(),
+        "-A", "manifest@android:versionName=2.0", "-out", outFile.getPath()});
+      fail();
+    } catch (IllegalStateException expected) {
+      assertTrue(expected.getMessage().contains("manifest@android:versionName"));
+    }
+    assertFalse(outFile.exists());
+  }
+
+  /**
+   * Test that inserted literals remain strings, and that their names are mapped to resource ids.
+   */
+  @Test
+  public void testInsertLiterals() throws IOException {
+    File tmpFile = File.createTempFile("AndroidManifest", ".xml");
+    tmpFile.deleteOnExit();
+    Files.copy(getResourceFile("AndroidManifest.xml").toPath(), tmpFile.toPath(),
+        REPLACE_EXISTING);
+    String path = tmpFile.getAbsolutePath();
+    Main.main(new String[]{"-file", path,
+      "-I", "application=meta-data[android:name=42][android:value=1.0]",
+      "-I", "manifest=uses-feature[android:name=android.hardware.camera][android:required=false]"});
+    XmlAttributes attributes = new XmlAttributes();
+    Main.decode(path, attributes);
+    FrameworkIds framework = FrameworkIds.getDefault();
+    int name = framework.getId(framework.indexOf("android:attr/name"));
+    int value = framework.getId(framework.indexOf("android:attr/value"));
+    int required = framework.getId(framework.indexOf("android:attr/required"));
+    assertEquals(name + " " + ResourceValue.TYPE_STRING + "=42", attributes.get("name", "42"));
+    assertEquals(value + " " + ResourceValue.TYPE_STRING + "=1.0",
+        attributes.get("value", "1.0"));
+    assertEquals(required + " " + ResourceValue.TYPE_INT_BOOLEAN + "=false",
+        attributes.get("required", "false"));
+  }
+
+  @Test
+  public void testMainDiff() throws IOException {
+    File tmpFile = File.createTempFile("resources", ".arsc");
+    tmpFile.deleteOnExit();
+    File orig = getResourceFile("resources.arsc");
+    Files.copy(orig.toPath(), tmpFile.toPath(), REPLACE_EXISTING);
+    String path = tmpFile.getAbsolutePath();
+    assertEquals("", dump("-file", path, "-diff", orig.getPath()));
+    Main.main(new String[]{"-file", path,
+      "-R", "R.color.background=#FF000000", "-R", "R.string.hello=Bye demothing1!"});
+    String[] lines = diff(orig.getPath(), path).split("\\r?\\n");
+    assertArrayEquals(new String[]{
+      "~ R.color.background=#ff113377 -> #ff000000",
+      "~ R.string.hello=Hello demothing1! -> Bye demothing1!"}, lines);
+    ResourceDiff diff = new ResourceDiff(orig.getPath(), path);
+    assertEquals(2, diff.diff().size());
+    assertTrue(diff.getSkippedChunks() > 0);
+
+    File xmlFile = File.createTempFile("AndroidManifest", ".xml");
+    xmlFile.deleteOnExit();
+    File xmlOrig = getResourceFile("AndroidManifest.xml");
+    Files.copy(xmlOrig.toPath(), xmlFile.toPath(), REPLACE_EXISTING);
+    Main.main(new String[]{"-file", xmlFile.getAbsolutePath(),
+      "-I", "manifest=uses-permission[android:name=android.permission.CAMERA]"});
+    assertEquals("+ /manifest/uses-permission android:name=\"android.permission.CAMERA\"",
+        diff(xmlOrig.getPath(), xmlFile.getAbsolutePath()).trim());
+    Main.main(new String[]{"-file", xmlFile.getAbsolutePath(),
+      "-A", "uses-sdk@android:targetSdkVersion=16"});
+    lines = diff(xmlOrig.getPath(), xmlFile.getAbsolutePath()).split("\\r?\\n");
+    assertArrayEquals(new String[]{
+      "~ /manifest/uses-sdk=android:minSdkVersion=\"8\" android:targetSdkVersion=\"15\""
+      + " -> android:minSdkVersion=\"8\" android:targetSdkVersion=\"16\"",
+      "+ /manifest/uses-permission android:name=\"android.permission.CAMERA\""}, lines);
+  }
+
+  /**
+   * Test that every chunk of a duplicated type and configuration is compared.
+   */
+  @Test
+  public void testDiffDuplicates() throws IOException {
+    File orig = getResourceFile("resources.arsc");
+    ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(orig.toPath()))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    // find the color type chunk of the package
+    int pkg = buf.getShort(2) + buf.getInt(buf.getShort(2) + 4);
+    int pos = pkg + buf.getShort(pkg + 2);
+    while (buf.getShort(pos) != ResourceDecoder.TYPE_TABLE_TYPE || buf.get(pos + 8) != 5) {
+      pos += buf.getInt(pos + 4);
+    }
+    int size = buf.getInt(pos + 4);
+    // precede it with a duplicate whose color differs, which takes precedence
+    ByteBuffer dup = ByteBuffer.allocate(buf.capacity() + size).order(ByteOrder.LITTLE_ENDIAN);
+    dup.put(buf.array(), 0, pos + size).put(buf.array(), pos, buf.capacity() - pos);
+    dup.putInt(4, dup.capacity());
+    dup.putInt(pkg + 4, buf.getInt(pkg + 4) + size);
+    assertEquals(0xff113377, dup.getInt(pos + size - 4));
+    dup.putInt(pos + size - 4, 0xff000000);
+    File tmpFile = File.createTempFile("resources", ".arsc");
+    tmpFile.deleteOnExit();
+    Files.write(tmpFile.toPath(), dup.array());
+    assertEquals("~ R.color.background=#ff113377 -> #ff000000",
+        diff(orig.getPath(), tmpFile.getPath()).trim());
+  }
+
   @Test
   public void testNotRemoveVibratePermission() throws IOException {
     testNotRemove(USES_PERMISSION_VIBRATE);
   }
 
+  /**
+   * Test that streamed dump output is identical to document dump output.
+   */
+  @Test
+  public void testStreamDump() throws IOException {
+    for (String name : new String[]{"resources.arsc", "AndroidManifest.xml"}) {
+      String path = getResourceFile(name).getAbsolutePath();
+      String expected = dump("-file", path, "-dump");
+      assertTrue(expected.startsWith("<?xml"));
+      assertEquals(expected, dump("-file", path, "-dump", "-stream"));
+    }
+  }
+
+  /**
+   * Test that NDJSON dump writes one record per table entry.
+   */
+  @Test
+  public void testJsonDump() throws IOException {
+    String path = getResourceFile("resources.arsc").getAbsolutePath();
+    String[] records = dump("-file", path, "-dump", "-ndjson").split("\n");
+    assertEquals(8, records.length);
+    assertEquals("{\"package\":\"com.joebowbeer.demothing1\",\"type\":\"bool\","
+        + "\"name\":\"checked\",\"id\":\"0x7f040000\",\"config\":\"\",\"value\":\"true\"}",
+        records[4]);
+  }
+
+  /**
+   * Test that filtered dump only includes the selected packages, types and names.
+   */
+  @Test
+  public void testFilteredDump() throws IOException {
+    String path = getResourceFile("resources.arsc").getAbsolutePath();
+    String[] records = dump("-file", path, "-dump", "-ndjson",
+        "-package", "0x7f", "-type", "bool,string", "-name", "check*", "-name", "hello")
+        .split("\n");
+    assertEquals(2, records.length);
+    assertTrue(records[0].contains("\"name\":\"checked\""));
+    assertTrue(records[1].contains("\"name\":\"hello\""));
+    assertEquals("", dump("-file", path, "-dump", "-ndjson", "-package", "0x01"));
+  }
+
+  /**
+   * Test of -shard in each mode; the combined shards must match -dump.
+   */
+  @Test
+  public void testShard() throws IOException {
+    String path = getResourceFile("resources.arsc").getPath();
+    List<String> expected = body(dump("-file", path, "-dump"));
+    for (TableContentToShards.Mode mode : TableContentToShards.Mode.values()) {
+      File dir = Files.createTempDirectory("shards").toFile();
+      dir.deleteOnExit();
+      String name = mode.name().toLowerCase(Locale.ROOT);
+      dump("-file", path, "-shard", dir.getPath(), "-shardby", name);
+      List<List<String>> shards = new ArrayList<>();
+      for (File file : dir.listFiles()) {
+        shards.add(body(new String(Files.readAllBytes(file.toPath()), "UTF-8")));
+        file.deleteOnExit();
+      }
+      // order shards as in the table, by the id of their first element
+      shards.sort((a, b) -> firstId(a) - firstId(b));
+      List<String> actual = new ArrayList<>();
+      shards.forEach(actual::addAll);
+      assertEquals(mode == TableContentToShards.Mode.PACKAGE ? 1 : 6, shards.size());
+      assertEquals(name, expected, actual);
+    }
+  }
+
+  /**
+   * Returns the lines of a table dump inside the package element.
+   */
+  private static List<String> body(String xml) {
+    List<String> lines = Arrays.asList(xml.trim().split("\\r?\\n"));
+    return lines.subList(3, lines.size() - 2);
+  }
+
+  private static int firstId(List<String> lines) {
+    String line = lines.get(0);
+    int start = line.indexOf("id=\"") + 4;
+    return Integer.decode(line.substring(start, line.indexOf('"', start)));
+  }
+
+  /**
+   * Collects the attributes of an xml file, with the resource ids of their names.
+   */
+  private static class XmlAttributes extends ContentFilter {
+
+    private final List<String> attributes = new ArrayList<>();
+    private StringPool pool;
+    private Map<Integer, Integer> resourceMap;
+    private int nameIndex = -1;
+
+    /**
+     * Returns the resource id and type of the named attribute with the given value, formatted
+     * as <b>id type=value</b>, or null.
+     */
+    String get(String name, String value) {
+      for (String attribute : attributes) {
+        if (attribute.startsWith(name + " ") && attribute.endsWith("=" + value)) {
+          return attribute.substring(name.length() + 1);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void onStringPool(StringPool stringPool) {
+      pool = stringPool;
+      super.onStringPool(stringPool);
+    }
+
+    @Override
+    public void onXmlResourceMap(Map<Integer, Integer> map) {
+      resourceMap = map;
+      super.onXmlResourceMap(map);
+    }
+
+    @Override
+    public void onXmlAttribute(int nsIndex, int nameIndex, int rawIndex) {
+      this.nameIndex = nameIndex;
+      super.onXmlAttribute(nsIndex, nameIndex, rawIndex);
+    }
+
+    @Override
+    public void onResourceValue(long offset, ResourceValue value) {
+      if (nameIndex >= 0) {
+        int resId = 0;
+        for (Map.Entry<Integer, Integer> e : resourceMap.entrySet()) {
+          if (e.getValue() == nameIndex) {
+            resId = e.getKey();
+          }
+        }
+        attributes.add(pool.getString(nameIndex) + " " + resId + " " + value.type + "="
+            + value.format(pool));
+        nameIndex = -1;
+      }
+      super.onResourceValue(offset, value);
+    }
+  }
+
+  private static String diff(String oldName, String newName) throws IOException {
+    PrintStream stdout = System.out;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(out, true, "UTF-8"));
+    try {
+      assertTrue(Main.diff(oldName, newName));
+    } finally {
+      System.setOut(stdout);
+    }
+    return out.toString("UTF-8");
+  }
+
+  private static String dump(String... args) throws IOException {
+    PrintStream stdout = System.out;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(out, true, "UTF-8"));
+    try {
+      Main.main(args);
+    } finally {
+      System.setOut(stdout);
+    }
+    return out.toString("UTF-8");
+  }
+
   private static File getResourceFile(String name) {
     return new File(ClassLoader.getSystemResource(name).getPath());
   }
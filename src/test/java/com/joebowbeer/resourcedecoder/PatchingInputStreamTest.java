@@ -0,0 +1,86 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PatchingInputStreamTest {
+
+  private static final int SIZE = 200 * 1024;
+
+  public PatchingInputStreamTest() {
+  }
+
+  @Test
+  public void testCopy() throws IOException {
+    byte[] input = randomBytes(SIZE);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PatchingInputStream in = new PatchingInputStream(new ByteArrayInputStream(input), out);
+    byte[] buf = new byte[1000];
+    assertEquals(buf.length, in.read(buf, 0, buf.length));
+    assertEquals(input[buf.length] & 0xFF, in.read());
+    assertEquals(70000, in.skip(70000));
+    assertEquals(71001, in.getPosition());
+    // the first 64 KB have been written
+    try {
+      in.patch(0, new byte[1]);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    in.patch(in.getPosition() - PatchingInputStream.LAG, new byte[PatchingInputStream.LAG]);
+    Arrays.fill(input, 71001 - PatchingInputStream.LAG, 71001, (byte) 0);
+    in.finish();
+    assertArrayEquals(input, out.toByteArray());
+  }
+
+  @Test
+  public void testPatchAcrossFlushes() throws IOException {
+    byte[] input = randomBytes(SIZE);
+    byte[] expected = input.clone();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PatchingInputStream in = new PatchingInputStream(new ByteArrayInputStream(input), out);
+    Random random = new Random(1);
+    byte[] buf = new byte[4096];
+    // hold a range that spans the first 64 KB flush, and patch it after reading well past it
+    long held = 65536 - 100;
+    in.hold(held);
+    while (in.getPosition() < 3 * 65536) {
+      int n = in.read(buf, 0, 1 + random.nextInt(buf.length));
+      // the last LAG bytes can always be patched
+      long offset = in.getPosition() - PatchingInputStream.LAG;
+      byte[] patch = randomBytes(PatchingInputStream.LAG);
+      in.patch(offset, patch);
+      System.arraycopy(patch, 0, expected, (int) offset, patch.length);
+      assertTrue(n > 0);
+    }
+    byte[] patch = randomBytes(200);
+    in.patch(held, patch);
+    System.arraycopy(patch, 0, expected, (int) held, patch.length);
+    in.release();
+    in.finish();
+    assertArrayEquals(expected, out.toByteArray());
+  }
+
+  @Test
+  public void testPatchUnread() throws IOException {
+    PatchingInputStream in = new PatchingInputStream(
+        new ByteArrayInputStream(new byte[10]), new ByteArrayOutputStream());
+    assertEquals(4, in.skip(4));
+    try {
+      in.patch(2, new byte[4]);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+}
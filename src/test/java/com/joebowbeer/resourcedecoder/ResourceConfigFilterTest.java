@@ -0,0 +1,28 @@
+package com.joebowbeer.resourcedecoder;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourceConfigFilterTest {
+
+  public ResourceConfigFilterTest() {
+  }
+
+  @Test
+  public void testFilter() {
+    ResourceConfigFilter filter = ResourceConfigFilter.parse("en-rUS,hdpi");
+    assertTrue(filter.test(config("", "", 0, 0)));
+    assertTrue(filter.test(config("en", "", 0, 0)));
+    assertTrue(filter.test(config("en", "US", 240, 0)));
+    assertTrue(filter.test(config("", "", 240, 4)));
+    assertFalse(filter.test(config("fr", "", 0, 0)));
+    assertFalse(filter.test(config("", "", 320, 4)));
+    assertFalse(filter.test(config("en", "GB", 0, 0)));
+  }
+
+  private static ResourceConfig config(String language, String country, int density,
+      int sdkVersion) {
+    return new ResourceConfig(0, 0, language, country, 0, 0, density, 0, 0, 0, 0, 0, sdkVersion,
+        0, 0, 0);
+  }
+}
@@ -0,0 +1,161 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourceConfigTest {
+
+  private static final int ALL = -1;
+
+  public ResourceConfigTest() {
+  }
+
+  @Test
+  public void testParse() {
+    for (String qualifiers : new String[]{"", "en", "en-rUS-land-xhdpi-v21",
+      "mcc310-mnc4-fr-rCA-ldrtl-large-long-port-car-night-tvdpi-finger-keyssoft-qwerty"
+          + "-navhidden-dpad-800x480-v13", "400dpi", "anydpi-v26", "fil-rPH", "es-r419",
+      "b+sr+Latn", "b+ca+ES+valencia", "sw600dp-w720dp-h480dp-long-round-widecg-highdr-watch",
+      "vrheadset", "car-night"}) {
+      assertEquals(qualifiers, ResourceConfig.parse(qualifiers).qualifiers());
+    }
+  }
+
+  @Test
+  public void testPacked() {
+    ResourceConfig config = config("b+sr+Latn");
+    assertEquals("sr", config.getLanguage());
+    assertEquals("Latn", config.getLocaleScript());
+    assertEquals("fil", config("fil").getLanguage());
+    assertEquals("419", config("es-r419").getCountry());
+    assertEquals(600, config("sw600dp").getSmallestScreenWidthDp());
+    assertEquals(config("en-rUS-hdpi"), config("en-rUS-hdpi"));
+    assertEquals(config("en-rUS-hdpi").hashCode(), config("en-rUS-hdpi").hashCode());
+    assertEquals(0, config("en-rUS-hdpi").compareTo(config("en-rUS-hdpi")));
+    assertFalse(config("en-rUS").equals(config("en-rGB")));
+    assertTrue(config("en-rUS").compareTo(config("en-rGB")) != 0);
+    assertEquals(new ResourceConfig(0, 0, "en", "US", 0, 0, 240, 0, 0, 0, 0, 0, 0, 0, 0, 0),
+        config("en-rUS-hdpi"));
+    assertTrue(config("").isDefault());
+  }
+
+  @Test
+  public void testFromBytes() {
+    byte[] bytes = new byte[52];
+    bytes[4] = 'e';
+    bytes[5] = 'n';
+    bytes[10] = (byte) 240;
+    bytes[26] = 88; // sw600dp
+    bytes[27] = 2;
+    System.arraycopy(new byte[]{'L', 'a', 't', 'n'}, 0, bytes, 32, 4);
+    bytes[44] = 2; // round
+    bytes[15] = 1; // padding
+    assertEquals(config("b+en+Latn-sw600dp-round-hdpi"), ResourceConfig.fromBytes(bytes));
+    // older configurations are shorter
+    assertEquals(config("en-hdpi"), ResourceConfig.fromBytes(Arrays.copyOf(bytes, 24)));
+    // a computed script is ignored
+    bytes[48] = 1;
+    assertEquals(config("en-sw600dp-round-hdpi"), ResourceConfig.fromBytes(bytes));
+  }
+
+  @Test
+  public void testIsMoreSpecificThan() {
+    assertTrue(config("en").isMoreSpecificThan(config("")));
+    assertTrue(config("mcc310").isMoreSpecificThan(config("en-rUS-land-v21")));
+    assertTrue(config("en-rUS").isMoreSpecificThan(config("en-land")));
+    assertTrue(config("land").isMoreSpecificThan(config("v21")));
+    assertFalse(config("en").isMoreSpecificThan(config("en")));
+    assertFalse(config("hdpi").isMoreSpecificThan(config("")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseUnknown() {
+    ResourceConfig.parse("en-sideways");
+  }
+
+  @Test
+  public void testMatch() {
+    ResourceConfig device = ResourceConfig.parse("en-rUS-normal-port-hdpi-v21");
+    assertTrue(config("").match(device));
+    assertTrue(config("en").match(device));
+    assertTrue(config("en-rUS").match(device));
+    assertTrue(config("small").match(device));
+    assertTrue(config("xxhdpi-v19").match(device));
+    assertFalse(config("fr").match(device));
+    assertFalse(config("en-rGB").match(device));
+    assertFalse(config("large").match(device));
+    assertFalse(config("land").match(device));
+    assertFalse(config("night").match(device));
+    assertFalse(config("v23").match(device));
+    assertFalse(config("sw600dp").match(device));
+    assertTrue(config("sw320dp").match(ResourceConfig.parse("sw360dp")));
+  }
+
+  @Test
+  public void testIsBetterThan() {
+    ResourceConfig device = ResourceConfig.parse("en-rUS-port-hdpi-v21");
+    assertBetter("en", "port-hdpi-v21", device);
+    assertBetter("en-rUS", "en", device);
+    assertBetter("port", "hdpi", device);
+    assertBetter("v21", "v19", device);
+    // closest higher density is best, then the closest lower
+    assertBetter("hdpi", "xhdpi", device);
+    assertBetter("xhdpi", "xxhdpi", device);
+    assertBetter("xhdpi", "mdpi", device);
+    assertBetter("mdpi", "ldpi", device);
+    assertBetter("mdpi", "", ResourceConfig.parse("en"));
+    assertBetter("anydpi", "hdpi", device);
+    assertBetter("sw600dp", "sw320dp", ResourceConfig.parse("sw720dp"));
+    // a screen without a size is normal on a normal or larger device
+    assertBetter("", "small", ResourceConfig.parse("large"));
+    assertBetter("normal", "", ResourceConfig.parse("large"));
+    assertBetter("small", "", ResourceConfig.parse("small"));
+    // an unspecified device density is medium
+    assertBetter("mdpi", "hdpi", ResourceConfig.parse("anydpi"));
+  }
+
+  @Test
+  public void testMask() {
+    ResourceConfig device = ResourceConfig.parse("en-hdpi");
+    // only density varies, so the locale is not compared
+    int density = 0x0100;
+    assertFalse(config("en").isBetterThan(config("hdpi"), device, density));
+    assertTrue(config("hdpi").isBetterThan(config("en"), device, density));
+    // navhidden varies with the keyboard hidden flag, not navigation
+    device = ResourceConfig.parse("navhidden");
+    int keyboardHidden = 0x0020;
+    int navigation = 0x0040;
+    assertTrue(config("navhidden").isBetterThan(config(""), device, keyboardHidden));
+    assertFalse(config("navhidden").isBetterThan(config(""), device, navigation));
+  }
+
+  @Test
+  public void testResolve() throws IOException {
+    assertEquals("res/drawable-hdpi/icon.png", resolveIcon("xhdpi-v21"));
+    assertEquals("res/drawable-mdpi/icon.png", resolveIcon("mdpi-v21"));
+    assertEquals("res/drawable-ldpi/icon.png", resolveIcon("ldpi-v4"));
+    assertEquals("res/drawable-mdpi/icon.png", resolveIcon("anydpi-v21"));
+    assertEquals("res/drawable-mdpi/icon.png", resolveIcon("v21"));
+    assertNull(resolveIcon("mdpi-v3"));
+  }
+
+  private static String resolveIcon(String qualifiers) throws IOException {
+    TableConfigResolver resolver = new TableConfigResolver(ResourceConfig.parse(qualifiers));
+    Main.decode(ClassLoader.getSystemResource("resources.arsc").getPath(), resolver);
+    List<ResourceMatch> values = resolver.getResolved().get(0x7f020000);
+    return (values != null) ? values.get(0).value.format(resolver.getValuePool()) : null;
+  }
+
+  private static ResourceConfig config(String qualifiers) {
+    return ResourceConfig.parse(qualifiers);
+  }
+
+  private static void assertBetter(String better, String worse, ResourceConfig device) {
+    assertTrue(better + " > " + worse, config(better).isBetterThan(config(worse), device, ALL));
+    assertFalse(worse + " > " + better, config(worse).isBetterThan(config(better), device, ALL));
+  }
+}
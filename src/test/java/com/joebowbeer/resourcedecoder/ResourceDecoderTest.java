@@ -0,0 +1,78 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourceDecoderTest {
+
+  private static final int TYPE_UNKNOWN = 0x0299;
+
+  public ResourceDecoderTest() {
+  }
+
+  /**
+   * Test that unknown chunks, in the table and in a package, are skipped, and that decoding
+   * continues with the chunks that follow them.
+   */
+  @Test
+  public void testUnknownChunks() throws IOException {
+    byte[] orig = Files.readAllBytes(
+        new File(ClassLoader.getSystemResource("resources.arsc").getPath()).toPath());
+    byte[] table = insertUnknownChunks(orig);
+    assertEquals(toXml(orig, null), toXml(table, null));
+  }
+
+  /**
+   * Test that unknown chunks are skipped along with the type chunks rejected by a filter.
+   */
+  @Test
+  public void testFilteredUnknownChunks() throws IOException {
+    byte[] orig = Files.readAllBytes(
+        new File(ClassLoader.getSystemResource("resources.arsc").getPath()).toPath());
+    byte[] table = insertUnknownChunks(orig);
+    ResourceConfigFilter filter = ResourceConfigFilter.parse("hdpi");
+    String xml = toXml(table, filter);
+    assertEquals(toXml(orig, filter), xml);
+    assertTrue(xml.contains("drawable-hdpi"));
+    assertFalse(xml.contains("drawable-ldpi"));
+  }
+
+  /**
+   * Inserts an unknown chunk before the first package, and another after the package's key pool.
+   */
+  private static byte[] insertUnknownChunks(byte[] orig) {
+    ByteBuffer buf = ByteBuffer.wrap(orig).order(ByteOrder.LITTLE_ENDIAN);
+    int pkg = buf.getShort(2) + buf.getInt(buf.getShort(2) + 4);
+    int keys = pkg + buf.getInt(pkg + 276);
+    int types = keys + buf.getInt(keys + 4);
+    byte[] chunk = unknownChunk();
+    ByteBuffer table = ByteBuffer.allocate(orig.length + 2 * chunk.length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    table.put(orig, 0, pkg).put(chunk).put(orig, pkg, types - pkg).put(chunk)
+        .put(orig, types, orig.length - types);
+    table.putInt(4, table.capacity());
+    table.putInt(pkg + chunk.length + 4, buf.getInt(pkg + 4) + chunk.length);
+    return table.array();
+  }
+
+  private static byte[] unknownChunk() {
+    ByteBuffer chunk = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    chunk.putShort((short) TYPE_UNKNOWN).putShort((short) 8).putInt(16).putLong(-1L);
+    return chunk.array();
+  }
+
+  private static String toXml(byte[] table, Predicate<ResourceConfig> configFilter)
+      throws IOException {
+    TableContentToDocument handler = new TableContentToDocument();
+    Main.decode(new ByteArrayInputStream(table), handler, configFilter, null);
+    return handler.toDocument().toXML();
+  }
+}
@@ -0,0 +1,142 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourceIndexTest {
+
+  public ResourceIndexTest() {
+  }
+
+  @Test
+  public void testIndex() throws IOException {
+    String filename = ClassLoader.getSystemResource("resources.arsc").getPath();
+    TableAttributeMatcher matcher =
+        new TableAttributeMatcher(Collections.singleton("R.color.background"));
+    TableIndexBuilder builder = new TableIndexBuilder(matcher);
+    Main.decode(filename, builder);
+    File file = File.createTempFile("resources", ".idx");
+    file.deleteOnExit();
+    String hash = EditPlan.hash(filename);
+    builder.write(file, hash, 0, 0);
+
+    ResourceIndex index = ResourceIndex.open(file);
+    assertEquals(hash, index.getHash());
+    assertEquals(builder.size(), index.size());
+    int i = index.indexOf("color/background");
+    assertTrue(i >= 0);
+    assertEquals(i, index.indexOf(index.getId(i)));
+    assertEquals("com.joebowbeer.demothing1:color/background", index.getName(i));
+    assertEquals(i, index.indexOf("com.joebowbeer.demothing1:color/background"));
+    assertEquals(-1, index.indexOf("other:color/background"));
+    assertEquals(1, index.getValueCount(i));
+    int v = index.getFirstValue(i);
+    ResourceMatch match = matcher.getResourceMatches().get(0);
+    assertEquals(match.offset, index.getOffset(v));
+    assertEquals("#ff113377", index.getValue(v).format(null));
+    assertEquals("", index.getConfig(v));
+    assertNull(index.getText(v));
+
+    int hello = index.indexOf("string/hello");
+    assertEquals("Hello demothing1!", index.getText(index.getFirstValue(hello)));
+    assertEquals(-1, index.indexOf("string/missing"));
+    assertEquals(-1, index.indexOf(0x7f7f0000));
+  }
+
+  /**
+   * Test that names are qualified by package, when two packages declare the same name.
+   */
+  @Test
+  public void testPackages() throws IOException {
+    byte[] orig = Files.readAllBytes(
+        new File(ClassLoader.getSystemResource("resources.arsc").getPath()).toPath());
+    ByteBuffer buf = ByteBuffer.wrap(orig).order(ByteOrder.LITTLE_ENDIAN);
+    // append a copy of the package with a lower id and another name
+    int pkg = buf.getShort(2) + buf.getInt(buf.getShort(2) + 4);
+    int size = buf.getInt(pkg + 4);
+    ByteBuffer table = ByteBuffer.allocate(orig.length + size).order(ByteOrder.LITTLE_ENDIAN);
+    table.put(orig).put(orig, pkg, size);
+    table.putInt(4, table.capacity());
+    table.putInt(8, 2);
+    table.putInt(orig.length + 8, 0x7e);
+    table.position(orig.length + 12);
+    table.put(Arrays.copyOf("other".getBytes(StandardCharsets.UTF_16LE), 256));
+    File tableFile = File.createTempFile("resources", ".arsc");
+    tableFile.deleteOnExit();
+    Files.write(tableFile.toPath(), table.array());
+    File file = File.createTempFile("resources", ".idx");
+    file.deleteOnExit();
+    ResourceIndex index = Main.updateIndex(tableFile.getPath(), file);
+    assertEquals(0x7f050000,
+        index.getId(index.indexOf("com.joebowbeer.demothing1:color/background")));
+    assertEquals(0x7e050000, index.getId(index.indexOf("other:color/background")));
+    // the lowest id, without a package
+    assertEquals(0x7e050000, index.getId(index.indexOf("color/background")));
+  }
+
+  /**
+   * Test that an index that is corrupt, or of another version, is rebuilt.
+   */
+  @Test
+  public void testUpdateIndex() throws IOException {
+    String filename = ClassLoader.getSystemResource("resources.arsc").getPath();
+    File file = File.createTempFile("resources", ".idx");
+    file.deleteOnExit();
+    Files.write(file.toPath(), new byte[]{1, 2, 3});
+    ResourceIndex index = Main.updateIndex(filename, file);
+    assertEquals(EditPlan.hash(filename), index.getHash());
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(4, ResourceIndex.VERSION - 1);
+    Files.write(file.toPath(), bytes);
+    try {
+      ResourceIndex.open(file);
+      fail();
+    } catch (IOException expected) {
+    }
+    index = Main.updateIndex(filename, file);
+    assertTrue(index.indexOf("color/background") >= 0);
+    // truncated
+    Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+    index = Main.updateIndex(filename, file);
+    assertTrue(index.indexOf("color/background") >= 0);
+  }
+
+  /**
+   * Test that an index is reused, without hashing the file, until the file's size or modification
+   * time changes.
+   */
+  @Test
+  public void testIndexStamp() throws IOException {
+    File table = File.createTempFile("resources", ".arsc");
+    table.deleteOnExit();
+    Files.copy(new File(ClassLoader.getSystemResource("resources.arsc").getPath()).toPath(),
+        table.toPath(), REPLACE_EXISTING);
+    File file = File.createTempFile("resources", ".idx");
+    file.deleteOnExit();
+    String hash = EditPlan.hash(table.getPath());
+    ResourceIndex index = Main.updateIndex(table.getPath(), file);
+    assertEquals(table.length(), index.getFileSize());
+    assertEquals(table.lastModified(), index.getLastModified());
+    assertTrue(index.isCurrent(table));
+    // replace the recorded hash: a current index is reused as it is
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    Arrays.fill(bytes, 8, 8 + ResourceIndex.HASH_SIZE, (byte) '0');
+    Files.write(file.toPath(), bytes);
+    assertFalse(hash.equals(Main.updateIndex(table.getPath(), file).getHash()));
+    // a new modification time causes a rebuild
+    assertTrue(table.setLastModified(table.lastModified() - 2000));
+    index = Main.updateIndex(table.getPath(), file);
+    assertEquals(hash, index.getHash());
+    assertTrue(index.isCurrent(table));
+  }
+}
@@ -0,0 +1,51 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourcePatternsTest {
+
+  public ResourcePatternsTest() {
+  }
+
+  @Test
+  public void testMatch() {
+    ResourcePatterns patterns = new ResourcePatterns(Arrays.asList(
+        "R.bool.checked", "R.color.brand_*", "R.bool.feature_.*", "R.*.brand_primary",
+        "R.style.Theme.Light"));
+    assertEquals("R.bool.checked", match(patterns, "bool", "checked"));
+    assertNull(match(patterns, "bool", "checked2"));
+    assertEquals("R.color.brand_*", match(patterns, "color", "brand_"));
+    assertEquals("R.color.brand_*", match(patterns, "color", "brand_accent"));
+    assertEquals("R.bool.feature_.*", match(patterns, "bool", "feature_x"));
+    assertNull(match(patterns, "color", "feature_x"));
+    assertEquals("R.style.Theme.Light", match(patterns, "style", "Theme.Light"));
+    assertNull(match(patterns, "style", "ThemeXLight"));
+    // exact name beats prefix
+    assertEquals("R.*.brand_primary", match(patterns, "color", "brand_primary"));
+    assertEquals("R.*.brand_primary", match(patterns, "dimen", "brand_primary"));
+  }
+
+  @Test
+  public void testMatchKeys() {
+    ResourcePatterns patterns = new ResourcePatterns(Arrays.asList(
+        "R.color.a*", "R.color.ab*", "R.color.a?c"));
+    StringPool keys = new StringPool(Arrays.asList("abc", "b", "a"),
+        Collections.<StringPool.Style>emptyList());
+    int[][] matches = patterns.matchKeys(keys);
+    assertEquals(3, matches[0].length);
+    assertEquals("R.color.ab*", patterns.get(matches[0][0]));
+    assertEquals("R.color.a*", patterns.get(matches[0][1]));
+    assertEquals("R.color.a?c", patterns.get(matches[0][2]));
+    assertNull(matches[1]);
+    assertEquals(1, matches[2].length);
+  }
+
+  private static String match(ResourcePatterns patterns, String type, String name) {
+    int index = patterns.match(type, name);
+    return (index < 0) ? null : patterns.get(index);
+  }
+}
@@ -0,0 +1,61 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourceValuePatcherTest {
+
+  public ResourceValuePatcherTest() {
+  }
+
+  @Test
+  public void testApply() throws IOException {
+    File file = createFile();
+    ResourceValuePatcher patcher = new ResourceValuePatcher();
+    patcher.add(24, ResourceValue.encode("R.color.background", "#ff000000"));
+    patcher.add(8, ResourceValue.encode("R.color.background", "#ff000000"));
+    patcher.add(8, ResourceValue.encode("R.color.background", "#ff000000"));
+    patcher.apply(file.getPath());
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    assertArrayEquals(new byte[]{8, 0, 0, 0x1c, 0, 0, 0, (byte) 0xff},
+        Arrays.copyOfRange(bytes, 8, 16));
+    assertArrayEquals(new byte[]{8, 0, 0, 0x1c, 0, 0, 0, (byte) 0xff},
+        Arrays.copyOfRange(bytes, 24, 32));
+  }
+
+  @Test
+  public void testTypeMismatch() throws IOException {
+    File file = createFile();
+    byte[] orig = Files.readAllBytes(file.toPath());
+    ResourceValuePatcher patcher = new ResourceValuePatcher();
+    patcher.add(8, ResourceValue.encode("R.color.background", "#ff000000"));
+    patcher.add(16, ResourceValue.encode("R.color.background", "#ff000000"));
+    try {
+      patcher.apply(file.getPath());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    assertArrayEquals(orig, Files.readAllBytes(file.toPath()));
+  }
+
+  /**
+   * Creates a file holding colors at 8 and 24, and a boolean at 16.
+   */
+  private static File createFile() throws IOException {
+    File file = File.createTempFile("values", ".bin");
+    file.deleteOnExit();
+    byte[] bytes = new byte[32];
+    byte[] color = {8, 0, 0, 0x1c, 0x77, 0x33, 0x11, (byte) 0xff};
+    byte[] bool = {8, 0, 0, 0x12, -1, -1, -1, -1};
+    System.arraycopy(color, 0, bytes, 8, 8);
+    System.arraycopy(bool, 0, bytes, 16, 8);
+    System.arraycopy(color, 0, bytes, 24, 8);
+    Files.write(file.toPath(), bytes);
+    return file;
+  }
+}
@@ -0,0 +1,104 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static com.joebowbeer.resourcedecoder.ResourceValue.*;
+
+public class ResourceValueTest {
+
+  public ResourceValueTest() {
+  }
+
+  @Test
+  public void testFormat() {
+    assertEquals("@0x7f020001", format(TYPE_REFERENCE, 0x7f020001));
+    assertEquals("?0x01010000", format(TYPE_ATTRIBUTE, 0x01010000));
+    assertEquals("0x0", format(TYPE_INT_HEX, 0));
+    assertEquals("0xffffffff", format(TYPE_INT_HEX, -1));
+    assertEquals("-42", format(TYPE_INT_DEC, -42));
+    assertEquals("#ff113377", format(TYPE_INT_COLOR_ARGB8, 0xff113377));
+    assertEquals("#000fff", format(TYPE_INT_COLOR_RGB4, 0xfff));
+    assertEquals("true", format(TYPE_INT_BOOLEAN, -1));
+    assertEquals("16.00dp", format(TYPE_DIMENSION, (16 << 8) | 1));
+    assertEquals("50.00%p", format(TYPE_FRACTION, (64 << 8) | (1 << 4) | 1));
+    assertEquals("0.100000", format(TYPE_FLOAT, Float.floatToIntBits(0.1f)));
+    assertEquals("-0.000000", format(TYPE_FLOAT, Float.floatToIntBits(-0.0f)));
+    assertEquals("Infinity", format(TYPE_FLOAT, Float.floatToIntBits(Float.POSITIVE_INFINITY)));
+  }
+
+  @Test
+  public void testFormatMatchesFormatter() {
+    Random random = new Random(1);
+    for (int i = 0; i < 100000; i++) {
+      int bits = random.nextInt();
+      float f = Float.intBitsToFloat(bits);
+      assertEquals(String.format("%f", f), format(TYPE_FLOAT, bits));
+      int dimen = bits & ~0xF | (i % 6);
+      ResourceValue value = value(TYPE_DIMENSION, dimen);
+      assertEquals(String.format("%.2f%s", value.complexToFloat(), value.dimensionUnit()),
+          value.format(null));
+    }
+  }
+
+  @Test
+  public void testEncode() throws Exception {
+    assertRoundTrip(TYPE_REFERENCE, "@0x7f020001");
+    assertRoundTrip(TYPE_ATTRIBUTE, "?0x01010000");
+    assertRoundTrip(TYPE_INT_DEC, "-42");
+    assertRoundTrip(TYPE_INT_HEX, "0xffffffff");
+    assertRoundTrip(TYPE_INT_BOOLEAN, "false");
+    assertRoundTrip(TYPE_INT_COLOR_ARGB8, "#ff113377");
+    assertRoundTrip(TYPE_FLOAT, "0.100000");
+    assertRoundTrip(TYPE_DIMENSION, "16.00dp");
+    assertRoundTrip(TYPE_DIMENSION, "-1.50sp");
+    assertRoundTrip(TYPE_DIMENSION, "0.25mm");
+    assertRoundTrip(TYPE_FRACTION, "50.00%p");
+    assertRoundTrip(TYPE_FRACTION, "12.50%");
+    assertEquals(0, decode(encode(TYPE_REFERENCE, "@null")).intValue());
+    assertEquals((16 << 8) | 1, decode(encode(TYPE_DIMENSION, "16dip")).intValue());
+    assertEquals("#ff112233", decode(encode(TYPE_INT_COLOR_ARGB8, "#123")).format(null));
+    assertEquals("#44112233", decode(encode(TYPE_INT_COLOR_ARGB4, "#4123")).format(null));
+    assertEquals("#ff112233", decode(encode(TYPE_INT_COLOR_RGB8, "#112233")).format(null));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncodeTranslucentRgb() throws Exception {
+    encode(TYPE_INT_COLOR_RGB8, "#80112233");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncodeString() throws Exception {
+    encode(TYPE_STRING, "hello");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncodeMissingUnit() throws Exception {
+    encode(TYPE_DIMENSION, "16");
+  }
+
+  private static void assertRoundTrip(int type, String s) throws Exception {
+    byte[] bytes = encode(type, s);
+    assertEquals(8, bytes.length);
+    assertEquals(8, bytes[0]);
+    assertEquals(type, bytes[3] & 0xFF);
+    assertEquals(s, decode(bytes).format(null));
+  }
+
+  private static ResourceValue decode(byte[] bytes) {
+    return new ResourceValue(bytes[3] & 0xFF, new byte[]{bytes[4], bytes[5], bytes[6], bytes[7]});
+  }
+
+  private static String format(int type, int data) {
+    String s = value(type, data).format(null);
+    assertEquals(s, value(type, data).format(null, new StringBuilder()).toString());
+    return s;
+  }
+
+  private static ResourceValue value(int type, int data) {
+    return new ResourceValue(type, new byte[]{
+      (byte) data, (byte) (data >> 8), (byte) (data >> 16), (byte) (data >> 24)});
+  }
+}
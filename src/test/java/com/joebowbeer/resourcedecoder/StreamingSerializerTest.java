@@ -0,0 +1,93 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import nu.xom.Attribute;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.Serializer;
+import nu.xom.Text;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StreamingSerializerTest {
+
+  private static final String ANDROID = "http://schemas.android.com/apk/res/android";
+
+  public StreamingSerializerTest() {
+  }
+
+  /**
+   * Test that streamed output matches Serializer output for the same tree.
+   */
+  @Test
+  public void testSameOutput() throws IOException {
+    Element root = new Element("manifest");
+    root.addAttribute(new Attribute("android:versionCode", ANDROID, "1"));
+    root.addAttribute(new Attribute("package", "com.example.with.a.rather.long.package.name"));
+    Element app = new Element("application");
+    root.appendChild(app);
+    app.addAttribute(new Attribute("android:label", ANDROID, "@0x7f060001"));
+    app.appendChild(new Text("\n  "));
+    Element activity = new Element("activity");
+    activity.addAttribute(new Attribute("android:name", ANDROID, ".Main & <Co> \"quoted\""));
+    app.appendChild(activity);
+    app.appendChild(new Text("  "));
+    Element text = new Element("text");
+    text.appendChild(new Text("mixed "));
+    text.appendChild(new Element("b"));
+    text.appendChild(new Text(" content that is long enough to need wrapping at some point"));
+    app.appendChild(text);
+    Element blank = new Element("blank");
+    blank.appendChild(new Text(" "));
+    app.appendChild(blank);
+    Element empty = new Element("empty");
+    empty.appendChild(new Text(""));
+    app.appendChild(empty);
+    root.appendChild(new Element("uses-sdk"));
+    assertEquals(serialize(new Document(root)), stream(root));
+  }
+
+  private static String serialize(Document doc) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Serializer serializer = new Serializer(out);
+    Main.configure(serializer);
+    serializer.write(doc);
+    serializer.flush();
+    return out.toString("UTF-8");
+  }
+
+  private static String stream(Element root) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamingSerializer serializer = new StreamingSerializer(null, out);
+    Main.configure(serializer);
+    serializer.startDocument();
+    replay(root, new Element("tempRoot"), serializer);
+    serializer.endDocument();
+    return out.toString("UTF-8");
+  }
+
+  private static void replay(Element source, Element parent, StreamingSerializer serializer)
+      throws IOException {
+    Element element = new Element(source.getQualifiedName(), source.getNamespaceURI());
+    parent.appendChild(element);
+    serializer.startElement(element);
+    for (int i = 0; i < source.getAttributeCount(); i++) {
+      element.addAttribute(new Attribute(source.getAttribute(i)));
+    }
+    for (int i = 0; i < source.getChildCount(); i++) {
+      Node child = source.getChild(i);
+      if (child instanceof Element) {
+        replay((Element) child, element, serializer);
+      } else {
+        Text text = new Text(child.getValue());
+        element.appendChild(text);
+        serializer.text(text);
+      }
+    }
+    serializer.endElement();
+  }
+}
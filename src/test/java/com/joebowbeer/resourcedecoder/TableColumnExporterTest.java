@@ -0,0 +1,164 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static com.joebowbeer.resourcedecoder.ResourceUtils.hexId;
+import static com.joebowbeer.resourcedecoder.ResourceUtils.makeId;
+import static com.joebowbeer.resourcedecoder.ResourceValue.TYPE_STRING;
+
+public class TableColumnExporterTest {
+
+  public TableColumnExporterTest() {
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    TableColumnExporter exporter = new TableColumnExporter();
+    Rows expected = new Rows(exporter);
+    Main.decode(ClassLoader.getSystemResource("resources.arsc").getPath(), expected);
+    File dir = Files.createTempDirectory("columns").toFile();
+    dir.deleteOnExit();
+    exporter.write(dir);
+    for (File file : dir.listFiles()) {
+      file.deleteOnExit();
+    }
+    int rows = exporter.getRowCount();
+    assertEquals(expected.rows.size(), rows);
+    assertTrue(new String(read(dir, "schema.txt"), StandardCharsets.UTF_8)
+        .startsWith("rows=" + rows + "\n"));
+    ByteBuffer ids = column(dir, "id.i32", rows * 4);
+    ByteBuffer keys = column(dir, "key.i32", rows * 4);
+    ByteBuffer types = column(dir, "type.u8", rows);
+    ByteBuffer configs = column(dir, "config.u16", rows * 2);
+    ByteBuffer names = column(dir, "name.i32", rows * 4);
+    ByteBuffer valueTypes = column(dir, "valuetype.u8", rows);
+    ByteBuffer data = column(dir, "data.i32", rows * 4);
+    List<String> keyDict = dictionary(dir, "key.dict");
+    List<String> typeDict = dictionary(dir, "type.dict");
+    List<String> configDict = dictionary(dir, "config.dict");
+    List<String> stringDict = dictionary(dir, "string.dict");
+    List<String> actual = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      int valueType = valueTypes.get(i) & 0xFF;
+      int value = data.getInt(4 * i);
+      actual.add(row(ids.getInt(4 * i), typeDict.get(types.get(i) & 0xFF),
+          keyDict.get(keys.getInt(4 * i)), configDict.get(configs.getShort(2 * i) & 0xFFFF),
+          names.getInt(4 * i), valueType,
+          (valueType == TYPE_STRING) ? stringDict.get(value) : hexId(value)));
+    }
+    assertEquals(expected.rows, actual);
+  }
+
+  private static String row(int id, String type, String key, String config, int name,
+      int valueType, String value) {
+    return hexId(id) + " " + type + "/" + key + (config.isEmpty() ? "" : "-" + config)
+        + (name != 0 ? " " + hexId(name) : "") + " " + valueType + "=" + value;
+  }
+
+  private static byte[] read(File dir, String name) throws IOException {
+    return Files.readAllBytes(new File(dir, name).toPath());
+  }
+
+  private static ByteBuffer column(File dir, String name, int size) throws IOException {
+    byte[] bytes = read(dir, name);
+    assertEquals(name, size, bytes.length);
+    return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static List<String> dictionary(File dir, String name) throws IOException {
+    byte[] bytes = read(dir, name);
+    ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    int count = buf.getInt(0);
+    int start = 4 * (count + 2);
+    assertEquals(name, bytes.length, start + buf.getInt(4 * (count + 1)));
+    List<String> strings = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      int offset = buf.getInt(4 * i);
+      strings.add(new String(bytes, start + offset, buf.getInt(4 * (i + 1)) - offset,
+          StandardCharsets.UTF_8));
+    }
+    return strings;
+  }
+
+  /**
+   * Collects a row for each decoded value, formatted as by {@link #row}.
+   */
+  private static class Rows extends ContentFilter {
+
+    final List<String> rows = new ArrayList<>();
+
+    private final List<StringPool> pools = new ArrayList<>();
+    private int packageId;
+    private String type;
+    private String config;
+    private int id;
+    private String key;
+    private boolean isComplexEntry;
+    private int name;
+
+    Rows(ContentHandler parent) {
+      super(parent);
+    }
+
+    @Override
+    public void onStringPool(StringPool stringPool) {
+      // value pool, then the type and key pools of the package
+      pools.add(stringPool);
+      super.onStringPool(stringPool);
+    }
+
+    @Override
+    public void onTablePackageStart(int id, String name, int typeStrings,
+        int lastPublicType, int keyStrings, int lastPublicKey) {
+      packageId = id;
+      super.onTablePackageStart(id, name, typeStrings, lastPublicType,
+          keyStrings, lastPublicKey);
+    }
+
+    @Override
+    public void onTableTypeSpecStart(int id, int[] configs) {
+      type = pools.get(pools.size() - 2).getString(id - 1);
+      super.onTableTypeSpecStart(id, configs);
+    }
+
+    @Override
+    public void onTableTypeStart(int id, ResourceConfig config, int entryCount,
+        int entryStart, int[] offsets) {
+      this.config = config.qualifiers();
+      this.id = makeId(packageId - 1, id - 1, 0);
+      super.onTableTypeStart(id, config, entryCount, entryStart, offsets);
+    }
+
+    @Override
+    public void onTableEntryStart(int id, int flags, int key, int parent,
+        int count) {
+      this.id = (this.id & 0xFFFF0000) | id;
+      this.key = pools.get(pools.size() - 1).getString(key);
+      isComplexEntry = ResourceUtils.isComplexEntry(flags);
+      super.onTableEntryStart(id, flags, key, parent, count);
+    }
+
+    @Override
+    public void onTableEntryMapName(int name) {
+      this.name = name;
+      super.onTableEntryMapName(name);
+    }
+
+    @Override
+    public void onResourceValue(long offset, ResourceValue value) {
+      rows.add(row(id, type, key, config, isComplexEntry ? name : 0, value.type,
+          (value.type == TYPE_STRING) ? value.format(pools.get(0)) : hexId(value.intValue())));
+      super.onResourceValue(offset, value);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import nu.xom.Element;
+import nu.xom.Nodes;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TableContentToDocumentTest {
+
+  public TableContentToDocumentTest() {
+  }
+
+  @Test
+  public void testResolveNames() {
+    TableContentToDocument handler = new TableContentToDocument();
+    handler.setResolveNames(FrameworkIds.getDefault());
+    handler.onTableStart(1);
+    handler.onStringPool(new StringPool(Collections.<String>emptyList(), null));
+    handler.onTablePackageStart(0x7f, "p", 1, 0, 1, 0);
+    handler.onStringPool(new StringPool(Arrays.asList("string"), null));
+    handler.onStringPool(new StringPool(Arrays.asList("first", "second"), null));
+    handler.onTableTypeSpecStart(1, new int[0]);
+    handler.onTableTypeStart(1, new ResourceConfig(0, 0, "", "", 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0), 2, 0, new int[2]);
+    entry(handler, 0, 0x7f010001); // forward
+    entry(handler, 1, 0x7f010000); // backward
+    entry(handler, 2, 0x010102e9); // framework
+    entry(handler, 3, 0x7f02ffff); // unresolved
+    handler.onTableTypeEnd();
+    handler.onTableTypeSpecEnd();
+    handler.onTablePackageEnd();
+    handler.onTableEnd();
+
+    Nodes items = handler.toDocument().query("//item");
+    assertEquals("@string/second", ((Element) items.get(0)).getAttributeValue("value"));
+    assertEquals("@string/first", ((Element) items.get(1)).getAttributeValue("value"));
+    assertEquals("@android:attr/fragmentFadeEnterAnimation",
+        ((Element) items.get(2)).getAttributeValue("value"));
+    assertEquals("@0x7f02ffff", ((Element) items.get(3)).getAttributeValue("value"));
+    assertArrayEquals(new int[]{0x7f02ffff}, handler.getUnresolved().toArray());
+  }
+
+  private static void entry(ContentHandler handler, int id, int reference) {
+    handler.onTableEntryStart(id, 0, id & 1, 0, 0);
+    handler.onResourceValue(0, new ResourceValue(ResourceValue.TYPE_REFERENCE, new byte[]{
+      (byte) reference, (byte) (reference >> 8), (byte) (reference >> 16),
+      (byte) (reference >> 24)}));
+    handler.onTableEntryEnd();
+  }
+}
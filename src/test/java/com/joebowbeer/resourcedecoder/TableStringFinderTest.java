@@ -0,0 +1,51 @@
+package com.joebowbeer.resourcedecoder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TableStringFinderTest {
+
+  public TableStringFinderTest() {
+  }
+
+  @Test
+  public void testFind() throws IOException {
+    TableStringFinder finder = new TableStringFinder(
+        new LinkedHashSet<>(Arrays.asList("demothing", "icon.png", "missing")));
+    Main.decode(ClassLoader.getSystemResource("resources.arsc").getPath(), finder);
+    assertEquals(new LinkedHashSet<>(Arrays.asList("demothing", "icon.png")), finder.getFound());
+    List<ResourceMatch> matches = finder.getResourceMatches();
+    assertEquals(finder.getResourceIds().size(), matches.size());
+    int icons = 0;
+    for (int i = 0; i < matches.size(); i++) {
+      ResourceMatch match = matches.get(i);
+      String value = match.value.format(finder.getValuePool());
+      assertTrue(value, value.contains(match.pattern));
+      if (match.name.equals("R.drawable.icon")) {
+        assertEquals(0x7f020000, (int) finder.getResourceIds().get(i));
+        icons++;
+      }
+    }
+    assertEquals(3, icons);
+    assertEquals(1, matches.stream().filter(m -> m.name.equals("R.string.hello")).count());
+  }
+
+  @Test
+  public void testFindOverlapping() throws IOException {
+    TableStringFinder finder = new TableStringFinder(
+        new LinkedHashSet<>(Arrays.asList("icon", "icon.png")));
+    Main.decode(ClassLoader.getSystemResource("resources.arsc").getPath(), finder);
+    assertEquals(finder.getTexts(), finder.getFound());
+    List<ResourceMatch> matches = finder.getResourceMatches();
+    assertEquals(finder.getResourceIds().size(), matches.size());
+    // each value that contains both texts is matched once for each
+    assertEquals(6, matches.size());
+    assertEquals(3, matches.stream().filter(m -> m.pattern.equals("icon")).count());
+    assertEquals(3, matches.stream().filter(m -> m.pattern.equals("icon.png")).count());
+  }
+}